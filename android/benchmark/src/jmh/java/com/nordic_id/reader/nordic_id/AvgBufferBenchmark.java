@@ -0,0 +1,48 @@
+package com.nordic_id.reader.nordic_id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvgBufferBenchmark {
+    @Param({"3", "100", "10000"})
+    int windowSize;
+
+    @Param({"0", "2"})
+    int mode;
+
+    @Param({"0", "1000"})
+    int maxAge;
+
+    AvgBuffer buffer;
+    int sample;
+
+    @Setup
+    public void setup() {
+        buffer = new AvgBuffer(windowSize, maxAge, mode);
+        for (int n = 0; n < windowSize; n++)
+            buffer.add(n % 100);
+    }
+
+    @Benchmark
+    public double add() {
+        buffer.add(sample++ % 100);
+        return buffer.getAvgValue();
+    }
+}
@@ -0,0 +1,82 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.tdt.EPCTagEngine;
+import com.nordicid.tdt.SGTIN96Tag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TDTLib decoding cost of a whole population, SGTIN-96 tags.
+ * decodeCached is the plugin decode stage reading the same population again, all from EpcDecoder cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class EpcDecodeBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    int tagCount;
+
+    byte[][] epcs;
+    String[] epcHex;
+    EpcDecoder decoder;
+
+    @Setup
+    public void setup() {
+        epcs = SyntheticTags.population(tagCount, 1);
+        epcHex = new String[tagCount];
+        for (int n = 0; n < tagCount; n++)
+            epcHex[n] = NurApi.byteArrayToHexString(epcs[n]);
+        decoder = new EpcDecoder();
+        decoder.configure(true, tagCount);
+        for (int n = 0; n < tagCount; n++)
+            decoder.decode(epcs[n]);
+    }
+
+    @Benchmark
+    public void decodeFromBytes(Blackhole bh) throws Exception {
+        for (int n = 0; n < tagCount; n++) {
+            EPCTagEngine engine = new EPCTagEngine(epcs[n], epcs[n].length);
+            bh.consume(engine.buildPureIdentityURI());
+        }
+    }
+
+    @Benchmark
+    public void decodeFromHex(Blackhole bh) throws Exception {
+        for (int n = 0; n < tagCount; n++) {
+            EPCTagEngine engine = new EPCTagEngine(epcHex[n]);
+            bh.consume(engine.buildPureIdentityURI());
+        }
+    }
+
+    @Benchmark
+    public void decodeSgtinFields(Blackhole bh) throws Exception {
+        for (int n = 0; n < tagCount; n++) {
+            SGTIN96Tag tag = new SGTIN96Tag(new EPCTagEngine(epcs[n], epcs[n].length));
+            bh.consume(tag.buildBarcode(false, false, true));
+            bh.consume(tag.getSerial());
+        }
+    }
+
+    @Benchmark
+    public void decodeCached(Blackhole bh) {
+        for (int n = 0; n < tagCount; n++)
+            bh.consume(decoder.decode(epcs[n]));
+    }
+}
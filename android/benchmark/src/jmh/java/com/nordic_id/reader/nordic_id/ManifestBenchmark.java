@@ -0,0 +1,69 @@
+package com.nordic_id.reader.nordic_id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExpectedManifest load of a whole manifest, and reconciling one inventory round of 1000 reads
+ * where half of the tags are expected and half are not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ManifestBenchmark {
+    @Param({"10000", "500000"})
+    int manifestSize;
+
+    byte[] packed;
+    byte[][] round;
+    ExpectedManifest manifest;
+
+    @Setup
+    public void setup() {
+        byte[][] epcs = SyntheticTags.population(manifestSize, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] epc : epcs) {
+            out.write(epc.length);
+            out.write(epc, 0, epc.length);
+        }
+        packed = out.toByteArray();
+        manifest = new ExpectedManifest();
+        manifest.load(packed);
+
+        byte[][] unexpected = SyntheticTags.population(500, 2);
+        round = new byte[1000][];
+        for (int n = 0; n < 500; n++) {
+            round[2 * n] = epcs[n * (manifestSize / 500)];
+            // Other company prefix
+            round[2 * n + 1] = unexpected[n].clone();
+            round[2 * n + 1][3] ^= 0x5A;
+        }
+    }
+
+    @Benchmark
+    public int load() {
+        return new ExpectedManifest().load(packed);
+    }
+
+    @Benchmark
+    public void observeRound(Blackhole bh) {
+        for (byte[] epc : round)
+            bh.consume(manifest.observe(epc));
+    }
+}
@@ -0,0 +1,71 @@
+package com.nordic_id.reader.nordic_id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session export to file in every format. Resulting file size is printed once per format at tear down.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SessionExportBenchmark {
+    @Param({"1000", "100000"})
+    int tagCount;
+
+    TagIndex session;
+    File file;
+    Map<String, Object> csv;
+    Map<String, Object> binary;
+    Map<String, Object> deflated;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[][] epcs = SyntheticTags.population(tagCount, 1);
+        int[] rssi = SyntheticTags.rssi(tagCount, 2);
+        session = new TagIndex(tagCount);
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < tagCount; n++)
+            session.observe(epcs[n], rssi[n], n % 4, now + n / 100);
+        file = File.createTempFile("session", ".export");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("csv " + csv + ", binary " + binary + ", deflated " + deflated);
+        file.delete();
+    }
+
+    @Benchmark
+    public Object exportCsv() throws IOException {
+        return csv = new SessionExporter().exportCsv(session, file);
+    }
+
+    @Benchmark
+    public Object exportBinary() throws IOException {
+        return binary = new SessionExporter().exportBinary(session, file, false);
+    }
+
+    @Benchmark
+    public Object exportBinaryDeflate() throws IOException {
+        return deflated = new SessionExporter().exportBinary(session, file, true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventory round against simulated reader without latencies: inventory, fetchTags and tag handling as
+ * NurHelper does it. Score is per round, tags per second is tagCount / score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatedReaderBenchmark {
+    @Param({"1000", "10000"})
+    int tagCount;
+
+    SimulatedNurApi api;
+    TagIndex index;
+    List<TagEvent> events;
+
+    @Setup
+    public void setup() {
+        SimulatedNurApi.Population population = new SimulatedNurApi.Population();
+        population.tagCount = tagCount;
+        population.latencyScale = 0;
+        api = new SimulatedNurApi(population);
+        api.connect();
+        index = new TagIndex(tagCount);
+        events = new ArrayList<>(tagCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        api.disconnect();
+    }
+
+    @Benchmark
+    public byte[] inventoryRound() throws Exception {
+        api.inventory();
+        api.fetchTags();
+        NurTagStorage storage = api.getStorage();
+        long now = System.currentTimeMillis();
+        events.clear();
+        synchronized (storage) {
+            for (int n = 0; n < storage.size(); n++) {
+                NurTag tag = storage.get(n);
+                index.observe(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), now);
+                events.add(new TagEvent(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), now));
+            }
+            storage.clear();
+        }
+        return TagEventCodec.encode(events);
+    }
+}
@@ -0,0 +1,30 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.Random;
+
+/**
+ * Deterministic synthetic tag populations for benchmarks.
+ */
+final class SyntheticTags {
+    private SyntheticTags() {
+    }
+
+    /**
+     * Population of SGTIN-96 tags spread over a few hundred products.
+     */
+    static byte[][] population(int count, long seed) {
+        Random rnd = new Random(seed);
+        byte[][] epcs = new byte[count][];
+        for (int n = 0; n < count; n++)
+            epcs[n] = SimulatedNurApi.sgtin96(1234567, rnd.nextInt(300), n + 1);
+        return epcs;
+    }
+
+    static int[] rssi(int count, long seed) {
+        Random rnd = new Random(seed);
+        int[] rssi = new int[count];
+        for (int n = 0; n < count; n++)
+            rssi[n] = -45 - rnd.nextInt(40);
+        return rssi;
+    }
+}
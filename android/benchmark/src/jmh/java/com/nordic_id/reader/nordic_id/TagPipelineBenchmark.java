@@ -0,0 +1,89 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per round cost of turning inventoried tags into tag events, scores are per whole population.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagPipelineBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    int tagCount;
+
+    byte[][] epcs;
+    int[] rssi;
+    List<TagEvent> events;
+    TagIndex index;
+
+    @Setup
+    public void setup() {
+        epcs = SyntheticTags.population(tagCount, 1);
+        rssi = SyntheticTags.rssi(tagCount, 2);
+        events = new ArrayList<>(tagCount);
+        for (int n = 0; n < tagCount; n++)
+            events.add(new TagEvent(epcs[n], rssi[n], 1, n));
+        index = new TagIndex(tagCount);
+    }
+
+    @Benchmark
+    public void epcToHex(Blackhole bh) {
+        for (int n = 0; n < tagCount; n++)
+            bh.consume(NurApi.byteArrayToHexString(epcs[n]));
+    }
+
+    /**
+     * Former per tag JSON serialization of handleInventoryResult, kept as baseline.
+     */
+    @Benchmark
+    public void jsonPerTag(Blackhole bh) throws Exception {
+        for (int n = 0; n < tagCount; n++) {
+            JSONObject json = new JSONObject();
+            json.put("epc", NurApi.byteArrayToHexString(epcs[n]));
+            json.put("rssi", Integer.toString(rssi[n]));
+            JSONArray jsonArray = new JSONArray();
+            jsonArray.put(json);
+            bh.consume(jsonArray.toString());
+        }
+    }
+
+    @Benchmark
+    public byte[] binaryBatch() {
+        return TagEventCodec.encode(events);
+    }
+
+    @Benchmark
+    public int tagIndexRound() {
+        index.clear();
+        int added = 0;
+        for (int n = 0; n < tagCount; n++) {
+            int id = index.observe(epcs[n], rssi[n], 1, n);
+            if (index.getReadCount(id) == 1)
+                added++;
+        }
+        return added;
+    }
+}
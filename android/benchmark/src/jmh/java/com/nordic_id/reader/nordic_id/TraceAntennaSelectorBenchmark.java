@@ -0,0 +1,52 @@
+package com.nordic_id.reader.nordic_id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceAntennaSelectorBenchmark {
+    TraceAntennaSelector selector;
+    int[] signal;
+    int pos;
+
+    @Setup
+    public void setup() throws Exception {
+        SimulatedNurApi.Population population = new SimulatedNurApi.Population();
+        population.tagCount = 1;
+        population.latencyScale = 0;
+        SimulatedNurApi api = new SimulatedNurApi(population);
+        api.connect();
+
+        selector = new TraceAntennaSelector();
+        selector.begin(api);
+
+        // Sweep towards the tag and back, visits all antennas
+        signal = new int[400];
+        for (int n = 0; n < 200; n++) {
+            signal[n] = n / 2;
+            signal[399 - n] = n / 2;
+        }
+    }
+
+    @Benchmark
+    public int adjust() throws Exception {
+        int s = signal[pos];
+        pos = (pos + 1) % signal.length;
+        return selector.adjust(s);
+    }
+}
@@ -0,0 +1,60 @@
+package com.nordic_id.reader.nordic_id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start and stop of trace, dominated by setup round trips to reader.
+ * Simulator setup round trip is 25 ms scaled with latencyScale.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceBeginBenchmark {
+    @Param({"true", "false"})
+    boolean cached;
+
+    @Param({"0.01"})
+    double latencyScale;
+
+    SimulatedNurApi api;
+    ReaderConfigCache config;
+    TraceAntennaSelector selector;
+
+    @Setup
+    public void setup() throws Exception {
+        SimulatedNurApi.Population population = new SimulatedNurApi.Population();
+        population.tagCount = 1;
+        population.latencyScale = latencyScale;
+        api = new SimulatedNurApi(population);
+        api.connect();
+
+        config = new ReaderConfigCache();
+        config.load(api);
+        selector = new TraceAntennaSelector();
+    }
+
+    @Benchmark
+    public int beginStop() throws Exception {
+        if (cached)
+            selector.begin(api, config);
+        else
+            selector.begin(api);
+        selector.stop();
+        return selector.getCurrentAntenna();
+    }
+}
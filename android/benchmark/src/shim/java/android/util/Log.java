@@ -0,0 +1,25 @@
+package android.util;
+
+/**
+ * JVM stand-in for android.util.Log so plugin classes can be benchmarked outside Android.
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+}
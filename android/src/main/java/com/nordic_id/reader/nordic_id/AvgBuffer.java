@@ -1,51 +1,87 @@
 package com.nordic_id.reader.nordic_id;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * Created by Mikko on 25.9.2016.
+ *
+ * Sliding window average over fixed size ring buffer.
+ * Values older than maxAge ms (monotonic clock) are dropped, maxAge 0 keeps values until pushed out.
+ * Mean is kept with running sum, so add() is O(1) and allocation free.
+ * MODE_EWMA returns exponentially weighted average and MODE_MEDIAN median of the window.
  */
 
 public class AvgBuffer {
-    public class Entry
-    {
-        public long time;
-        public double val;
-    }
+    public static final int MODE_MEAN = 0;
+    public static final int MODE_EWMA = 1;
+    public static final int MODE_MEDIAN = 2;
+
+    //Running sum is recalculated after this many evictions to cancel floating point drift
+    private static final int RESUM_INTERVAL = 1024;
+
+    private final double[] mValues;
+    private final long[] mTimes;
+    //Window values in ascending order, only used in MODE_MEDIAN
+    private final double[] mSorted;
+    private int mHead = 0; //Index of oldest value
+    private int mCount = 0;
+    private int mEvictions = 0;
 
-    LinkedList<Entry> mValues = new LinkedList<Entry>();
     int mMaxAge = 0;
     int mMaxSize = 10;
+    private final int mMode;
+    private double mAlpha = 0.5;
 
     private double mAvgValue = 0;//Double.NaN;
     private double mSumValue = 0;//Double.NaN;
 
     public AvgBuffer(int maxSize, int maxAge)
     {
-        mMaxSize = maxSize;
+        this(maxSize, maxAge, MODE_MEAN);
+    }
+
+    public AvgBuffer(int maxSize, int maxAge, int mode)
+    {
+        mMaxSize = Math.max(1, maxSize);
         mMaxAge = maxAge;
+        mMode = mode;
+        mValues = new double[mMaxSize];
+        mTimes = new long[mMaxSize];
+        mSorted = mode == MODE_MEDIAN ? new double[mMaxSize] : null;
+    }
+
+    /**
+     * Smoothing factor of MODE_EWMA, 0-1. Bigger value follows new values faster.
+     */
+    public void setEwmaAlpha(double alpha)
+    {
+        mAlpha = Math.min(1, Math.max(0, alpha));
+    }
+
+    static long nowMs()
+    {
+        return System.nanoTime() / 1000000;
     }
 
-    boolean removeOld()
+    boolean removeOld(long now)
     {
         if (mMaxAge == 0)
             return false;
 
         boolean ret = false;
-        Iterator<Entry> i = mValues.descendingIterator();
-        while (i.hasNext())
+        while (mCount > 0 && now - mTimes[mHead] > mMaxAge)
         {
-            Entry e = i.next();
-            if (System.currentTimeMillis() - e.time > mMaxAge)
-            {
-                i.remove();
-                ret = true;
-            }
+            removeOldest();
+            ret = true;
         }
         return ret;
     }
 
+    public int size()
+    {
+        return mCount;
+    }
+
     public double getAvgValue()
     {
         return mAvgValue;
@@ -58,44 +94,113 @@ public class AvgBuffer {
 
     void calcAvg()
     {
-        if (mValues.size() == 0)
+        if (mCount == 0)
         {
             mAvgValue = 0;//Double.NaN;
             mSumValue = 0;
             return;
         }
 
-        double avgVal = 0;
-        Iterator<Entry> i = mValues.iterator();
-        while (i.hasNext())
+        switch (mMode)
         {
-            avgVal += i.next().val;
+        case MODE_MEDIAN:
+            int mid = mCount / 2;
+            mAvgValue = (mCount & 1) != 0 ? mSorted[mid] : (mSorted[mid - 1] + mSorted[mid]) / 2;
+            break;
+        case MODE_EWMA:
+            // Average is updated in add()
+            break;
+        default:
+            mAvgValue = mSumValue / mCount;
+            break;
         }
-        mSumValue = avgVal;
-        mAvgValue = avgVal / mValues.size();
     }
 
     public void add(double val)
     {
-        removeOld();
+        add(val, nowMs());
+    }
 
-        while (mValues.size() >= mMaxSize)
-        {
-            mValues.remove(0);
-        }
+    void add(double val, long now)
+    {
+        removeOld(now);
+
+        if (mCount == mMaxSize)
+            removeOldest();
+
+        if (mMode == MODE_EWMA)
+            mAvgValue = mCount == 0 ? val : mAlpha * val + (1 - mAlpha) * mAvgValue;
 
-        Entry e = new Entry();
-        e.time = System.currentTimeMillis();
-        e.val = val;
-        mValues.add(e);
+        int tail = (mHead + mCount) % mMaxSize;
+        mValues[tail] = val;
+        mTimes[tail] = now;
+        if (mSorted != null)
+            insertSorted(val);
+        mCount++;
+        mSumValue += val;
 
         calcAvg();
     }
 
     public void clear()
     {
-        mValues.clear();
+        mHead = 0;
+        mCount = 0;
+        mEvictions = 0;
         mAvgValue = 0;//Double.NaN;
         mSumValue = 0;
     }
+
+    private void removeOldest()
+    {
+        double val = mValues[mHead];
+        mHead = (mHead + 1) % mMaxSize;
+        mCount--;
+        if (mSorted != null)
+            removeSorted(val);
+
+        if (mCount == 0)
+        {
+            mSumValue = 0;
+            mEvictions = 0;
+        }
+        else if (++mEvictions >= RESUM_INTERVAL)
+        {
+            resum();
+        }
+        else
+        {
+            mSumValue -= val;
+        }
+
+        if (mCount == 0)
+            calcAvg();
+    }
+
+    private void resum()
+    {
+        double sum = 0;
+        for (int n = 0; n < mCount; n++)
+            sum += mValues[(mHead + n) % mMaxSize];
+        mSumValue = sum;
+        mEvictions = 0;
+    }
+
+    private void insertSorted(double val)
+    {
+        int pos = Arrays.binarySearch(mSorted, 0, mCount, val);
+        if (pos < 0)
+            pos = -pos - 1;
+        System.arraycopy(mSorted, pos, mSorted, pos + 1, mCount - pos);
+        mSorted[pos] = val;
+    }
+
+    private void removeSorted(double val)
+    {
+        // mCount is already decremented, window had mCount + 1 values
+        int pos = Arrays.binarySearch(mSorted, 0, mCount + 1, val);
+        if (pos < 0)
+            return;
+        System.arraycopy(mSorted, pos + 1, mSorted, pos, mCount - pos);
+    }
 }
@@ -0,0 +1,141 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.tdt.EPCTagEngine;
+import com.nordicid.tdt.SGTIN198Tag;
+import com.nordicid.tdt.SGTIN96Tag;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * GS1 decoding of EPCs with TDTLib EPCTagEngine, before tag batches are encoded for Flutter.
+ * Results are kept in a bounded LRU cache keyed on EPC bytes, so a tag read again in later rounds is decoded once.
+ * EPCs which are not GS1 coded are cached too, as null result.
+ */
+class EpcDecoder {
+    static final int DEFAULT_CACHE_SIZE = 20000;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Decoded GS1 fields, empty string when scheme has no such field.
+     */
+    static class Gs1 {
+        final String scheme;
+        final String companyPrefix;
+        //GTIN-14 with check digit, SGTIN schemes only
+        final String gtin;
+        //Serial number, serial reference or individual asset reference
+        final String serial;
+        //Fields in TagEventCodec FLAG_GS1 format, encoded once per cached EPC
+        final byte[] encoded;
+
+        Gs1(String scheme, String companyPrefix, String gtin, String serial) {
+            this.scheme = scheme;
+            this.companyPrefix = companyPrefix;
+            this.gtin = gtin;
+            this.serial = serial;
+
+            byte[][] fields = {scheme.getBytes(ASCII), companyPrefix.getBytes(ASCII), gtin.getBytes(ASCII),
+                    serial.getBytes(ASCII)};
+            int size = 0;
+            for (byte[] field : fields)
+                size += 1 + Math.min(255, field.length);
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            for (byte[] field : fields) {
+                int len = Math.min(255, field.length);
+                buf.put((byte) len);
+                buf.put(field, 0, len);
+            }
+            encoded = buf.array();
+        }
+    }
+
+    private static final Gs1 NOT_GS1 = new Gs1("", "", "", "");
+
+    private volatile boolean mEnabled = false;
+    //Guarded by this
+    private int mCacheSize = DEFAULT_CACHE_SIZE;
+    private final LinkedHashMap<ByteBuffer, Gs1> mCache = new LinkedHashMap<ByteBuffer, Gs1>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Gs1> eldest) {
+            return size() > mCacheSize;
+        }
+    };
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+
+    /**
+     * Enable decoding, cacheSize is the number of EPCs kept. Disabling drops the cache.
+     */
+    synchronized void configure(boolean enabled, int cacheSize) {
+        mEnabled = enabled;
+        mCacheSize = Math.max(1, cacheSize);
+        if (!enabled || mCache.size() > mCacheSize)
+            mCache.clear();
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * GS1 fields of EPC, null if EPC is not GS1 coded. EPC must not be modified afterwards.
+     */
+    synchronized Gs1 decode(byte[] epc) {
+        ByteBuffer key = ByteBuffer.wrap(epc);
+        Gs1 gs1 = mCache.get(key);
+        if (gs1 != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+            gs1 = parse(epc);
+            mCache.put(key, gs1);
+        }
+        return gs1 != NOT_GS1 ? gs1 : null;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", mEnabled);
+        metrics.put("cacheSize", mCache.size());
+        metrics.put("cacheHits", mHitCount);
+        metrics.put("cacheMisses", mMissCount);
+        return metrics;
+    }
+
+    static Gs1 parse(byte[] epc) {
+        try {
+            EPCTagEngine engine = new EPCTagEngine(epc, epc.length);
+            String scheme = engine.getName();
+            String companyPrefix = "";
+            String serial = "";
+            for (int n = 0; ; n++) {
+                String name;
+                try {
+                    name = engine.getSegmentName(n);
+                } catch (Exception ex) {
+                    // No more segments
+                    break;
+                }
+                if (name == null || name.isEmpty())
+                    break;
+                if (name.equals("Company Prefix"))
+                    companyPrefix = engine.getSegment(n).toString();
+                else if (name.startsWith("Serial") || name.equals("Individual Asset Reference"))
+                    serial = engine.getSegment(n).toString();
+            }
+            String gtin = "";
+            if (scheme.equals("sgtin-96"))
+                gtin = new SGTIN96Tag(engine).buildBarcode(false, false, true);
+            else if (scheme.equals("sgtin-198"))
+                gtin = new SGTIN198Tag(engine).buildBarcode(false, false, true);
+            return new Gs1(scheme, companyPrefix, gtin, serial);
+        } catch (Exception ex) {
+            // Not valid GS1 header or data
+            return NOT_GS1;
+        }
+    }
+}
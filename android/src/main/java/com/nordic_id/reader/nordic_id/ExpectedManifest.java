@@ -0,0 +1,328 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expected EPCs of a count, reconciled against reads as found, missing and unexpected tags.
+ * EPCs are kept sorted in packed primitive arrays like TagIndex (17 bytes per EPC up to 128 bits) and looked up
+ * with binary search. A Bloom filter in front of it rejects most unexpected EPCs without searching.
+ * Found EPCs are a bit set over manifest order, unexpected ones are collected to a TagIndex.
+ * Thread safe.
+ */
+class ExpectedManifest {
+    static final int NOT_EXPECTED = -1;
+
+    private static final int PACKED_MAX_LEN = 16;
+    private static final int BLOOM_BITS_PER_EPC = 10;
+    private static final int BLOOM_HASHES = 3;
+
+    //Guarded by this. Manifest EPCs in unsigned byte order.
+    private int mSize = 0;
+    private byte[] mEpcLen = new byte[0];
+    private long[] mEpcHi = new long[0];
+    private long[] mEpcLo = new long[0];
+    //Full EPC of entries longer than 16 bytes, null when manifest has none
+    private byte[][] mLongEpc;
+    private long[] mBloom = new long[1];
+    private int mBloomMask = 63;
+
+    private long[] mFound = new long[0];
+    private int mFoundCount = 0;
+    private final TagIndex mUnexpected = new TagIndex();
+    //Incremented on every count change, so unchanged counts need not be delivered
+    private long mVersion = 0;
+    private long mBloomRejects = 0;
+
+    /**
+     * Replace manifest with EPCs packed as u8 length and EPC bytes, duplicates are dropped.
+     * Found and unexpected counts start over.
+     *
+     * @return number of distinct EPCs
+     * @throws IllegalArgumentException on empty or truncated EPC, current manifest is kept
+     */
+    int load(byte[] packed) {
+        int count = 0;
+        for (int pos = 0; pos < packed.length; pos += 1 + (packed[pos] & 0xFF)) {
+            int epcLen = packed[pos] & 0xFF;
+            if (epcLen == 0)
+                throw new IllegalArgumentException("Empty EPC at entry " + count);
+            if (epcLen > packed.length - pos - 1)
+                throw new IllegalArgumentException("Truncated EPC at entry " + count);
+            count++;
+        }
+
+        final byte[] len = new byte[count];
+        final long[] hi = new long[count];
+        final long[] lo = new long[count];
+        final byte[][] longEpc = new byte[count][];
+        boolean anyLong = false;
+        int pos = 0;
+        for (int n = 0; n < count; n++) {
+            int epcLen = packed[pos] & 0xFF;
+            len[n] = (byte) epcLen;
+            hi[n] = pack(packed, pos + 1, epcLen, 0);
+            lo[n] = pack(packed, pos + 1, epcLen, 8);
+            if (epcLen > PACKED_MAX_LEN) {
+                longEpc[n] = Arrays.copyOfRange(packed, pos + 1, pos + 1 + epcLen);
+                anyLong = true;
+            }
+            pos += 1 + epcLen;
+        }
+
+        int[] order = new int[count];
+        for (int n = 0; n < count; n++)
+            order[n] = n;
+        IdSort.sort(order, new IdSort.IdComparator() {
+            @Override
+            public int compare(int a, int b) {
+                return compareEpc(hi[a], lo[a], len[a] & 0xFF, longEpc[a], hi[b], lo[b], len[b] & 0xFF, longEpc[b]);
+            }
+        });
+
+        // Take entries in sorted order, skipping duplicates
+        byte[] sortedLen = new byte[count];
+        long[] sortedHi = new long[count];
+        long[] sortedLo = new long[count];
+        byte[][] sortedLong = anyLong ? new byte[count][] : null;
+        int size = 0;
+        for (int n = 0; n < count; n++) {
+            int i = order[n];
+            if (size > 0 && sortedHi[size - 1] == hi[i] && sortedLo[size - 1] == lo[i]
+                    && sortedLen[size - 1] == len[i]
+                    && (longEpc[i] == null || Arrays.equals(sortedLong[size - 1], longEpc[i])))
+                continue;
+            sortedLen[size] = len[i];
+            sortedHi[size] = hi[i];
+            sortedLo[size] = lo[i];
+            if (sortedLong != null)
+                sortedLong[size] = longEpc[i];
+            size++;
+        }
+
+        int bloomBits = Integer.highestOneBit(Math.max(64, size * BLOOM_BITS_PER_EPC - 1)) << 1;
+        long[] bloom = new long[bloomBits / 64];
+        for (int n = 0; n < size; n++) {
+            long h = hash(sortedHi[n], sortedLo[n], sortedLen[n] & 0xFF, sortedLong != null ? sortedLong[n] : null);
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                int bit = bloomBit(h, k, bloomBits - 1);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        synchronized (this) {
+            mSize = size;
+            mEpcLen = sortedLen;
+            mEpcHi = sortedHi;
+            mEpcLo = sortedLo;
+            mLongEpc = sortedLong;
+            mBloom = bloom;
+            mBloomMask = bloomBits - 1;
+            mFound = new long[(size + 63) / 64];
+            resetCounts();
+        }
+        return size;
+    }
+
+    synchronized boolean isLoaded() {
+        return mSize > 0;
+    }
+
+    /**
+     * Empty manifest, reads are no longer reconciled.
+     */
+    void clear() {
+        load(new byte[0]);
+    }
+
+    /**
+     * Keep manifest, start reconciling from nothing found.
+     */
+    synchronized void clearFound() {
+        Arrays.fill(mFound, 0);
+        resetCounts();
+    }
+
+    /**
+     * Reconcile one read against manifest. Repeated reads of same EPC change nothing.
+     *
+     * @return manifest index of EPC or NOT_EXPECTED
+     */
+    synchronized int observe(byte[] epc) {
+        if (mSize == 0)
+            return NOT_EXPECTED;
+        int index = indexOf(epc);
+        if (index != NOT_EXPECTED) {
+            long bit = 1L << index;
+            if ((mFound[index >>> 6] & bit) == 0) {
+                mFound[index >>> 6] |= bit;
+                mFoundCount++;
+                mVersion++;
+            }
+        } else {
+            int size = mUnexpected.size();
+            mUnexpected.observe(epc, 0, 0, 0);
+            if (mUnexpected.size() != size)
+                mVersion++;
+        }
+        return index;
+    }
+
+    /**
+     * @return manifest index of EPC or NOT_EXPECTED
+     */
+    synchronized int indexOf(byte[] epc) {
+        long hi = pack(epc, 0, epc.length, 0);
+        long lo = pack(epc, 0, epc.length, 8);
+        byte[] longEpc = epc.length > PACKED_MAX_LEN ? epc : null;
+        long h = hash(hi, lo, epc.length, longEpc);
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            int bit = bloomBit(h, k, mBloomMask);
+            if ((mBloom[bit >>> 6] & (1L << bit)) == 0) {
+                mBloomRejects++;
+                return NOT_EXPECTED;
+            }
+        }
+
+        int low = 0;
+        int high = mSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareEpc(mEpcHi[mid], mEpcLo[mid], mEpcLen[mid] & 0xFF,
+                    mLongEpc != null ? mLongEpc[mid] : null, hi, lo, epc.length, longEpc);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return NOT_EXPECTED;
+    }
+
+    /**
+     * Count changes since construction, compare to detect changed counts.
+     */
+    synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * expected, found, missing and unexpected counts.
+     */
+    synchronized Map<String, Object> getCounts() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("expected", mSize);
+        counts.put("found", mFoundCount);
+        counts.put("missing", mSize - mFoundCount);
+        counts.put("unexpected", mUnexpected.size());
+        return counts;
+    }
+
+    /**
+     * Page of missing EPCs in hex, in EPC order. offset counts missing EPCs, not manifest entries.
+     */
+    synchronized List<String> getMissing(int offset, int limit) {
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, mSize - mFoundCount - offset)));
+        int skip = Math.max(0, offset);
+        for (int word = 0; word < mFound.length && page.size() < limit; word++) {
+            long missing = ~mFound[word];
+            if (word == mFound.length - 1 && (mSize & 63) != 0)
+                missing &= (1L << mSize) - 1;
+            int count = Long.bitCount(missing);
+            // Whole words of skipped EPCs are passed by bit count
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            for (; missing != 0 && page.size() < limit; missing &= missing - 1) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                page.add(NurApi.byteArrayToHexString(getEpc(word * 64 + Long.numberOfTrailingZeros(missing))));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Page of unexpected EPCs in hex, in first read order.
+     */
+    synchronized List<String> getUnexpected(int offset, int limit) {
+        int end = Math.min(mUnexpected.size(), Math.max(0, offset) + Math.max(0, limit));
+        List<String> page = new ArrayList<>();
+        for (int id = Math.max(0, offset); id < end; id++)
+            page.add(NurApi.byteArrayToHexString(mUnexpected.getEpc(id)));
+        return page;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = getCounts();
+        metrics.put("bloomBytes", mBloom.length * 8);
+        metrics.put("bloomRejects", mBloomRejects);
+        return metrics;
+    }
+
+    private byte[] getEpc(int index) {
+        int len = mEpcLen[index] & 0xFF;
+        if (len > PACKED_MAX_LEN)
+            return mLongEpc[index].clone();
+        byte[] epc = new byte[len];
+        for (int n = 0; n < len; n++) {
+            long word = n < 8 ? mEpcHi[index] : mEpcLo[index];
+            epc[n] = (byte) (word >>> (56 - (n & 7) * 8));
+        }
+        return epc;
+    }
+
+    private void resetCounts() {
+        mFoundCount = 0;
+        mUnexpected.clear();
+        mVersion++;
+    }
+
+    //Unsigned byte order, shorter EPC first when it is prefix of the other
+    private static int compareEpc(long hiA, long loA, int lenA, byte[] longA, long hiB, long loB, int lenB,
+                                  byte[] longB) {
+        if (hiA != hiB)
+            return Long.compare(hiA ^ Long.MIN_VALUE, hiB ^ Long.MIN_VALUE);
+        if (loA != loB)
+            return Long.compare(loA ^ Long.MIN_VALUE, loB ^ Long.MIN_VALUE);
+        for (int n = PACKED_MAX_LEN; n < lenA && n < lenB; n++) {
+            int diff = (longA[n] & 0xFF) - (longB[n] & 0xFF);
+            if (diff != 0)
+                return diff;
+        }
+        return lenA - lenB;
+    }
+
+    //Big endian pack of 8 EPC bytes starting at offset within EPC at buf[start], missing bytes are zero
+    private static long pack(byte[] buf, int start, int len, int offset) {
+        long word = 0;
+        int end = Math.min(len, offset + 8);
+        for (int n = offset; n < end; n++)
+            word |= (buf[start + n] & 0xFFL) << (56 - (n - offset) * 8);
+        return word;
+    }
+
+    private static long hash(long hi, long lo, int len, byte[] longEpc) {
+        long h = hi * 0x9E3779B97F4A7C15L + lo;
+        for (int n = PACKED_MAX_LEN; n < len; n++)
+            h = h * 31 + longEpc[n];
+        h = (h ^ len) * 0xC2B2AE3D27D4EB4FL;
+        return h ^ (h >>> 29);
+    }
+
+    //Bit k of EPC in Bloom filter, double hashing of the 64 bit hash halves
+    private static int bloomBit(long hash, int k, int mask) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + k * h2) & mask;
+    }
+}
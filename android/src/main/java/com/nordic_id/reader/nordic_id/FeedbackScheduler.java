@@ -0,0 +1,168 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Beep/vibrate feedback of trace, faster when smoothed signal gets stronger.
+ * Runs as delayed tasks on a shared timer, nothing is scheduled while tag is not found.
+ * Feedback commands share the reader link with trace and reader commands, so they are rate limited
+ * and sent holding the reader lock. While someone else holds it feedback is postponed, never waited for.
+ */
+class FeedbackScheduler {
+    static final int MODE_BEEP = 0x01;
+    static final int MODE_VIBRATE = 0x02;
+
+    //Feedback commands per second stay under 1000 / MIN_INTERVAL_MS
+    static final long MIN_INTERVAL_MS = 100;
+    static final long BUSY_RETRY_MS = 5;
+    static final int STRONG_SIGNAL = 70;
+    static final int SHORT_MS = 40;
+    static final int LONG_MS = 100;
+
+    /**
+     * Accessory commands, AccessoryExtension beepAsync and vibrate.
+     */
+    interface Output {
+        void beep(int durationMs) throws Exception;
+
+        void vibrate(int durationMs) throws Exception;
+    }
+
+    /**
+     * Delayed tasks and current time, a scheduled executor and system clock outside tests.
+     */
+    interface Timer {
+        Future<?> schedule(Runnable task, long delayMs);
+
+        long now();
+    }
+
+    static Timer timerOf(final ScheduledExecutorService executor) {
+        return new Timer() {
+            @Override
+            public Future<?> schedule(Runnable task, long delayMs) {
+                return executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+        };
+    }
+
+    private final Timer mTimer;
+    private final Lock mReaderLock;
+    private final Output mOutput;
+
+    private volatile int mMode = 0;
+    private volatile int mSignal = 0;
+    private volatile boolean mRunning = false;
+
+    //Guarded by this
+    private Future<?> mNext;
+    private long mLastFeedbackTime = 0;
+    private long mFeedbackCount = 0;
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    FeedbackScheduler(Timer timer, Lock readerLock, Output output) {
+        mTimer = timer;
+        mReaderLock = readerLock;
+        mOutput = output;
+    }
+
+    /**
+     * MODE_ flags, 0 disables feedback.
+     */
+    void setMode(int mode) {
+        mMode = mode;
+        if (mode != 0 && mSignal > 0)
+            schedule(0);
+    }
+
+    int getMode() {
+        return mMode;
+    }
+
+    synchronized void start() {
+        mRunning = true;
+        mSignal = 0;
+    }
+
+    synchronized void stop() {
+        mRunning = false;
+        mSignal = 0;
+        if (mNext != null) {
+            mNext.cancel(false);
+            mNext = null;
+        }
+    }
+
+    /**
+     * Latest smoothed signal 0-100. Found tag starts feedback right away.
+     */
+    void onSignal(int signal) {
+        int previous = mSignal;
+        mSignal = signal;
+        if (previous <= 0 && signal > 0)
+            schedule(0);
+    }
+
+    synchronized long getFeedbackCount() {
+        return mFeedbackCount;
+    }
+
+    /**
+     * Time between feedbacks for signal: 100-200 ms while found, shortest near the tag.
+     */
+    static long intervalFor(int signal) {
+        long interval = signal > STRONG_SIGNAL ? 150 - signal : 200 - signal;
+        return Math.max(MIN_INTERVAL_MS, interval);
+    }
+
+    private synchronized void schedule(long delayMs) {
+        if (!mRunning || mMode == 0 || (mNext != null && !mNext.isDone()))
+            return;
+        mNext = mTimer.schedule(mTick, delayMs);
+    }
+
+    private void tick() {
+        int signal = mSignal;
+        int mode = mMode;
+        synchronized (this) {
+            mNext = null;
+            if (!mRunning || mode == 0 || signal <= 0)
+                return;
+            long wait = mLastFeedbackTime + MIN_INTERVAL_MS - mTimer.now();
+            // Link is in use by trace pass or reader command
+            if (wait > 0 || !mReaderLock.tryLock()) {
+                mNext = mTimer.schedule(mTick, Math.max(BUSY_RETRY_MS, wait));
+                return;
+            }
+            mLastFeedbackTime = mTimer.now();
+            mFeedbackCount++;
+        }
+
+        int duration = signal > STRONG_SIGNAL ? SHORT_MS : LONG_MS;
+        try {
+            if ((mode & MODE_BEEP) != 0)
+                mOutput.beep(duration);
+            if ((mode & MODE_VIBRATE) != 0)
+                mOutput.vibrate(duration);
+        } catch (Exception ex) {
+            // Feedback is best effort
+        } finally {
+            mReaderLock.unlock();
+        }
+        schedule(intervalFor(signal));
+    }
+}
@@ -0,0 +1,47 @@
+package com.nordic_id.reader.nordic_id;
+
+/**
+ * Stable merge sort of int ids with a comparator over the ids, for structures keeping entries in parallel
+ * primitive arrays where sorting objects would mean boxing every entry.
+ */
+final class IdSort {
+    interface IdComparator {
+        int compare(int a, int b);
+    }
+
+    private IdSort() {
+    }
+
+    static void sort(int[] ids, IdComparator comparator) {
+        if (ids.length > 1)
+            mergeSort(ids, new int[ids.length], 0, ids.length, comparator);
+    }
+
+    private static void mergeSort(int[] ids, int[] tmp, int from, int to, IdComparator comparator) {
+        if (to - from < 8) {
+            // Insertion sort of short runs
+            for (int i = from + 1; i < to; i++) {
+                int id = ids[i];
+                int j = i;
+                for (; j > from && comparator.compare(ids[j - 1], id) > 0; j--)
+                    ids[j] = ids[j - 1];
+                ids[j] = id;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(ids, tmp, from, mid, comparator);
+        mergeSort(ids, tmp, mid, to, comparator);
+        if (comparator.compare(ids[mid - 1], ids[mid]) <= 0)
+            return;
+        System.arraycopy(ids, from, tmp, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int n = from; n < to; n++) {
+            if (right >= to || (left < mid && comparator.compare(tmp[left], tmp[right]) <= 0))
+                ids[n] = tmp[left++];
+            else
+                ids[n] = tmp[right++];
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.Arrays;
+
+/**
+ * Incremental inventory. Tags are kept over inventory rounds and only changes are reported:
+ * ADDED when tag is seen first time or again after it was lost,
+ * UPDATED when RSSI moved at least rssi threshold from last reported value,
+ * LOST when tag has not been seen for lost timeout.
+ * When disabled only ADDED is reported, for tags new in the round.
+ * Per tag state is indexed by TagIndex tag id, only tags passed to onObserved are tracked.
+ * Not thread safe, caller synchronizes.
+ */
+class InventoryDelta {
+    static final int NO_EVENT = -1;
+
+    static final int DEFAULT_RSSI_THRESHOLD = 5;
+    static final long DEFAULT_LOST_TIMEOUT_MS = 3000;
+
+    private volatile boolean mEnabled = false;
+    private volatile int mRssiThreshold = DEFAULT_RSSI_THRESHOLD;
+    private volatile long mLostTimeoutMs = DEFAULT_LOST_TIMEOUT_MS;
+
+    private short[] mReportedRssi = new short[1024];
+    private boolean[] mLost = new boolean[1024];
+    private boolean[] mTracked = new boolean[1024];
+    private long mNextSweep = 0;
+
+    void configure(boolean enabled, int rssiThreshold, long lostTimeoutMs) {
+        mRssiThreshold = Math.max(1, rssiThreshold);
+        mLostTimeoutMs = Math.max(1, lostTimeoutMs);
+        mEnabled = enabled;
+        mNextSweep = 0;
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Call when TagIndex is cleared.
+     */
+    void clear() {
+        Arrays.fill(mTracked, false);
+        mNextSweep = 0;
+    }
+
+    /**
+     * Call after TagIndex.observe.
+     *
+     * @return TagEvent type to report or NO_EVENT
+     */
+    int onObserved(TagIndex index, int id) {
+        if (id >= mLost.length) {
+            int capacity = Math.max(id + 1, mLost.length * 2);
+            mReportedRssi = Arrays.copyOf(mReportedRssi, capacity);
+            mLost = Arrays.copyOf(mLost, capacity);
+            mTracked = Arrays.copyOf(mTracked, capacity);
+        }
+
+        int rssi = index.getLastRssi(id);
+        // Tag may be in index already without being reported, e.g. read while SKU aggregation was on
+        if (index.getReadCount(id) == 1 || !mTracked[id] || mLost[id]) {
+            mTracked[id] = true;
+            mLost[id] = false;
+            mReportedRssi[id] = (short) rssi;
+            return TagEvent.TYPE_ADDED;
+        }
+
+        if (mEnabled && Math.abs(rssi - mReportedRssi[id]) >= mRssiThreshold) {
+            mReportedRssi[id] = (short) rssi;
+            return TagEvent.TYPE_UPDATED;
+        }
+        return NO_EVENT;
+    }
+
+    /**
+     * Report tags not seen within lost timeout. Sweep runs at most four times per timeout.
+     */
+    void sweepLost(TagIndex index, long now, NurListener listener) {
+        if (!mEnabled || now < mNextSweep)
+            return;
+        mNextSweep = now + mLostTimeoutMs / 4;
+
+        long lostBefore = now - mLostTimeoutMs;
+        int count = Math.min(index.size(), mTracked.length);
+        for (int id = 0; id < count; id++) {
+            if (mTracked[id] && !mLost[id] && index.getLastSeen(id) < lostBefore) {
+                mLost[id] = true;
+                listener.onInventoryResult(new TagEvent(index.getEpc(id), index.getLastRssi(id),
+                        index.getAntennaId(id), now, SensorInventory.NO_SENSOR_DATA, TagEvent.TYPE_LOST));
+            }
+        }
+    }
+}
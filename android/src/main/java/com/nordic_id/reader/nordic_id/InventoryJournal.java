@@ -0,0 +1,396 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Session index of every tag read since clear(), optionally backed by an append only memory mapped journal
+ * file so the session survives process death.
+ * Reads are appended to an in memory staging buffer by the tag pipeline, a journal thread takes the staged
+ * reads every COMMIT_INTERVAL_MS, applies them to the session index and writes them to the file with one
+ * force() per group. Reader thread only copies a few bytes per read.
+ *
+ * File: header (i32 MAGIC, i32 generation), records
+ * Record: u8 epc length, epc bytes, i16 rssi, u8 antenna id, i64 timestamp, i32 CRC32 of generation and record.
+ * clear() bumps generation, so records of the previous session left in the file fail CRC and end recovery
+ * just like a torn record does.
+ * Opening while session already has tags writes the session to the journal first, as if journaling had been
+ * on all the time: first read with best RSSI, then remaining reads with last RSSI and last seen time.
+ */
+class InventoryJournal {
+    static final int MAGIC = 0x4E494A31; // "NIJ1"
+    static final int HEADER_SIZE = 8;
+    //Record size without EPC bytes
+    static final int RECORD_FIXED_SIZE = 16;
+    static final long COMMIT_INTERVAL_MS = 50;
+    static final int INITIAL_MAP_SIZE = 4 * 1024 * 1024;
+    private static final int STAGING_SIZE = 64 * 1024;
+
+    private final ScheduledExecutorService mExecutor;
+
+    //Guarded by this: staged records not yet taken by journal thread
+    private ByteBuffer mStaging = ByteBuffer.allocate(STAGING_SIZE);
+    private ByteBuffer mSpare = ByteBuffer.allocate(STAGING_SIZE);
+    private boolean mCommitScheduled = false;
+
+    //Session index, guarded by itself. Updated on journal thread.
+    private final TagIndex mSession = new TagIndex();
+
+    //Journal thread only
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private MappedByteBuffer mMap;
+    private int mGeneration;
+    private final CRC32 mCrc = new CRC32();
+    private final byte[][] mEpcScratch = new byte[256][];
+
+    private volatile long mRecordCount = 0;
+    private volatile long mCommitCount = 0;
+    private volatile long mRecoveredCount = 0;
+    private volatile long mLastCommitUs = 0;
+    private volatile long mJournalBytes = 0;
+    private volatile String mLastError;
+    //Tags new to session are counted here as PluginMetrics.UNIQUE_TAGS, null = not counted
+    private volatile PluginMetrics mMetrics;
+
+    private final Runnable mCommit = new Runnable() {
+        @Override
+        public void run() {
+            commit();
+        }
+    };
+
+    InventoryJournal(ScheduledExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Count tags new to session as PluginMetrics.UNIQUE_TAGS, so the counter follows the session.
+     */
+    void setMetrics(PluginMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Journal reads to file. Existing journal of the same file is recovered to session index first if session
+     * is empty, otherwise session replaces it.
+     * Runs on journal thread, reads recorded meanwhile are applied after recovery.
+     */
+    void open(final File file) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    openFile(file);
+                } catch (IOException ex) {
+                    mLastError = ex.getMessage();
+                    closeFile();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop journaling and delete journal file, session index is kept.
+     */
+    void close(final File file) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                commit();
+                closeFile();
+                if (file.exists() && !file.delete())
+                    mLastError = "Could not delete " + file;
+            }
+        });
+    }
+
+    /**
+     * Record one read. Called from tag pipeline, does not block on I/O.
+     */
+    synchronized void record(byte[] epc, int rssi, int antennaId, long timestamp) {
+        int size = RECORD_FIXED_SIZE + epc.length;
+        if (mStaging.remaining() < size) {
+            ByteBuffer bigger = ByteBuffer.allocate(mStaging.capacity() * 2 + size);
+            mStaging.flip();
+            bigger.put(mStaging);
+            mStaging = bigger;
+        }
+        mStaging.put((byte) epc.length);
+        mStaging.put(epc);
+        mStaging.putShort((short) rssi);
+        mStaging.put((byte) antennaId);
+        mStaging.putLong(timestamp);
+        // CRC is filled on journal thread
+        mStaging.putInt(0);
+        if (!mCommitScheduled) {
+            mCommitScheduled = true;
+            mExecutor.schedule(mCommit, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Start new session: empty index and journal.
+     */
+    void clear() {
+        synchronized (this) {
+            mStaging.clear();
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mSession) {
+                    mSession.clear();
+                }
+                PluginMetrics metrics = mMetrics;
+                if (metrics != null)
+                    metrics.reset(PluginMetrics.UNIQUE_TAGS);
+                if (mMap != null) {
+                    mGeneration++;
+                    mMap.putInt(4, mGeneration);
+                    mMap.position(HEADER_SIZE);
+                    mMap.force();
+                    mJournalBytes = HEADER_SIZE;
+                }
+            }
+        });
+    }
+
+    /**
+     * Session index for reading, caller must synchronize on it.
+     */
+    TagIndex getSession() {
+        return mSession;
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (mSession) {
+            metrics.put("sessionTags", mSession.size());
+        }
+        metrics.put("records", mRecordCount);
+        metrics.put("recoveredRecords", mRecoveredCount);
+        metrics.put("commits", mCommitCount);
+        metrics.put("lastCommitMs", mLastCommitUs / 1000.0);
+        metrics.put("journalBytes", mJournalBytes);
+        metrics.put("lastError", mLastError);
+        return metrics;
+    }
+
+    /**
+     * Group commit of staged reads. Journal thread.
+     */
+    void commit() {
+        ByteBuffer batch;
+        synchronized (this) {
+            mCommitScheduled = false;
+            if (mStaging.position() == 0)
+                return;
+            batch = mStaging;
+            mStaging = mSpare;
+            mSpare = batch;
+        }
+        long start = System.nanoTime();
+        batch.flip();
+        int count = 0;
+        int newTags;
+        synchronized (mSession) {
+            int sessionSize = mSession.size();
+            while (batch.hasRemaining()) {
+                int recordStart = batch.position();
+                byte[] epc = readRecord(batch, mSession);
+                if (mMap != null)
+                    batch.putInt(batch.position() - 4, crc(batch.array(), recordStart, RECORD_FIXED_SIZE - 4 + epc.length));
+                count++;
+            }
+            newTags = mSession.size() - sessionSize;
+        }
+        countNewTags(newTags);
+
+        if (mMap != null) {
+            try {
+                batch.flip();
+                append(batch);
+                mMap.force();
+            } catch (IOException ex) {
+                mLastError = ex.getMessage();
+                closeFile();
+            }
+        }
+        batch.clear();
+        mRecordCount += count;
+        mCommitCount++;
+        mLastCommitUs = (System.nanoTime() - start) / 1000;
+    }
+
+    /**
+     * Read record at buffer position into index and move position past it.
+     *
+     * @return EPC bytes (scratch array, valid until next read)
+     */
+    private byte[] readRecord(ByteBuffer buf, TagIndex index) {
+        int len = buf.get() & 0xFF;
+        byte[] epc = mEpcScratch[len];
+        if (epc == null)
+            epc = mEpcScratch[len] = new byte[len];
+        buf.get(epc);
+        short rssi = buf.getShort();
+        int antennaId = buf.get() & 0xFF;
+        long timestamp = buf.getLong();
+        buf.getInt();
+        index.observe(epc, rssi, antennaId, timestamp);
+        return epc;
+    }
+
+    private void openFile(File file) throws IOException {
+        if (mMap != null)
+            return;
+        mFile = new RandomAccessFile(file, "rw");
+        mChannel = mFile.getChannel();
+        long length = mChannel.size();
+        mMap = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_MAP_SIZE, length));
+
+        boolean sessionEmpty;
+        synchronized (mSession) {
+            sessionEmpty = mSession.size() == 0;
+        }
+        boolean journalValid = length >= HEADER_SIZE && mMap.getInt(0) == MAGIC;
+        if (journalValid && sessionEmpty) {
+            mGeneration = mMap.getInt(4);
+            mMap.position(HEADER_SIZE);
+            recover();
+        } else {
+            // Records left from an older session fail CRC of new generation
+            if (journalValid)
+                mGeneration = mMap.getInt(4) + 1;
+            mMap.putInt(0, MAGIC);
+            mMap.putInt(4, mGeneration);
+            mMap.position(HEADER_SIZE);
+            mMap.put(HEADER_SIZE, (byte) 0);
+            if (!sessionEmpty)
+                writeSession();
+            mMap.force();
+        }
+        mJournalBytes = mMap.position();
+    }
+
+    /**
+     * Append session index as records, journal then recovers to the same index.
+     */
+    private void writeSession() throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(STAGING_SIZE);
+        byte[] epc = new byte[255];
+        synchronized (mSession) {
+            for (int id = 0; id < mSession.size(); id++) {
+                int len = mSession.copyEpc(id, epc, 0);
+                int reads = mSession.getReadCount(id);
+                for (int n = 0; n < reads; n++) {
+                    if (batch.remaining() < RECORD_FIXED_SIZE + len) {
+                        batch.flip();
+                        append(batch);
+                        batch.clear();
+                    }
+                    int recordStart = batch.position();
+                    batch.put((byte) len);
+                    batch.put(epc, 0, len);
+                    batch.putShort((short) (n == 0 ? mSession.getBestRssi(id) : mSession.getLastRssi(id)));
+                    batch.put((byte) mSession.getAntennaId(id));
+                    batch.putLong(n == 0 ? mSession.getFirstSeen(id) : mSession.getLastSeen(id));
+                    batch.putInt(crc(batch.array(), recordStart, RECORD_FIXED_SIZE - 4 + len));
+                }
+            }
+        }
+        batch.flip();
+        append(batch);
+    }
+
+    //Write records at journal position, caller forces
+    private void append(ByteBuffer records) throws IOException {
+        ensureCapacity(records.remaining());
+        mMap.put(records);
+        // End marker, overwritten by next group
+        if (mMap.remaining() > 0)
+            mMap.put(mMap.position(), (byte) 0);
+        mJournalBytes = mMap.position();
+    }
+
+    /**
+     * Replay valid records from map position into session index, position is left after last valid record.
+     */
+    private void recover() {
+        long recovered = 0;
+        int newTags;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_FIXED_SIZE + 255);
+        synchronized (mSession) {
+            int sessionSize = mSession.size();
+            while (mMap.remaining() > RECORD_FIXED_SIZE) {
+                int len = mMap.get(mMap.position()) & 0xFF;
+                int size = RECORD_FIXED_SIZE + len;
+                if (len == 0 || mMap.remaining() < size)
+                    break;
+                mMap.get(record.array(), 0, size);
+                if (crc(record.array(), 0, size - 4) != record.getInt(size - 4)) {
+                    // Torn write or previous session, journal continues from here
+                    mMap.position(mMap.position() - size);
+                    break;
+                }
+                record.clear();
+                readRecord(record, mSession);
+                recovered++;
+            }
+            newTags = mSession.size() - sessionSize;
+        }
+        countNewTags(newTags);
+        mRecoveredCount = recovered;
+    }
+
+    private void countNewTags(int count) {
+        PluginMetrics metrics = mMetrics;
+        if (metrics != null && count > 0)
+            metrics.add(PluginMetrics.UNIQUE_TAGS, count);
+    }
+
+    //CRC32 of generation and len bytes of buf
+    private int crc(byte[] buf, int offset, int len) {
+        mCrc.reset();
+        mCrc.update(mGeneration >>> 24);
+        mCrc.update(mGeneration >>> 16);
+        mCrc.update(mGeneration >>> 8);
+        mCrc.update(mGeneration);
+        mCrc.update(buf, offset, len);
+        return (int) mCrc.getValue();
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (mMap.remaining() > bytes)
+            return;
+        int position = mMap.position();
+        long size = Math.max((long) mMap.capacity() * 2, (long) position + bytes + 1);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Journal full");
+        mMap.force();
+        mMap = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mMap.position(position);
+    }
+
+    private void closeFile() {
+        mMap = null;
+        try {
+            if (mFile != null)
+                mFile.close();
+        } catch (IOException ex) {
+            // Closing only releases the file
+        }
+        mFile = null;
+        mChannel = null;
+    }
+}
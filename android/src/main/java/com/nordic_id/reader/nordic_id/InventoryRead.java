@@ -0,0 +1,50 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+
+/**
+ * Inventory with read (IR). When enabled the reader reads a memory range of every tag during inventory and
+ * returns it with the EPC, available from NurTag.getIrData() after fetchTags.
+ * Config is kept here and written to reader on apply(), it must be applied again after reconnect.
+ */
+class InventoryRead {
+    private volatile boolean mEnabled = false;
+    private volatile int mBank = NurApi.BANK_TID;
+    private volatile int mAddress = 0;
+    private volatile int mWordCount = 2;
+
+    /**
+     * @param wordCount words to read per tag, 1-NurApi.MAX_IR_WORDS
+     */
+    void configure(boolean enabled, int bank, int address, int wordCount) {
+        if (enabled && (wordCount < 1 || wordCount > NurApi.MAX_IR_WORDS))
+            throw new IllegalArgumentException("Word count must be 1-" + NurApi.MAX_IR_WORDS);
+        mBank = bank;
+        mAddress = address;
+        mWordCount = wordCount;
+        mEnabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Write config to reader. Call on reader thread.
+     */
+    void apply(NurApi api) throws Exception {
+        if (mEnabled)
+            api.setIRConfig(NurApi.IRTYPE_EPCDATA, mBank, mAddress, mWordCount);
+        else
+            api.setIRState(false);
+    }
+
+    /**
+     * @return memory read with tag or null when not enabled or tag had no data
+     */
+    byte[] getData(byte[] irData) {
+        if (!mEnabled || irData == null || irData.length == 0)
+            return null;
+        return irData;
+    }
+}
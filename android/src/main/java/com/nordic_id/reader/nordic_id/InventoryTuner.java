@@ -0,0 +1,162 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adaptive inventory parameters.
+ * Tag population is estimated from found tags and collided slots of each round (Schoute estimate),
+ * Q is steered so the frame has about one slot per tag and rounds grow with population.
+ * Big populations are inventoried in session S1 flipping target A/B whenever a round finds nothing,
+ * so already read tags stay quiet and weak tags get their turn. Only the first empty round after tags were found
+ * flips target, further empty rounds mean tags are gone and decay the estimate like any other round.
+ */
+class InventoryTuner {
+    static final int MAX_Q = 15;
+    static final int MAX_ROUNDS = 10;
+    //Population from which dual target S1 inventory is used. Back to S0 below half of this.
+    static final int DUAL_TARGET_POPULATION = 32;
+    //Tags per round added on top of the first one
+    static final int TAGS_PER_ROUND = 256;
+
+    //Expected number of tags in one collided slot
+    private static final double COLLISION_TAGS = 2.39;
+    private static final double EWMA_ALPHA = 0.2;
+
+    private volatile boolean mEnabled = false;
+
+    private int mQ = 4;
+    private int mRounds = 1;
+    private int mSession = NurApi.SESSION_S0;
+    private int mTarget = NurApi.INVTARGET_A;
+
+    private double mPopulation = 0;
+    private double mTagsPerSecond = 0;
+    private double mCollisionRate = 0;
+    private long mRoundCount = 0;
+    private long mTargetFlips = 0;
+    //Rounds in a row without tags or collisions
+    private int mEmptyRounds = 0;
+
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    synchronized void reset() {
+        mQ = 4;
+        mRounds = 1;
+        mSession = NurApi.SESSION_S0;
+        mTarget = NurApi.INVTARGET_A;
+        mPopulation = 0;
+        mTagsPerSecond = 0;
+        mCollisionRate = 0;
+        mRoundCount = 0;
+        mTargetFlips = 0;
+        mEmptyRounds = 0;
+    }
+
+    /**
+     * Feed result of one inventory command and adjust parameters for the next one.
+     *
+     * @param tagsFound  tags found, 0 when reader reported no tag
+     * @param collisions collided slots of all rounds
+     * @param roundsDone rounds done by the command
+     * @param durationMs time of the inventory command
+     * @return true when Q, rounds, session or target changed
+     */
+    synchronized boolean onRound(int tagsFound, int collisions, int roundsDone, long durationMs) {
+        return onRound(tagsFound, collisions, roundsDone, durationMs, mQ);
+    }
+
+    /**
+     * Same as above for a round done with roundQ, which differs from getQ() when reader chose Q itself
+     * or has not been given the latest one yet, like stream rounds do.
+     */
+    synchronized boolean onRound(int tagsFound, int collisions, int roundsDone, long durationMs, int roundQ) {
+        int q = mQ;
+        int rounds = mRounds;
+        int session = mSession;
+        int target = mTarget;
+        mRoundCount++;
+        if (durationMs > 0)
+            mTagsPerSecond += EWMA_ALPHA * (tagsFound * 1000.0 / durationMs - mTagsPerSecond);
+
+        if (tagsFound == 0 && collisions == 0)
+            mEmptyRounds++;
+        else
+            mEmptyRounds = 0;
+        if (mEmptyRounds == 1 && mSession != NurApi.SESSION_S0) {
+            // All tags answered and moved to other inventoried flag, population is still there
+            mTarget = mTarget == NurApi.INVTARGET_A ? NurApi.INVTARGET_B : NurApi.INVTARGET_A;
+            mTargetFlips++;
+            return true;
+        }
+
+        double roundCollisions = (double) collisions / Math.max(1, roundsDone);
+        double estimate = tagsFound + COLLISION_TAGS * roundCollisions;
+        // No empty slots left, frame is too small for estimate to see the whole population
+        if (roundCollisions > 0 && tagsFound + roundCollisions >= 1 << roundQ)
+            estimate = Math.max(estimate, 2 << roundQ);
+        mPopulation = mRoundCount == 1 ? estimate : mPopulation + EWMA_ALPHA * (estimate - mPopulation);
+        double slotsUsed = tagsFound + roundCollisions;
+        mCollisionRate += EWMA_ALPHA * ((slotsUsed > 0 ? roundCollisions / slotsUsed : 0) - mCollisionRate);
+
+        int targetQ = mPopulation <= 1 ? 0 : (int) Math.round(Math.log(mPopulation) / Math.log(2));
+        targetQ = Math.min(MAX_Q, targetQ);
+        // Jump when far off, otherwise step to avoid oscillating on noisy rounds
+        if (Math.abs(targetQ - mQ) >= 3)
+            mQ = targetQ;
+        else if (targetQ > mQ)
+            mQ++;
+        else if (targetQ < mQ)
+            mQ--;
+
+        mRounds = Math.min(MAX_ROUNDS, 1 + (int) (mPopulation / TAGS_PER_ROUND));
+
+        if (mSession == NurApi.SESSION_S0 && mPopulation >= DUAL_TARGET_POPULATION) {
+            mSession = NurApi.SESSION_S1;
+            mTarget = NurApi.INVTARGET_A;
+        } else if (mSession != NurApi.SESSION_S0 && mPopulation < DUAL_TARGET_POPULATION / 2) {
+            mSession = NurApi.SESSION_S0;
+            mTarget = NurApi.INVTARGET_A;
+        }
+        return q != mQ || rounds != mRounds || session != mSession || target != mTarget;
+    }
+
+    synchronized int getQ() {
+        return mQ;
+    }
+
+    synchronized int getRounds() {
+        return mRounds;
+    }
+
+    synchronized int getSession() {
+        return mSession;
+    }
+
+    synchronized int getTarget() {
+        return mTarget;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", mEnabled);
+        metrics.put("q", mQ);
+        metrics.put("rounds", mRounds);
+        metrics.put("session", mSession);
+        metrics.put("target", mTarget);
+        metrics.put("populationEstimate", mPopulation);
+        metrics.put("tagsPerSecond", mTagsPerSecond);
+        metrics.put("collisionRate", mCollisionRate);
+        metrics.put("roundCount", mRoundCount);
+        metrics.put("targetFlips", mTargetFlips);
+        return metrics;
+    }
+}
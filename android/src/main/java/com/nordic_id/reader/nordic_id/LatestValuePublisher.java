@@ -0,0 +1,82 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Conflating hand off of latest value from a producer thread to a consumer (main) thread.
+ * Producer swaps value into an atomic slot and schedules the preallocated drain only when none is pending,
+ * so publishing never locks or allocates and consumer sees only whole, latest values.
+ * Drains are spaced at least minIntervalMs apart, values published in between replace each other.
+ */
+class LatestValuePublisher<T> {
+    interface Consumer<T> {
+        void accept(T value);
+    }
+
+    /**
+     * Runs drain on consumer thread after delay, e.g. Handler.postDelayed.
+     */
+    interface Scheduler {
+        void schedule(Runnable drain, long delayMs);
+    }
+
+    private final AtomicReference<T> mSlot = new AtomicReference<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private final Scheduler mScheduler;
+    private final Consumer<T> mConsumer;
+    private final long mMinIntervalMs;
+
+    private final AtomicLong mPublishedCount = new AtomicLong();
+    private final AtomicLong mDeliveredCount = new AtomicLong();
+    //Written on consumer thread, read on producer thread
+    private volatile long mLastDrainTime = 0;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            mLastDrainTime = System.currentTimeMillis();
+            // Clear flag before taking value: value published after this schedules a new drain
+            mScheduled.set(false);
+            T value = mSlot.getAndSet(null);
+            if (value != null) {
+                mDeliveredCount.incrementAndGet();
+                mConsumer.accept(value);
+            }
+        }
+    };
+
+    LatestValuePublisher(Scheduler scheduler, long minIntervalMs, Consumer<T> consumer) {
+        mScheduler = scheduler;
+        mMinIntervalMs = minIntervalMs;
+        mConsumer = consumer;
+    }
+
+    /**
+     * Replace pending value, callable from any thread. Value must not be modified after publishing.
+     */
+    void publish(T value) {
+        mPublishedCount.incrementAndGet();
+        mSlot.set(value);
+        if (mScheduled.compareAndSet(false, true)) {
+            long wait = mLastDrainTime + mMinIntervalMs - System.currentTimeMillis();
+            mScheduler.schedule(mDrain, Math.max(0, wait));
+        }
+    }
+
+    /**
+     * Drop pending value, scheduled drain finds nothing.
+     */
+    void clear() {
+        mSlot.set(null);
+    }
+
+    long getPublishedCount() {
+        return mPublishedCount.get();
+    }
+
+    long getDeliveredCount() {
+        return mDeliveredCount.get();
+    }
+}
@@ -0,0 +1,143 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurInventoryExtended;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Locates several tags at once.
+ * Every cycle is one filtered extended inventory selecting up to NurApi.MAX_FILTERS of the EPCs,
+ * bigger lists are split to chunks inventoried in turn. Signal of each EPC is smoothed like in single tag trace.
+ */
+class MultiTagTrace {
+    //EPC starts after CRC and PC words of EPC bank
+    static final int EPC_BIT_ADDRESS = 32;
+    static final int SIGNAL_WINDOW = 3;
+
+    private final NurInventoryExtended mInvParam = new NurInventoryExtended();
+
+    private byte[][] mEpcs = new byte[0][];
+    private String[] mEpcHex = new String[0];
+    private AvgBuffer[] mSignals = new AvgBuffer[0];
+    private NurInventoryExtendedFilter[][] mChunks = new NurInventoryExtendedFilter[0][];
+    private boolean[] mSeen = new boolean[0];
+    private int mChunk = 0;
+
+    MultiTagTrace() {
+        mInvParam.inventorySelState = NurApi.INVSELSTATE_SL;
+        mInvParam.inventoryTarget = NurApi.INVTARGET_A;
+        mInvParam.Q = 0;
+        mInvParam.rounds = 0;
+        mInvParam.session = NurApi.SESSION_S0;
+        mInvParam.transitTime = 0;
+    }
+
+    /**
+     * Set EPCs (hex) to locate, resets signals. Throws on invalid hex.
+     */
+    void setTargets(List<String> epcs) throws Exception {
+        int count = epcs.size();
+        mEpcs = new byte[count][];
+        mEpcHex = new String[count];
+        mSignals = new AvgBuffer[count];
+        mSeen = new boolean[count];
+        for (int n = 0; n < count; n++) {
+            mEpcs[n] = NurApi.hexStringToByteArray(epcs.get(n));
+            mEpcHex[n] = epcs.get(n).toUpperCase();
+            mSignals[n] = new AvgBuffer(SIGNAL_WINDOW, 0);
+        }
+
+        mChunks = new NurInventoryExtendedFilter[(count + NurApi.MAX_FILTERS - 1) / NurApi.MAX_FILTERS][];
+        for (int c = 0; c < mChunks.length; c++) {
+            int first = c * NurApi.MAX_FILTERS;
+            mChunks[c] = new NurInventoryExtendedFilter[Math.min(NurApi.MAX_FILTERS, count - first)];
+            for (int n = 0; n < mChunks[c].length; n++)
+                // First filter resets SL of others, rest only add their matches
+                mChunks[c][n] = epcFilter(mEpcs[first + n], n == 0 ? NurApi.FILTER_ACTION_0 : NurApi.FILTER_ACTION_1);
+        }
+        mChunk = 0;
+    }
+
+    int getTargetCount() {
+        return mEpcs.length;
+    }
+
+    /**
+     * Inventory next chunk and update signals of its EPCs, missing ones get 0.
+     *
+     * @return best smoothed signal of the chunk
+     */
+    int cycle(NurApi api) throws Exception {
+        if (mChunks.length == 0)
+            return 0;
+        NurInventoryExtendedFilter[] filters = mChunks[mChunk];
+        int first = mChunk * NurApi.MAX_FILTERS;
+        mChunk = (mChunk + 1) % mChunks.length;
+
+        Arrays.fill(mSeen, first, first + filters.length, false);
+        NurTagStorage storage = api.getStorage();
+        try {
+            api.clearIdBuffer(true);
+            api.inventoryExtended(mInvParam, filters, filters.length);
+            api.fetchTags();
+            synchronized (storage) {
+                for (int t = 0; t < storage.size(); t++)
+                    markSeen(storage.get(t), first, filters.length);
+                storage.clear();
+            }
+        } catch (NurApiException ex) {
+            if (ex.error != NurApiErrors.NO_TAG)
+                throw ex;
+        }
+
+        int best = 0;
+        for (int n = first; n < first + filters.length; n++) {
+            if (!mSeen[n])
+                mSignals[n].add(0);
+            best = Math.max(best, (int) mSignals[n].getAvgValue());
+        }
+        return best;
+    }
+
+    /**
+     * Smoothed signal (0-100) of every EPC, in setTargets order.
+     */
+    Map<String, Integer> getSignals() {
+        Map<String, Integer> signals = new LinkedHashMap<>();
+        for (int n = 0; n < mEpcHex.length; n++)
+            signals.put(mEpcHex[n], (int) mSignals[n].getAvgValue());
+        return signals;
+    }
+
+    private void markSeen(NurTag tag, int first, int count) {
+        byte[] epc = tag.getEpc();
+        for (int n = first; n < first + count; n++) {
+            if (!mSeen[n] && Arrays.equals(epc, mEpcs[n])) {
+                mSeen[n] = true;
+                mSignals[n].add(tag.getScaledRssi());
+                return;
+            }
+        }
+    }
+
+    private static NurInventoryExtendedFilter epcFilter(byte[] epc, int action) {
+        NurInventoryExtendedFilter filter = new NurInventoryExtendedFilter();
+        filter.action = action;
+        filter.address = EPC_BIT_ADDRESS;
+        filter.bank = NurApi.BANK_EPC;
+        filter.maskdata = epc;
+        filter.maskBitLength = epc.length * 8;
+        filter.targetSession = NurApi.SESSION_SL;
+        filter.truncate = false;
+        return filter;
+    }
+}
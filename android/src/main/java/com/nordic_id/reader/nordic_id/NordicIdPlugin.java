@@ -2,18 +2,20 @@ package com.nordic_id.reader.nordic_id;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.util.Log;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.nordicid.nurapi.NurApi;
-import com.nordicid.nurapi.NurIRConfig;
-import com.nordicid.nurapi.NurRespReadData;
 
-import java.util.Arrays;
-import java.util.HashMap;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
@@ -25,11 +27,17 @@ import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry;
+import io.reactivex.Observable;
 import io.reactivex.Observer;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
 
 /**
  * NordicIdPlugin
@@ -38,6 +46,9 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
     private MethodChannel channel;
     private static final String CHANNEL_Initialize = "Initialize";
     private static final String CHANNEL_Connect = "Connect";
+    private static final String CHANNEL_ConnectLast = "ConnectLast";
+    private static final String CHANNEL_ForgetReader = "ForgetReader";
+    private static final String CHANNEL_GetReaderProfile = "GetReaderProfile";
     private static final String CHANNEL_Destroy = "Destroy";
     private static final String CHANNEL_StopTrace = "StopTrace";
     private static final String CHANNEL_Reset = "Reset";
@@ -47,12 +58,66 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
     private static final String CHANNEL_ConnectionStatus = "ConnectionStatus";
     private static final String CHANNEL_TagsStatus = "TagsStatus";
     private static final String CHANNEL_ReadTag = "ReadTag";
+    private static final String CHANNEL_StartInventoryStream = "StartInventoryStream";
+    private static final String CHANNEL_StopInventoryStream = "StopInventoryStream";
+    private static final String CHANNEL_SetTagBatching = "SetTagBatching";
+    private static final String CHANNEL_SetSensorInventory = "SetSensorInventory";
+    private static final String CHANNEL_SetDeltaMode = "SetDeltaMode";
+    private static final String CHANNEL_ClearInventory = "ClearInventory";
+    private static final String CHANNEL_CancelReaderCommands = "CancelReaderCommands";
+    private static final String CHANNEL_ReadTags = "ReadTags";
+    private static final String CHANNEL_SetInventoryRead = "SetInventoryRead";
+    private static final String CHANNEL_SetAdaptiveInventory = "SetAdaptiveInventory";
+    private static final String CHANNEL_GetInventoryMetrics = "GetInventoryMetrics";
+    private static final String CHANNEL_GetTraceMetrics = "GetTraceMetrics";
+    private static final String CHANNEL_StartMultiTrace = "StartMultiTrace";
+    private static final String CHANNEL_TraceStatus = "TraceStatus";
+    private static final String CHANNEL_SetTraceFeedback = "SetTraceFeedback";
+    private static final String CHANNEL_GetMetrics = "GetMetrics";
+    private static final String CHANNEL_SetDebugLogging = "SetDebugLogging";
+    private static final String CHANNEL_SetEpcDecoding = "SetEpcDecoding";
+    private static final String CHANNEL_SetSkuAggregation = "SetSkuAggregation";
+    private static final String CHANNEL_GetSkuCounts = "GetSkuCounts";
+    private static final String CHANNEL_SkuCounts = "SkuCounts";
+    private static final String CHANNEL_SetJournaling = "SetJournaling";
+    private static final String CHANNEL_GetSessionTags = "GetSessionTags";
+    private static final String CHANNEL_ExportSession = "ExportSession";
+    private static final String CHANNEL_SetManifest = "SetManifest";
+    private static final String CHANNEL_ClearManifest = "ClearManifest";
+    private static final String CHANNEL_GetManifestCounts = "GetManifestCounts";
+    private static final String CHANNEL_GetMissingTags = "GetMissingTags";
+    private static final String CHANNEL_GetUnexpectedTags = "GetUnexpectedTags";
+    private static final String CHANNEL_ManifestCounts = "ManifestCounts";
+    private static final String CHANNEL_Metrics = "Metrics";
+
+    //XPC_W2 word address of EPC bank
+    private static final int DEFAULT_READ_ADDRESS = 0x22;
 
 
     private static final PublishSubject<Boolean> connectionStatus = PublishSubject.create();
-    private static final PublishSubject<String> tagsStatus = PublishSubject.create();
-
-    Activity activity;
+    //Tags are pushed from NurApi thread, serialized subject makes onNext safe from any thread
+    private static final Subject<TagEvent> tagsStatus = PublishSubject.<TagEvent>create().toSerialized();
+
+    //Tags are delivered to Flutter as one batch per window or when batch gets full
+    private static final int DEFAULT_TAG_BATCH_WINDOW_MS = 50;
+    private static final int DEFAULT_TAG_BATCH_SIZE = 500;
+    private static int mTagBatchWindowMs = DEFAULT_TAG_BATCH_WINDOW_MS;
+    private static int mTagBatchSize = DEFAULT_TAG_BATCH_SIZE;
+    private static EventChannel.EventSink mTagsEventSink;
+    private static Disposable mTagsDisposable;
+    //Trace signals are posted on main thread, delivered as map of EPC to signal 0-100
+    private static EventChannel.EventSink mTraceEventSink;
+    //Metrics are collected on a computation thread and delivered every intervalMs given by listener
+    private static final long DEFAULT_METRICS_INTERVAL_MS = 1000;
+    private static Disposable mMetricsDisposable;
+    //Per GTIN count increments, delivered every intervalMs given by listener when something changed
+    private static final long DEFAULT_SKU_INTERVAL_MS = 250;
+    private static Disposable mSkuDisposable;
+    private static final long DEFAULT_MANIFEST_INTERVAL_MS = 250;
+    private static Disposable mManifestDisposable;
+
+    //Set and cleared on main thread, read on reader thread
+    volatile Activity activity;
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
@@ -60,6 +125,10 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
         channel.setMethodCallHandler(this);
         initReadEvent(flutterPluginBinding.getBinaryMessenger());
         initConnectionEvent(flutterPluginBinding.getBinaryMessenger());
+        initTraceEvent(flutterPluginBinding.getBinaryMessenger());
+        initMetricsEvent(flutterPluginBinding.getBinaryMessenger());
+        initSkuEvent(flutterPluginBinding.getBinaryMessenger());
+        initManifestEvent(flutterPluginBinding.getBinaryMessenger());
     }
 
     @Override
@@ -71,85 +140,416 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
         }
     }
 
-    private void handleMethods(MethodCall call, Result result) {
+    private void handleMethods(final MethodCall call, final Result result) {
+        // Commands talking to the reader are queued on reader thread, results are posted back on main thread
+        final ReaderExecutor reader = NurHelper.getInstance().getReaderExecutor();
         switch (call.method) {
             case CHANNEL_Initialize:
+                Integer simulatedTags = call.argument("simulatedTags");
+                Double simulatedLatencyScale = call.argument("simulatedLatencyScale");
+                SimulatedNurApi.Population simulation = null;
+                if (simulatedTags != null) {
+                    simulation = new SimulatedNurApi.Population();
+                    simulation.tagCount = simulatedTags;
+                    if (simulatedLatencyScale != null)
+                        simulation.latencyScale = simulatedLatencyScale;
+                }
+                NurHelper.getInstance().setSimulation(simulation);
                 init();
                 result.success(true);
                 break;
             case CHANNEL_Connect:
-                NurHelper.getInstance().connect();
+                reader.submit("CONNECT_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        NurHelper.getInstance().connect();
+                        return true;
+                    }
+                }, result);
+                break;
+            case CHANNEL_ConnectLast:
+                reader.submit("CONNECT_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        return NurHelper.getInstance().connectLast();
+                    }
+                }, result);
+                break;
+            case CHANNEL_ForgetReader:
+                NurHelper.getInstance().forgetReader();
                 result.success(true);
                 break;
+            case CHANNEL_GetReaderProfile:
+                result.success(NurHelper.getInstance().getReaderProfile());
+                break;
             case CHANNEL_IsConnected:
-                final boolean isConnected = NurHelper.getInstance().isConnected();
-                result.success(isConnected);
+                reader.submit("CONNECT_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        return NurHelper.getInstance().isConnected();
+                    }
+                }, result);
                 break;
             case CHANNEL_Reset:
                 NurHelper.getInstance().reset();
                 result.success(true);
                 break;
             case CHANNEL_PowerOff:
-                NurHelper.getInstance().powerOff();
-                result.success(true);
+                reader.submit("POWER_OFF_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        NurHelper.getInstance().powerOff();
+                        return true;
+                    }
+                }, result);
                 break;
             case CHANNEL_StopTrace:
-                NurHelper.getInstance().stopTrace();
-                result.success(true);
+                reader.submit("TRACE_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        NurHelper.getInstance().stopTrace();
+                        return true;
+                    }
+                }, result);
                 break;
             case CHANNEL_Destroy:
+                reader.cancelPending();
                 NurHelper.getInstance().destroy();
                 result.success(true);
                 break;
             case CHANNEL_RefreshTracing:
-                try {
-                    if (NurHelper.getInstance().isTracingTag()) {
-                        //Need to stop tag tracing
-                        NurHelper.getInstance().stopTrace();
-                        return;
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        try {
+                            if (NurHelper.getInstance().isTracingTag()) {
+                                //Need to stop tag tracing
+                                NurHelper.getInstance().stopTrace();
+                                return true;
+                            }
+                            //Make single round inventory. Clears old readings unless delta mode is on.
+                            NurHelper.getInstance().doSingleInventory();
+                            return true;
+                        } catch (final Exception ex) {
+                            // Activity may be gone by the time reader thread gets here
+                            final Activity current = activity;
+                            if (current != null) {
+                                current.runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        Toast.makeText(current, ex.getMessage(), Toast.LENGTH_LONG).show();
+                                    }
+                                });
+                            }
+                            return false;
+                        }
                     }
-                    NurHelper.getInstance().clearInventoryReadings(); //Clear all from old stuff
-                    NurHelper.getInstance().doSingleInventory(); //Make single round inventory.
-                } catch (Exception ex) {
-                    Toast.makeText(activity, ex.getMessage(), Toast.LENGTH_LONG).show();
-                    // NurHelper.getInstance().destroy();
-                    result.success(false);
-                }
+                }, result);
+                break;
 
+            case CHANNEL_StartInventoryStream:
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        if (NurHelper.getInstance().isTracingTag())
+                            NurHelper.getInstance().stopTrace();
+                        return NurHelper.getInstance().startInventoryStream();
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_StartMultiTrace:
+                reader.submit("TRACE_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        if (NurHelper.getInstance().isInventoryStreamRunning())
+                            NurHelper.getInstance().stopInventoryStream();
+                        List<String> tags = call.argument("tags");
+                        String error = NurHelper.getInstance().startMultiTrace(tags);
+                        if (!error.isEmpty())
+                            throw new Exception(error);
+                        return true;
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_StopInventoryStream:
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        NurHelper.getInstance().stopInventoryStream();
+                        return true;
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_CancelReaderCommands:
+                result.success(reader.cancelPending());
+                break;
+
+            case CHANNEL_SetTagBatching:
+                Integer windowMs = call.argument("windowMs");
+                Integer maxTags = call.argument("maxTags");
+                setTagBatching(windowMs != null ? windowMs : DEFAULT_TAG_BATCH_WINDOW_MS,
+                        maxTags != null ? maxTags : DEFAULT_TAG_BATCH_SIZE);
                 result.success(true);
                 break;
 
-            case CHANNEL_ReadTag:
-                try {
-                    String epcTag = call.argument("tag");
-                    NurApi nurApi = NurHelper.GetNurApi();
-                    byte[] targetEpcData = NurApi.hexStringToByteArray(epcTag);
+            case CHANNEL_SetSensorInventory:
+                Boolean sensorEnabled = call.argument("enabled");
+                Integer sensorIntervalMs = call.argument("intervalMs");
+                NurHelper.getInstance().setSensorInventory(sensorEnabled != null && sensorEnabled,
+                        sensorIntervalMs != null ? sensorIntervalMs : 0);
+                result.success(true);
+                break;
+
+            case CHANNEL_SetDeltaMode:
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        Boolean deltaEnabled = call.argument("enabled");
+                        Integer rssiThreshold = call.argument("rssiThreshold");
+                        Integer lostTimeoutMs = call.argument("lostTimeoutMs");
+                        NurHelper.getInstance().setDeltaMode(deltaEnabled != null && deltaEnabled,
+                                rssiThreshold != null ? rssiThreshold : InventoryDelta.DEFAULT_RSSI_THRESHOLD,
+                                lostTimeoutMs != null ? lostTimeoutMs : InventoryDelta.DEFAULT_LOST_TIMEOUT_MS);
+                        return true;
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_SetInventoryRead:
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        Boolean enabled = call.argument("enabled");
+                        NurHelper.getInstance().setInventoryRead(enabled != null && enabled,
+                                argumentOr(call, "bank", NurApi.BANK_TID),
+                                argumentOr(call, "address", 0),
+                                argumentOr(call, "words", 2));
+                        return true;
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_SetAdaptiveInventory:
+                // Sensor round parameters are used on reader thread
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        Boolean enabled = call.argument("enabled");
+                        NurHelper.getInstance().setAdaptiveInventory(enabled != null && enabled);
+                        return true;
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_GetInventoryMetrics:
+                result.success(NurHelper.getInstance().getInventoryMetrics());
+                break;
 
-                    // Read XPC_W2 from EPC memory bank which contains sensor data
-                    byte[] sensorData = nurApi.readTag(
-                            0,
-                            NurApi.BANK_EPC,     // Bank 1 (EPC)
-                            0,                // Starting from word address 22h (34 decimal)
-                            35                 // Read 1 word (2 bytes)
-                    );
+            case CHANNEL_SetTraceFeedback:
+                Boolean beep = call.argument("beep");
+                Boolean vibrate = call.argument("vibrate");
+                NurHelper.getInstance().setTraceFeedback((beep != null && beep ? FeedbackScheduler.MODE_BEEP : 0)
+                        | (vibrate != null && vibrate ? FeedbackScheduler.MODE_VIBRATE : 0));
+                result.success(true);
+                break;
+
+            case CHANNEL_GetTraceMetrics:
+                result.success(NurHelper.getInstance().getTraceMetrics());
+                break;
+
+            case CHANNEL_GetMetrics:
+                result.success(NurHelper.getInstance().getMetrics());
+                break;
 
-                    String hexData = NurApi.byteArrayToHexString(sensorData);
+            case CHANNEL_SetDebugLogging:
+                Boolean debug = call.argument("enabled");
+                NurHelper.getInstance().setDebugLogging(debug != null && debug);
+                result.success(true);
+                break;
 
-                    Log.d("HEX DATA FROM SENSOR", hexData);
+            case CHANNEL_SetEpcDecoding:
+                Boolean decode = call.argument("enabled");
+                NurHelper.getInstance().setEpcDecoding(decode != null && decode,
+                        argumentOr(call, "cacheSize", EpcDecoder.DEFAULT_CACHE_SIZE));
+                result.success(true);
+                break;
 
+            case CHANNEL_SetSkuAggregation:
+                Boolean aggregate = call.argument("enabled");
+                NurHelper.getInstance().setSkuAggregation(aggregate != null && aggregate);
+                result.success(true);
+                break;
+
+            case CHANNEL_GetSkuCounts:
+                result.success(NurHelper.getInstance().getSkuCounts());
+                break;
+
+            case CHANNEL_SetJournaling:
+                Boolean journaling = call.argument("enabled");
+                try {
+                    NurHelper.getInstance().setJournaling(journaling != null && journaling);
                     result.success(true);
+                } catch (IllegalStateException ex) {
+                    result.error("JOURNAL_ERROR", ex.getMessage(), null);
+                }
+                break;
 
-                } catch (Exception ex) {
-                    Toast.makeText(activity, "Failed to read tag: " + ex.getMessage(), Toast.LENGTH_LONG).show();
-                    result.error("READ_ERROR", ex.getMessage(), null);
+            case CHANNEL_GetSessionTags:
+                // Encoding a big session takes a while, keep it off main thread
+                Single.fromCallable(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        return NurHelper.getInstance().getSessionTags();
+                    }
+                })
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(new Consumer<byte[]>() {
+                            @Override
+                            public void accept(byte[] tags) {
+                                result.success(tags);
+                            }
+                        }, new Consumer<Throwable>() {
+                            @Override
+                            public void accept(Throwable error) {
+                                result.error("SESSION_ERROR", error.getMessage(), null);
+                            }
+                        });
+                break;
+
+            case CHANNEL_ExportSession:
+                final String path = call.argument("path");
+                final Boolean binary = call.argument("binary");
+                final Boolean deflate = call.argument("deflate");
+                if (path == null) {
+                    result.error("EXPORT_ERROR", "path is required", null);
+                    break;
+                }
+                Single.fromCallable(new Callable<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> call() throws Exception {
+                        return NurHelper.getInstance().exportSession(new File(path), binary != null && binary,
+                                deflate == null || deflate);
+                    }
+                })
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(new Consumer<Map<String, Object>>() {
+                            @Override
+                            public void accept(Map<String, Object> stats) {
+                                result.success(stats);
+                            }
+                        }, new Consumer<Throwable>() {
+                            @Override
+                            public void accept(Throwable error) {
+                                result.error("EXPORT_ERROR", error.getMessage(), null);
+                            }
+                        });
+                break;
+
+            case CHANNEL_SetManifest:
+                final byte[] manifest = call.argument("epcs");
+                if (manifest == null) {
+                    result.error("MANIFEST_ERROR", "epcs is required", null);
+                    break;
                 }
+                // Sorting 500k EPCs takes a while
+                Single.fromCallable(new Callable<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> call() {
+                        return NurHelper.getInstance().loadManifest(manifest);
+                    }
+                })
+                        .subscribeOn(Schedulers.computation())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(new Consumer<Map<String, Object>>() {
+                            @Override
+                            public void accept(Map<String, Object> counts) {
+                                result.success(counts);
+                            }
+                        }, new Consumer<Throwable>() {
+                            @Override
+                            public void accept(Throwable error) {
+                                result.error("MANIFEST_ERROR", error.getMessage(), null);
+                            }
+                        });
                 break;
 
+            case CHANNEL_ClearManifest:
+                NurHelper.getInstance().clearManifest();
+                result.success(true);
+                break;
+
+            case CHANNEL_GetManifestCounts:
+                result.success(NurHelper.getInstance().getManifestCounts());
+                break;
+
+            case CHANNEL_GetMissingTags:
+            case CHANNEL_GetUnexpectedTags:
+                Integer offset = call.argument("offset");
+                Integer limit = call.argument("limit");
+                int pageOffset = offset != null ? offset : 0;
+                int pageLimit = limit != null ? limit : 1000;
+                result.success(call.method.equals(CHANNEL_GetMissingTags)
+                        ? NurHelper.getInstance().getMissingTags(pageOffset, pageLimit)
+                        : NurHelper.getInstance().getUnexpectedTags(pageOffset, pageLimit));
+                break;
+
+            case CHANNEL_ClearInventory:
+                reader.submit("INVENTORY_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() {
+                        NurHelper.getInstance().clearInventoryReadings();
+                        NurHelper.getInstance().clearSession();
+                        return true;
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_ReadTag:
+                reader.submit("READ_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        String epcTag = call.argument("tag");
+                        byte[] targetEpcData = NurApi.hexStringToByteArray(epcTag);
+                        // Defaults to XPC_W2 word of EPC bank, contains sensor data
+                        byte[] data = NurHelper.getInstance().readTag(targetEpcData,
+                                argumentOr(call, "bank", NurApi.BANK_EPC),
+                                argumentOr(call, "address", DEFAULT_READ_ADDRESS),
+                                argumentOr(call, "words", 1));
+                        return NurApi.byteArrayToHexString(data);
+                    }
+                }, result);
+                break;
+
+            case CHANNEL_ReadTags:
+                reader.submit("READ_ERROR", new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        List<String> tags = call.argument("tags");
+                        List<byte[]> epcs = new ArrayList<>(tags.size());
+                        for (String tag : tags)
+                            epcs.add(NurApi.hexStringToByteArray(tag));
+                        return NurHelper.getInstance().readTags(epcs,
+                                argumentOr(call, "bank", NurApi.BANK_EPC),
+                                argumentOr(call, "address", DEFAULT_READ_ADDRESS),
+                                argumentOr(call, "words", 1));
+                    }
+                }, result);
+                break;
             default:
                 result.notImplemented();
         }
     }
 
+    private static int argumentOr(MethodCall call, String key, int defaultValue) {
+        Integer value = call.argument(key);
+        return value != null ? value : defaultValue;
+    }
+
     private static void initConnectionEvent(BinaryMessenger messenger) {
         final EventChannel connectionEventChannel = new EventChannel(messenger, CHANNEL_ConnectionStatus);
         connectionEventChannel.setStreamHandler(new EventChannel.StreamHandler() {
@@ -192,38 +592,206 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
         scannerEventChannel.setStreamHandler(new EventChannel.StreamHandler() {
             @Override
             public void onListen(Object o, final EventChannel.EventSink eventSink) {
-                tagsStatus
-                        .subscribeOn(Schedulers.newThread())
-                        .observeOn(AndroidSchedulers.mainThread()).subscribe(new Observer<String>() {
-                            @Override
-                            public void onSubscribe(Disposable d) {
+                mTagsEventSink = eventSink;
+                subscribeTagBatches();
+            }
 
-                            }
+            @Override
+            public void onCancel(Object o) {
+                mTagsEventSink = null;
+                subscribeTagBatches();
+            }
+        });
+    }
+
+    private static void initTraceEvent(BinaryMessenger messenger) {
+        final EventChannel traceEventChannel = new EventChannel(messenger, CHANNEL_TraceStatus);
+        traceEventChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object o, final EventChannel.EventSink eventSink) {
+                mTraceEventSink = eventSink;
+            }
+
+            @Override
+            public void onCancel(Object o) {
+                mTraceEventSink = null;
+            }
+        });
+    }
 
+    private static void initMetricsEvent(BinaryMessenger messenger) {
+        final EventChannel metricsEventChannel = new EventChannel(messenger, CHANNEL_Metrics);
+        metricsEventChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, final EventChannel.EventSink eventSink) {
+                long intervalMs = arguments instanceof Number
+                        ? Math.max(1, ((Number) arguments).longValue()) : DEFAULT_METRICS_INTERVAL_MS;
+                disposeMetrics();
+                mMetricsDisposable = Observable.interval(intervalMs, TimeUnit.MILLISECONDS)
+                        .map(new Function<Long, Map<String, Object>>() {
                             @Override
-                            public void onNext(String tag) {
-                                eventSink.success(tag);
+                            public Map<String, Object> apply(Long tick) {
+                                return NurHelper.getInstance().getMetrics(PluginMetrics.CONSUMER_STREAM);
                             }
-
+                        })
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(new Consumer<Map<String, Object>>() {
                             @Override
-                            public void onError(Throwable e) {
-
+                            public void accept(Map<String, Object> metrics) {
+                                eventSink.success(metrics);
                             }
+                        });
+            }
 
-                            @Override
-                            public void onComplete() {
+            @Override
+            public void onCancel(Object o) {
+                disposeMetrics();
+            }
+        });
+    }
 
+    private static void initSkuEvent(BinaryMessenger messenger) {
+        final EventChannel skuEventChannel = new EventChannel(messenger, CHANNEL_SkuCounts);
+        skuEventChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, final EventChannel.EventSink eventSink) {
+                long intervalMs = arguments instanceof Number
+                        ? Math.max(1, ((Number) arguments).longValue()) : DEFAULT_SKU_INTERVAL_MS;
+                disposeSku();
+                mSkuDisposable = Observable.interval(intervalMs, TimeUnit.MILLISECONDS)
+                        .map(new Function<Long, Map<String, Integer>>() {
+                            @Override
+                            public Map<String, Integer> apply(Long tick) {
+                                return NurHelper.getInstance().drainSkuDeltas();
+                            }
+                        })
+                        .filter(new Predicate<Map<String, Integer>>() {
+                            @Override
+                            public boolean test(Map<String, Integer> deltas) {
+                                return !deltas.isEmpty();
+                            }
+                        })
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(new Consumer<Map<String, Integer>>() {
+                            @Override
+                            public void accept(Map<String, Integer> deltas) {
+                                eventSink.success(deltas);
                             }
                         });
             }
 
             @Override
             public void onCancel(Object o) {
+                disposeSku();
+            }
+        });
+    }
 
+    private static void initManifestEvent(BinaryMessenger messenger) {
+        final EventChannel manifestEventChannel = new EventChannel(messenger, CHANNEL_ManifestCounts);
+        manifestEventChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, final EventChannel.EventSink eventSink) {
+                long intervalMs = arguments instanceof Number
+                        ? Math.max(1, ((Number) arguments).longValue()) : DEFAULT_MANIFEST_INTERVAL_MS;
+                disposeManifest();
+                // Counts are delivered only when they changed
+                mManifestDisposable = Observable.interval(intervalMs, TimeUnit.MILLISECONDS)
+                        .map(new Function<Long, Long>() {
+                            @Override
+                            public Long apply(Long tick) {
+                                return NurHelper.getInstance().getManifestVersion();
+                            }
+                        })
+                        .distinctUntilChanged()
+                        .map(new Function<Long, Map<String, Object>>() {
+                            @Override
+                            public Map<String, Object> apply(Long version) {
+                                return NurHelper.getInstance().getManifestCounts();
+                            }
+                        })
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(new Consumer<Map<String, Object>>() {
+                            @Override
+                            public void accept(Map<String, Object> counts) {
+                                eventSink.success(counts);
+                            }
+                        });
+            }
+
+            @Override
+            public void onCancel(Object o) {
+                disposeManifest();
             }
         });
     }
 
+    private static synchronized void disposeManifest() {
+        if (mManifestDisposable != null) {
+            mManifestDisposable.dispose();
+            mManifestDisposable = null;
+        }
+    }
+
+    private static synchronized void disposeSku() {
+        if (mSkuDisposable != null) {
+            mSkuDisposable.dispose();
+            mSkuDisposable = null;
+        }
+    }
+
+    private static synchronized void disposeMetrics() {
+        if (mMetricsDisposable != null) {
+            mMetricsDisposable.dispose();
+            mMetricsDisposable = null;
+        }
+    }
+
+    /**
+     * Set how tags are coalesced before delivering them to Flutter.
+     * Batch is flushed every windowMs or as soon as maxTags tags are collected.
+     */
+    static synchronized void setTagBatching(int windowMs, int maxTags) {
+        mTagBatchWindowMs = Math.max(1, windowMs);
+        mTagBatchSize = Math.max(1, maxTags);
+        subscribeTagBatches();
+    }
+
+    private static synchronized void subscribeTagBatches() {
+        if (mTagsDisposable != null) {
+            mTagsDisposable.dispose();
+            mTagsDisposable = null;
+        }
+
+        final EventChannel.EventSink eventSink = mTagsEventSink;
+        if (eventSink == null)
+            return;
+
+        // Encode on the buffer thread so main thread only hands the batch to the channel
+        mTagsDisposable = tagsStatus
+                .buffer(mTagBatchWindowMs, TimeUnit.MILLISECONDS, mTagBatchSize)
+                .filter(new Predicate<List<TagEvent>>() {
+                    @Override
+                    public boolean test(List<TagEvent> tags) {
+                        return !tags.isEmpty();
+                    }
+                })
+                .map(new Function<List<TagEvent>, byte[]>() {
+                    @Override
+                    public byte[] apply(List<TagEvent> tags) {
+                        EpcDecoder decoder = NurHelper.getInstance().getEpcDecoder();
+                        return TagEventCodec.encode(tags, decoder.isEnabled() ? decoder : null);
+                    }
+                })
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Consumer<byte[]>() {
+                    @Override
+                    public void accept(byte[] tags) {
+                        eventSink.success(tags);
+                    }
+                });
+    }
+
 
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
@@ -258,6 +826,15 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
 
     @Override
     public void onTraceTagEvent(int scaledRssi) {
+        String epc = NurHelper.mSelectedEpc;
+        if (mTraceEventSink != null && epc != null)
+            mTraceEventSink.success(Collections.singletonMap(epc.toUpperCase(), scaledRssi));
+    }
+
+    @Override
+    public void onMultiTagTraceEvent(Map<String, Integer> signals) {
+        if (mTraceEventSink != null)
+            mTraceEventSink.success(signals);
     }
 
     @Override
@@ -265,18 +842,24 @@ public class NordicIdPlugin implements FlutterPlugin, MethodCallHandler, Activit
     }
 
     @Override
-    public void onInventoryResult(HashMap<String, String> tags,String jsonString) {
-        if (tags != null)
-            tagsStatus.onNext(jsonString);
+    public void onInventoryResult(TagEvent tag) {
+        if (tag == null)
+            return;
+        // Nobody listens to tags, subject drops the event
+        if (mTagsEventSink == null)
+            NurHelper.getInstance().getPluginMetrics().increment(PluginMetrics.DROPPED_TAG_EVENTS);
+        tagsStatus.onNext(tag);
     }
 
     @Override
     public void onDetachedFromActivityForConfigChanges() {
+        this.activity = null;
     }
 
 
     @Override
     public void onDetachedFromActivity() {
+        this.activity = null;
     }
 
     @Override
@@ -2,8 +2,12 @@ package com.nordic_id.reader.nordic_id;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -11,6 +15,7 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.nordicid.nurapi.AccConfig;
+import com.nordicid.nurapi.AntennaMapping;
 import com.nordicid.nurapi.AccSensorConfig;
 import com.nordicid.nurapi.AccessoryExtension;
 import com.nordicid.nurapi.BleScanner;
@@ -35,22 +40,25 @@ import com.nordicid.nurapi.NurEventTagTrackingChange;
 import com.nordicid.nurapi.NurEventTagTrackingData;
 import com.nordicid.nurapi.NurEventTraceTag;
 import com.nordicid.nurapi.NurEventTriggeredRead;
-import com.nordicid.nurapi.NurInventoryExtended;
-import com.nordicid.nurapi.NurInventoryExtendedFilter;
 import com.nordicid.nurapi.NurRespDevCaps;
+import com.nordicid.nurapi.NurRespInventory;
 import com.nordicid.nurapi.NurRespReadData;
 import com.nordicid.nurapi.NurRespReaderInfo;
 import com.nordicid.nurapi.NurTag;
 import com.nordicid.nurapi.NurTagStorage;
 import com.nordicid.nurapi.BleScanner;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import nordicid.com.nurupdate.NurDeviceUpdate;
 import nordicid.com.nurupdate.NurUpdateParams;
@@ -71,16 +79,18 @@ public class NurHelper {
     public Activity context;
     private final int APP_PERMISSION_REQ_CODE = 41;
     //Need to keep track connection state with NurApi IsConnected
-    private boolean mIsConnected;
+    private volatile boolean mIsConnected;
 
     private static NurApi mNurApi;
     private static AccessoryExtension mAccExt; //accessories of reader like barcode scanner, beeper, vibration..
     static boolean mShowingSmartPair = false;
     static boolean mAppPaused = false;
     private NurApiAutoConnectTransport hAcTr;
+    //Simulated reader used instead of real one when set before init()
+    private SimulatedNurApi.Population mSimulation;
 
-    //In here found tags stored
-    private NurTagStorage mTagStorage = new NurTagStorage();
+    //In here found tags stored. Guarded by NurApi tag storage lock.
+    private final TagIndex mTagIndex = new TagIndex();
 
     //Controller of Trace tag
     private TraceTagController mTraceController;
@@ -90,6 +100,91 @@ public class NurHelper {
     //Selected EPC to Trace
     static String mSelectedEpc;
 
+    //Continuous inventory stream requested by the app. Stream is restarted when reader reports it stopped.
+    private volatile boolean mInventoryStreamRunning = false;
+
+    //Reports only tag changes between rounds when enabled. Guarded by NurApi tag storage lock.
+    private final InventoryDelta mInventoryDelta = new InventoryDelta();
+
+    //Filtered extended inventory returning sensing data of sensor tags
+    private final SensorInventory mSensorInventory = new SensorInventory();
+
+    //Memory range read with every tag during inventory
+    private final InventoryRead mInventoryRead = new InventoryRead();
+
+    //Adapts Q, rounds, session and target to tag population when enabled
+    private final InventoryTuner mInventoryTuner = new InventoryTuner();
+    //Setup values read on every inventory and trace, filled on connect
+    private final ReaderConfigCache mReaderConfig = new ReaderConfigCache();
+    //Last connected reader, capabilities served from here while connected
+    private SharedPreferences mPrefs;
+    private volatile ReaderProfile mProfile = new ReaderProfile();
+    private volatile NurRespDevCaps mDeviceCaps;
+    //Written on reader thread when stream starts, read on NurApi thread
+    private volatile long mStreamRoundStart;
+    //Tuner setup write of running stream is queued on reader thread, at most one at a time
+    private final AtomicBoolean mStreamSetupPending = new AtomicBoolean();
+    private final AtomicBoolean mStreamSensorPending = new AtomicBoolean();
+
+    //Bulk memory reads of tags, used on reader thread only
+    private final TagMemoryReader mTagMemoryReader = new TagMemoryReader();
+
+    //Counters and latencies reported by getMetrics(), per tag logging only when debug logging is on
+    private final PluginMetrics mMetrics = new PluginMetrics();
+    private volatile boolean mDebugLogging = false;
+
+    //GS1 fields of tags, decoded on tag batch thread
+    private final EpcDecoder mEpcDecoder = new EpcDecoder();
+    //Per GTIN counts replace tag events when enabled
+    private final SkuAggregator mSkuAggregator = new SkuAggregator(mEpcDecoder);
+
+    //Reader commands run here one at a time, results are posted to main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ReaderExecutor mReaderExecutor = new ReaderExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mMainHandler.post(command);
+        }
+    });
+
+    //Trace beep/vibrate, shared timer thread instead of a thread per trace session
+    private final ScheduledExecutorService mFeedbackExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "NurFeedback");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    //Session of all reads since clearSession(), journaled to file on its own thread when enabled
+    private static final String JOURNAL_FILE = "inventory.journal";
+    private final InventoryJournal mJournal = new InventoryJournal(Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "NurJournal");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }));
+    private File mJournalFile;
+    private final ExpectedManifest mManifest = new ExpectedManifest();
+    private final FeedbackScheduler mFeedback = new FeedbackScheduler(FeedbackScheduler.timerOf(mFeedbackExecutor),
+            mReaderExecutor.getLock(), new FeedbackScheduler.Output() {
+                @Override
+                public void beep(int durationMs) throws Exception {
+                    if (mIsAccessorySupported)
+                        mAccExt.beepAsync(durationMs);
+                }
+
+                @Override
+                public void vibrate(int durationMs) throws Exception {
+                    if (mIsAccessorySupported)
+                        mAccExt.vibrate(durationMs);
+                }
+            });
+
     //These values will be shown in the UI
     private String mUiConnStatusText;
     private String mUiConnButtonText;
@@ -98,6 +193,10 @@ public class NurHelper {
         return mNurApi;
     }
 
+    ReaderExecutor getReaderExecutor() {
+        return mReaderExecutor;
+    }
+
     public static AccessoryExtension GetAccessoryExtensionApi() {
         return mAccExt;
     }
@@ -155,8 +254,8 @@ public class NurHelper {
 
         mIsConnected = false;
 
-        //Create NurApi handle.
-        mNurApi = new NurApi();
+        //Create NurApi handle. Simulator answers like a reader without any device.
+        mNurApi = mSimulation != null ? new SimulatedNurApi(mSimulation) : new NurApi();
 
         //Accessory extension contains device specific API like barcode read, beep etc..
         //This included in NurApi.jar
@@ -165,6 +264,15 @@ public class NurHelper {
         // In this activity, we use mNurApiListener for receiving events
         mNurApi.setListener(mNurApiListener);
 
+        mPrefs = context.getSharedPreferences(ReaderProfile.PREFS_NAME, Context.MODE_PRIVATE);
+        mProfile = ReaderProfile.load(mPrefs);
+
+        // Journal left by previous process is recovered to session and journaling continues
+        mJournal.setMetrics(mMetrics);
+        mJournalFile = new File(context.getFilesDir(), JOURNAL_FILE);
+        if (mJournalFile.exists())
+            mJournal.open(mJournalFile);
+
         mUiConnStatusText = "Disconnected!";
         mUiConnButtonText = "CONNECT";
     }
@@ -172,6 +280,9 @@ public class NurHelper {
     public void initReading(NurListener nurListener) {
         setNurListener(nurListener);
         mTraceController = new TraceTagController(mNurApi);
+        mTraceController.setFeedbackScheduler(mFeedback);
+        mTraceController.setReaderConfigCache(mReaderConfig);
+        mTraceController.setReaderLock(mReaderExecutor.getLock());
         mTraceController.setListener(new TraceTagController.TraceTagListener() {
             @Override
             public void traceTagEvent(TraceTagController.TracedTagInfo data) {
@@ -180,6 +291,11 @@ public class NurHelper {
                 mLastVal = scaledRssi;
             }
 
+            @Override
+            public void multiTagTraceEvent(Map<String, Integer> signals) {
+                mNurListener.onMultiTagTraceEvent(signals);
+            }
+
             @Override
             public void readerDisconnected() {
                 stopTrace();
@@ -243,6 +359,35 @@ public class NurHelper {
         return "";
     }
 
+    /**
+     * Start locating all EPCs at once. Stopped with stopTrace.
+     *
+     * @return error text, empty when started
+     */
+    public String startMultiTrace(List<String> epcs) {
+        try {
+            if (!mTraceController.isTracingTag()) {
+                if (epcs == null || epcs.isEmpty())
+                    return "Select EPCs to locate";
+                else if (!mNurApi.isConnected())
+                    return "Reader not connected";
+                else if (!mTraceController.startMultiTagTrace(epcs))
+                    return "Invalid EPC";
+            }
+        } catch (Exception ex) {
+            return "Reader error";
+        }
+
+        return "";
+    }
+
+    /**
+     * Trace feedback, FeedbackScheduler.MODE_BEEP and/or MODE_VIBRATE. 0 disables.
+     */
+    public void setTraceFeedback(int mode) {
+        mFeedback.setMode(mode);
+    }
+
     //Set tag to be traced
     public void setTagTrace(String traceTagEPC) {
         mSelectedEpc = traceTagEPC;
@@ -255,112 +400,503 @@ public class NurHelper {
      * Also Listview cleared
      */
     public void clearInventoryReadings() {
-        mNurApi.getStorage().clear();
-        mTagStorage.clear();
+        synchronized (mNurApi.getStorage()) {
+            mNurApi.getStorage().clear();
+            mTagIndex.clear();
+            mInventoryDelta.clear();
+        }
         mNurListener.onClearInventoryReadings();
     }
 
+    /**
+     * Prepare for new inventory round. Delta mode keeps tags over rounds, otherwise round starts from empty.
+     */
+    private void startInventoryRound() {
+        if (mInventoryDelta.isEnabled()) {
+            synchronized (mNurApi.getStorage()) {
+                mNurApi.getStorage().clear();
+            }
+        } else {
+            clearInventoryReadings();
+        }
+    }
+
+    /**
+     * Delta mode: keep tags over rounds and report only added, RSSI updated and lost tags.
+     */
+    public void setDeltaMode(boolean enabled, int rssiThreshold, long lostTimeoutMs) {
+        synchronized (mNurApi.getStorage()) {
+            mInventoryDelta.configure(enabled, rssiThreshold, lostTimeoutMs);
+        }
+    }
+
+    /**
+     * Report tags of delta mode which have not been seen within lost timeout.
+     * Nothing is reported while SKU aggregation is on, as tags are not delivered then.
+     */
+    public void sweepLostTags() {
+        if (mSkuAggregator.isEnabled())
+            return;
+        synchronized (mNurApi.getStorage()) {
+            mInventoryDelta.sweepLost(mTagIndex, System.currentTimeMillis(), mNurListener);
+        }
+    }
+
+    /**
+     * Read wordCount words from bank of tag singulated by EPC. Call on reader thread.
+     */
+    public byte[] readTag(byte[] epc, int bank, int address, int wordCount) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return mNurApi.readTagByEpc(epc, epc.length, bank, address, wordCount);
+        } finally {
+            mMetrics.recordSince(PluginMetrics.READ_TAG_LATENCY, start);
+        }
+    }
+
+    /**
+     * Read same memory area of all tags, see TagMemoryReader for result format. Call on reader thread.
+     */
+    public byte[] readTags(List<byte[]> epcs, int bank, int address, int wordCount) throws Exception {
+        if (!mNurApi.isConnected())
+            throw new NurApiException(NurApiErrors.TR_NOT_CONNECTED);
+        return mTagMemoryReader.readTags(mNurApi, epcs, bank, address, wordCount);
+    }
+
     /**
      * Perform inventory to seek tags near
      */
     public boolean doSingleInventory() throws Exception {
 
-        Log.d("SENSING_DATA", "Performing single inventory");
+        if (mDebugLogging)
+            Log.d("SENSING_DATA", "Performing single inventory");
 
         if (!mNurApi.isConnected())
             return false;
 
+        // Inventory stream is already delivering tags
+        if (mInventoryStreamRunning)
+            return true;
+
         // Make sure antenna autoswitch is enabled
-        if (mNurApi.getSetupSelectedAntenna() != NurApi.ANTENNAID_AUTOSELECT)
-            mNurApi.setSetupSelectedAntenna(NurApi.ANTENNAID_AUTOSELECT);
+        mReaderConfig.setSelectedAntenna(mNurApi, NurApi.ANTENNAID_AUTOSELECT);
 
         // Clear old readings
-        clearInventoryReadings();
+        startInventoryRound();
+
+        long now = System.currentTimeMillis();
+        // Sensor round runs in addition to normal round when it is due. It goes first, so sensor tags are
+        // new to the round index and reported with their sensing data, normal round adds all other tags.
+        if (mSensorInventory.isDue(now))
+            inventoryRound(true, now);
+        inventoryRound(false, now);
+        sweepLostTags();
+        return true;
+    }
 
+    //One inventory round and handling of its tags
+    private void inventoryRound(boolean sensor, long now) throws Exception {
+        long start = System.nanoTime();
+        mMetrics.increment(PluginMetrics.INVENTORY_ROUNDS);
         try {
-            // Perform inventory
-            mNurApi.inventory();
+            NurRespInventory resp;
+            if (sensor) {
+                if (mInventoryTuner.isEnabled())
+                    mSensorInventory.setRoundParams(mInventoryTuner.getQ(), mInventoryTuner.getRounds());
+                resp = mSensorInventory.inventory(mNurApi, now);
+            } else if (mInventoryTuner.isEnabled()) {
+                resp = tunedInventory();
+            } else {
+                resp = mNurApi.inventory();
+            }
+            mMetrics.recordSince(PluginMetrics.INVENTORY_LATENCY, start);
+            // Filtered sensor round does not tell about the whole population
+            if (!sensor && mInventoryTuner.isEnabled())
+                mInventoryTuner.onRound(resp.numTagsFound, resp.collisions, resp.roundsDone,
+                        System.currentTimeMillis() - now);
             // Fetch tags from NUR
+            start = System.nanoTime();
             mNurApi.fetchTags();
+            mMetrics.recordSince(PluginMetrics.FETCH_TAGS_LATENCY, start);
         } catch (NurApiException ex) {
             // Did not get any tags
-            if (ex.error == NurApiErrors.NO_TAG)
-                return true;
-
-            throw ex;
+            if (ex.error != NurApiErrors.NO_TAG)
+                throw ex;
+            mMetrics.recordSince(PluginMetrics.INVENTORY_LATENCY, start);
+            if (!sensor && mInventoryTuner.isEnabled())
+                mInventoryTuner.onRound(0, 0, 1, System.currentTimeMillis() - now);
+            return;
         }
         // Handle inventoried tags
         handleInventoryResult();
+        // Sensor tags are handled, normal round must not handle them again from storage
+        if (sensor) {
+            synchronized (mNurApi.getStorage()) {
+                mNurApi.getStorage().clear();
+            }
+        }
+    }
+
+    /**
+     * Start continuous inventory stream. Found tags are handled from inventoryStreamEvent as they arrive.
+     */
+    public boolean startInventoryStream() throws Exception {
+        if (!mNurApi.isConnected())
+            return false;
+
+        if (mInventoryStreamRunning)
+            return true;
+
+        // Make sure antenna autoswitch is enabled
+        mReaderConfig.setSelectedAntenna(mNurApi, NurApi.ANTENNAID_AUTOSELECT);
+
+        // Clear old readings
+        startInventoryRound();
+
+        mInventoryStreamRunning = true;
+        try {
+            startReaderInventoryStream();
+        } catch (Exception ex) {
+            mInventoryStreamRunning = false;
+            throw ex;
+        }
         return true;
     }
 
+    //Inventory with tuner parameters, target is written to setup only when it changes
+    private NurRespInventory tunedInventory() throws Exception {
+        mReaderConfig.setInventoryTarget(mNurApi, mInventoryTuner.getTarget());
+        return mNurApi.inventory(mInventoryTuner.getRounds(), mInventoryTuner.getQ(), mInventoryTuner.getSession());
+    }
+
+    //Stream takes its parameters from reader setup, so tuner values are written there on every (re)start and change
+    private void applyTunerSetup() throws Exception {
+        mNurApi.setSetupInventoryQ(mInventoryTuner.getQ());
+        mNurApi.setSetupInventoryRounds(mInventoryTuner.getRounds());
+        mNurApi.setSetupInventorySession(mInventoryTuner.getSession());
+        mReaderConfig.setInventoryTarget(mNurApi, mInventoryTuner.getTarget());
+    }
+
+    //Stream is always unfiltered, sensor rounds are run between stream runs by queueStreamSensorRound()
+    private void startReaderInventoryStream() throws Exception {
+        if (mInventoryTuner.isEnabled())
+            applyTunerSetup();
+        mStreamRoundStart = System.currentTimeMillis();
+        mNurApi.startInventoryStream();
+    }
+
+    //Stream events come on NurApi thread, reader I/O they need is queued on reader thread
+    private void queueStreamUpdate(final boolean restart) {
+        if (!restart && !mStreamSetupPending.compareAndSet(false, true))
+            return;
+        mReaderExecutor.execute(new ReaderExecutor.Command() {
+            @Override
+            public Object run() throws Exception {
+                if (!restart)
+                    mStreamSetupPending.set(false);
+                if (!mInventoryStreamRunning || !mNurApi.isConnected())
+                    return null;
+                // Stream may have been restarted already after a sensor round
+                if (restart && !mNurApi.isInventoryStreamRunning())
+                    startReaderInventoryStream();
+                else if (!restart && mInventoryTuner.isEnabled())
+                    applyTunerSetup();
+                return null;
+            }
+        });
+    }
+
+    //Sensor round needs the radio, stream is stopped for it and started again right after
+    private void queueStreamSensorRound() {
+        if (!mStreamSensorPending.compareAndSet(false, true))
+            return;
+        mReaderExecutor.execute(new ReaderExecutor.Command() {
+            @Override
+            public Object run() throws Exception {
+                mStreamSensorPending.set(false);
+                if (!mInventoryStreamRunning || !mNurApi.isConnected())
+                    return null;
+                if (mNurApi.isInventoryStreamRunning())
+                    mNurApi.stopInventoryStream();
+                try {
+                    inventoryRound(true, System.currentTimeMillis());
+                } finally {
+                    if (mInventoryStreamRunning && !mNurApi.isInventoryStreamRunning())
+                        startReaderInventoryStream();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stop continuous inventory stream.
+     */
+    public void stopInventoryStream() {
+        mInventoryStreamRunning = false;
+        try {
+            if (mNurApi.isConnected() && mNurApi.isInventoryStreamRunning())
+                mNurApi.stopInventoryStream();
+            if (mNurApi.isConnected() && mNurApi.isInventoryExtendedStreamRunning())
+                mNurApi.stopInventoryExtendedStream();
+        } catch (Exception ex) {
+            Log.e(TAG, "stopInventoryStream: " + ex.getMessage());
+        }
+    }
+
+    public boolean isInventoryStreamRunning() {
+        return mInventoryStreamRunning;
+    }
+
+    /**
+     * Enable sensor inventory. When enabled, every single inventory or one per intervalMs runs
+     * a filtered extended inventory returning sensing data of sensor tags before the normal round.
+     * Inventory stream is paused for the sensor round when it is due, and continues unfiltered after it.
+     * Takes effect on next round.
+     */
+    public void setSensorInventory(boolean enabled, long intervalMs) {
+        mSensorInventory.configure(enabled, intervalMs);
+    }
+
+    /**
+     * Enable adaptive inventory. Q, rounds, session and target follow the estimated tag population.
+     * Disabling restores automatic Q and single round of session S0 for the sensor round,
+     * reader setup is left as tuner last wrote it.
+     */
+    public void setAdaptiveInventory(boolean enabled) {
+        mInventoryTuner.reset();
+        mInventoryTuner.setEnabled(enabled);
+        if (!enabled)
+            mSensorInventory.setRoundParams(0, 0);
+    }
+
+    Map<String, Object> getInventoryMetrics() {
+        Map<String, Object> metrics = mInventoryTuner.getMetrics();
+        metrics.put("configCacheHits", mReaderConfig.getHitCount());
+        metrics.put("configCacheMisses", mReaderConfig.getMissCount());
+        return metrics;
+    }
+
+    Map<String, Object> getTraceMetrics() {
+        Map<String, Object> metrics = mTraceController.getTraceMetrics();
+        metrics.put("feedbackCount", mFeedback.getFeedbackCount());
+        return metrics;
+    }
+
+    /**
+     * All plugin metrics: counters with rates, NurApi command latencies, reader command queue,
+     * and inventory and trace metrics as nested maps.
+     */
+    Map<String, Object> getMetrics() {
+        return getMetrics(PluginMetrics.CONSUMER_CALL);
+    }
+
+    /**
+     * Same as getMetrics(), rates since previous call of the same PluginMetrics consumer.
+     */
+    Map<String, Object> getMetrics(String consumer) {
+        Map<String, Object> metrics = mMetrics.snapshot(consumer, System.currentTimeMillis());
+        long uniqueTags = mMetrics.get(PluginMetrics.UNIQUE_TAGS);
+        metrics.put("readsPerTag", uniqueTags > 0 ? (double) mMetrics.get(PluginMetrics.TAG_READS) / uniqueTags : 0.0);
+        metrics.put("readerQueueDepth", mReaderExecutor.getQueueDepth());
+        metrics.put("readerMaxQueueDepth", mReaderExecutor.getMaxQueueDepth());
+        metrics.put("readerCommandsCompleted", mReaderExecutor.getCompletedCount());
+        metrics.put("readerCommandsFailed", mReaderExecutor.getFailedCount());
+        metrics.put("readerCommandsCancelled", mReaderExecutor.getCancelledCount());
+        metrics.put("readerCommandLatency", mReaderExecutor.getLatency().toMap());
+        metrics.put("inventory", getInventoryMetrics());
+        metrics.put("epcDecode", mEpcDecoder.getMetrics());
+        metrics.put("skus", mSkuAggregator.getMetrics());
+        metrics.put("journal", mJournal.getMetrics());
+        metrics.put("manifest", mManifest.getMetrics());
+        if (mTraceController != null)
+            metrics.put("trace", getTraceMetrics());
+        return metrics;
+    }
+
+    /**
+     * Add GS1 scheme, company prefix, GTIN and serial to tags delivered to Flutter.
+     * Decoded fields of the last cacheSize EPCs are cached.
+     */
+    public void setEpcDecoding(boolean enabled, int cacheSize) {
+        mEpcDecoder.configure(enabled, cacheSize);
+    }
+
+    /**
+     * Count tags per GTIN instead of delivering tag events, counts are read with drainSkuDeltas() and getSkuCounts().
+     * Enabling starts a new count.
+     */
+    public void setSkuAggregation(boolean enabled) {
+        mSkuAggregator.setEnabled(enabled);
+    }
+
+    /**
+     * Count increments per GTIN since previous call.
+     */
+    Map<String, Integer> drainSkuDeltas() {
+        return mSkuAggregator.drainDeltas();
+    }
+
+    Map<String, Integer> getSkuCounts() {
+        return mSkuAggregator.getCounts();
+    }
+
+    /**
+     * Start new counting session: empties session tags, their journal and SKU counts,
+     * unique tag and read counters of metrics start over.
+     * Unlike clearInventoryReadings() this is never done between inventory rounds.
+     */
+    public void clearSession() {
+        // Unique tags are counted by journal against session, reset with session on journal thread.
+        // Reads per tag covers the same reads.
+        mMetrics.reset(PluginMetrics.TAG_READS);
+        mSkuAggregator.clear();
+        mJournal.clear();
+        mManifest.clearFound();
+    }
+
+    /**
+     * Reconcile reads against expected EPCs, packed as u8 length and EPC bytes. Replaces previous manifest and
+     * starts from nothing found. Sorting takes a while for big manifests, do not call on main thread.
+     *
+     * @return manifest counts
+     */
+    Map<String, Object> loadManifest(byte[] packedEpcs) {
+        mManifest.load(packedEpcs);
+        return mManifest.getCounts();
+    }
+
+    public void clearManifest() {
+        mManifest.clear();
+    }
+
+    /**
+     * expected, found, missing and unexpected counts of manifest.
+     */
+    Map<String, Object> getManifestCounts() {
+        return mManifest.getCounts();
+    }
+
+    /**
+     * Changes whenever manifest counts change.
+     */
+    long getManifestVersion() {
+        return mManifest.getVersion();
+    }
+
+    List<String> getMissingTags(int offset, int limit) {
+        return mManifest.getMissing(offset, limit);
+    }
+
+    List<String> getUnexpectedTags(int offset, int limit) {
+        return mManifest.getUnexpected(offset, limit);
+    }
+
+    /**
+     * Journal session reads to app files so session is recovered on next init() after process death.
+     * Enabling mid session journals the tags read so far too. Disabling deletes the journal.
+     *
+     * @throws IllegalStateException before init(), journal file is in app files
+     */
+    public void setJournaling(boolean enabled) {
+        if (mJournalFile == null)
+            throw new IllegalStateException("Journaling needs init() first");
+        if (enabled)
+            mJournal.open(mJournalFile);
+        else
+            mJournal.close(mJournalFile);
+    }
+
+    /**
+     * Every tag of session with its last read, in TagEventCodec format.
+     */
+    byte[] getSessionTags() {
+        TagIndex session = mJournal.getSession();
+        List<TagEvent> tags;
+        synchronized (session) {
+            tags = new ArrayList<>(session.size());
+            for (int id = 0; id < session.size(); id++)
+                tags.add(new TagEvent(session.getEpc(id), session.getLastRssi(id), session.getAntennaId(id),
+                        session.getLastSeen(id)));
+        }
+        return TagEventCodec.encode(tags);
+    }
+
+    /**
+     * Write session tags to file as CSV, or in SessionExporter binary format.
+     * Session is copied first, so journal thread waits only for the copy, not for file I/O.
+     *
+     * @return export stats: tags, bytes, durationMs
+     */
+    Map<String, Object> exportSession(File file, boolean binary, boolean deflate) throws IOException {
+        SessionExporter exporter = new SessionExporter();
+        TagIndex session = mJournal.getSession();
+        TagIndex snapshot;
+        synchronized (session) {
+            snapshot = session.copy();
+        }
+        return binary ? exporter.exportBinary(snapshot, file, deflate) : exporter.exportCsv(snapshot, file);
+    }
+
+    EpcDecoder getEpcDecoder() {
+        return mEpcDecoder;
+    }
+
+    PluginMetrics getPluginMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Log every inventory round and tag. Off by default, formatting log lines slows down big inventories.
+     */
+    public void setDebugLogging(boolean enabled) {
+        mDebugLogging = enabled;
+    }
+
+    /**
+     * Enable inventory with read, reader returns wordCount words from bank at word address with every tag.
+     * Written to reader right away when connected and again on every connect. Call on reader thread.
+     */
+    public void setInventoryRead(boolean enabled, int bank, int address, int wordCount) throws Exception {
+        mInventoryRead.configure(enabled, bank, address, wordCount);
+        if (mNurApi.isConnected())
+            mInventoryRead.apply(mNurApi);
+    }
+
     /**
      * New tags will be added to our existing tag storage.
      * List view adapter will be updated for new tags
      */
     public void handleInventoryResult() throws Exception {
         synchronized (mNurApi.getStorage()) {
-            HashMap<String, String> tmp;
             NurTagStorage tagStorage = mNurApi.getStorage();
+            long now = System.currentTimeMillis();
+            mMetrics.add(PluginMetrics.TAG_READS, tagStorage.size());
 
-            // Add tags tp internal tag storage
+            // Add tags tp internal tag index
             for (int i = 0; i < tagStorage.size(); i++) {
-                JSONObject json = new JSONObject();
                 NurTag tag = tagStorage.get(i);
 
-                final JSONArray jsonArray = new JSONArray();
-
-                int xpcW2 = tag.getXPC_W2();
-
-                Log.d("XPCW2_RAW", String.valueOf(xpcW2));
-
-                NurInventoryExtended invParam = new NurInventoryExtended();
-                invParam.inventorySelState = NurApi.INVSELSTATE_SL;
-                invParam.inventoryTarget = NurApi.INVTARGET_A;
-                invParam.Q = 0;
-                invParam.rounds = 0;
-                invParam.session = NurApi.SESSION_S0;
-                invParam.transitTime = 0;
-
-                NurInventoryExtendedFilter[] invFilters = new NurInventoryExtendedFilter[1];
-                invFilters[0] = new NurInventoryExtendedFilter();
-                invFilters[0].action = NurApi.FILTER_ACTION_0;
-                invFilters[0].address = 0;
-                invFilters[0].bank = NurApi.BANK_TID;
-                invFilters[0].maskdata = new byte[] {(byte) 0xE2, (byte) 0x80, (byte) 0xB1, (byte) 0x20};
-                invFilters[0].maskBitLength = (invFilters[0].maskdata.length * 8) - 2;
-                invFilters[0].targetSession = NurApi.SESSION_SL;
-                invFilters[0].truncate = false;
-
-                mNurApi.inventoryExtended(invParam, invFilters[0]);
-
-                if ((xpcW2 & 0x0C00) == 0x0C00) {
-                    // Valid sensor data found
-                    int sensingData = 0x3FF & xpcW2;
-                    double cSense = (sensingData - 128) * 0.16;
-                    Log.d("SENSING_DATA", String.format("EPC: %s, RSSI: %d, SensingData: %d, CSENSE: %.2f pF",
-                            tag.getEpcString(), tag.getRssi(), sensingData, cSense));
-                } else {
-                    // Invalid sensor data
-                    Log.d("SENSING_DATA", String.format("EPC: %s, RSSI: %d, Invalid SensingData (XPC_W2): %04X",
-                            tag.getEpcString(), tag.getRssi(), xpcW2));
+                int id = mTagIndex.observe(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), now);
+                if (mTagIndex.getReadCount(id) == 1)
+                    mManifest.observe(tag.getEpc());
+                mJournal.record(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), now);
+                if (mDebugLogging)
+                    Log.d("XPCW2_RAW", tag.getEpcString() + " rssi " + tag.getRssi() + " xpcw2 " + tag.getXPC_W2());
+                if (mSkuAggregator.isEnabled()) {
+                    // Only EPCs new to index can be new items, index is cleared between rounds without delta mode
+                    if (mTagIndex.getReadCount(id) == 1)
+                        mSkuAggregator.add(tag.getEpc());
+                    continue;
                 }
-
-                if (mTagStorage.addTag(tag)) {
-                    // Add new
-                    tmp = new HashMap<String, String>();
-                    tmp.put("epc", tag.getEpcString());
-                    tmp.put("rssi", Integer.toString(tag.getRssi()));
-                    tag.setUserdata(tmp);
-                    try {
-                        json.put("epc", tag.getEpcString());
-                        json.put("rssi", Integer.toString(tag.getRssi()));
-                        jsonArray.put(json);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-
-                    mNurListener.onInventoryResult(tmp, jsonArray.toString());
+                int eventType = mInventoryDelta.onObserved(mTagIndex, id);
+                if (eventType != InventoryDelta.NO_EVENT) {
+                    // Sensing data decoded from XPC_W2, tags from sensor round carry it
+                    int sensorData = SensorInventory.decodeSensorData(tag.getXPC_W2());
+
+                    // Listener batches tags before delivering them to Flutter
+                    mNurListener.onInventoryResult(new TagEvent(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), now,
+                            sensorData, eventType, mInventoryRead.getData(tag.getIrData())));
                 }
             }
 
@@ -402,6 +938,14 @@ public class NurHelper {
     }
 
     public void destroy() {
+        mInventoryStreamRunning = false;
+        if (mNurApi instanceof SimulatedNurApi) {
+            try {
+                mNurApi.disconnect();
+            } catch (Exception ex) {
+                Log.e(TAG, "destroy: " + ex.getMessage());
+            }
+        }
         //Kill connection when app killed
         if (hAcTr != null) {
             hAcTr.onDestroy();
@@ -410,6 +954,41 @@ public class NurHelper {
     }
 
 
+    //Reader thread, after connectedEvent
+    private void onReaderConnected() {
+        // Same reader and firmware as last time: capabilities come from saved profile
+        try {
+            NurRespReaderInfo ri = mNurApi.getReaderInfo();
+            if (!mProfile.matches(ri))
+                refreshProfile(ri);
+            mIsAccessorySupported = mProfile.accessorySupported;
+            mUiConnStatusText = "Connected to " + mProfile.name;
+        } catch (Exception ex) {
+            mUiConnStatusText = ex.getMessage();
+        }
+
+        // Setup reads of inventory and trace are served from memory from now on
+        try {
+            mReaderConfig.load(mNurApi, mProfile.antennaMapping);
+            // Reader does not keep inventory read config over reconnect
+            if (mInventoryRead.isEnabled())
+                mInventoryRead.apply(mNurApi);
+        } catch (Exception ex) {
+            Log.w(TAG, "onReaderConnected: " + ex.getMessage());
+        }
+
+        mIsConnected = true;
+        Log.i(TAG, "Connected!");
+        //Beeper.beep(Beeper.BEEP_100MS);
+        mNurListener.onConnected(true);
+
+        //amr
+        //mUiConnStatusTextColor = Color.GREEN;
+        mUiConnButtonText = "DISCONNECT";
+        //amr
+        //showOnUI();
+    }
+
     /**
      * NurApi event handlers.
      * NOTE: All NurApi events are called from NurApi thread, thus direct UI updates are not allowed.
@@ -439,10 +1018,39 @@ public class NurHelper {
 
         @Override
         public void inventoryStreamEvent(NurEventInventory event) {
+            mMetrics.increment(PluginMetrics.INVENTORY_ROUNDS);
+            try {
+                boolean setupChanged = false;
+                if (mInventoryTuner.isEnabled()) {
+                    long now = System.currentTimeMillis();
+                    setupChanged = mInventoryTuner.onRound(event.tagsAdded, event.collisions, event.roundsDone,
+                            now - mStreamRoundStart, event.Q);
+                    mStreamRoundStart = now;
+                }
+
+                // Tags are already added to NurApi tag storage, drain them
+                if (event.tagsAdded > 0)
+                    handleInventoryResult();
+                sweepLostTags();
+
+                // Reader stops the stream after a while, restart it to keep inventory running.
+                // Restart writes tuner setup too, otherwise changed setup is written for the next rounds.
+                if (event.stopped && mInventoryStreamRunning)
+                    queueStreamUpdate(true);
+                else if (setupChanged && mInventoryStreamRunning)
+                    queueStreamUpdate(false);
+                // Sensor tags report sensing data only in filtered sensor round
+                if (mInventoryStreamRunning && mSensorInventory.isDue(System.currentTimeMillis()))
+                    queueStreamSensorRound();
+            } catch (Exception ex) {
+                Log.e(TAG, "inventoryStreamEvent: " + ex.getMessage());
+            }
         }
 
         @Override
         public void inventoryExtendedStreamEvent(NurEventInventory event) {
+            // Plugin does not start extended streams, handled like normal stream
+            inventoryStreamEvent(event);
         }
 
         @Override
@@ -456,6 +1064,9 @@ public class NurHelper {
         @Override
         public void disconnectedEvent() {
             mIsConnected = false;
+            mReaderConfig.invalidate();
+            mDeviceCaps = null;
+            mInventoryStreamRunning = false;
             Log.i(TAG, "Disconnected!");
             mNurListener.onConnected(false);
             context.runOnUiThread(new Runnable() {
@@ -487,34 +1098,14 @@ public class NurHelper {
 
         @Override
         public void connectedEvent() {
-            //Device is connected.
-            // Let's find out is device provided with accessory support (Barcode reader, battery info...) like EXA
-            try {
-                if (mAccExt.isSupported()) {
-                    //Yes. Accessories supported
-                    mIsAccessorySupported = true;
-                    //Let's take name of device from Accessory api
-                    mUiConnStatusText = "Connected to " + mAccExt.getConfig().name;
-                } else {
-                    //Accessories not supported. Probably fixed reader.
-                    mIsAccessorySupported = false;
-                    NurRespReaderInfo ri = mNurApi.getReaderInfo();
-                    mUiConnStatusText = "Connected to " + ri.name;
+            //Device is connected. Reader is queried on reader thread, NurApi callback thread must not block.
+            mReaderExecutor.execute(new ReaderExecutor.Command() {
+                @Override
+                public Object run() throws Exception {
+                    onReaderConnected();
+                    return null;
                 }
-            } catch (Exception ex) {
-                mUiConnStatusText = ex.getMessage();
-            }
-
-            mIsConnected = true;
-            Log.i(TAG, "Connected!");
-            //Beeper.beep(Beeper.BEEP_100MS);
-            mNurListener.onConnected(true);
-
-            //amr
-            //mUiConnStatusTextColor = Color.GREEN;
-            mUiConnButtonText = "DISCONNECT";
-            //amr
-            //showOnUI();
+            });
         }
 
         @Override
@@ -536,16 +1127,13 @@ public class NurHelper {
 
             // trigger button
             if(event.source == 100) {
-                try {
-                    NurRespReadData data = mNurApi.scanSingleTag();
-//                    Log.d("SCANNER", data.toString());
-//                    Log.d("SCANNER", data.epcStr);
-//                    Log.d("SCANNER", Arrays.toString(data.epc));
-//                    Log.d("SCANNER", data.epcStr);
-
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+                // Scan on reader thread, NurApi callback thread must not block
+                mReaderExecutor.execute(new ReaderExecutor.Command() {
+                    @Override
+                    public Object run() throws Exception {
+                        return mNurApi.scanSingleTag();
+                    }
+                });
             }
         }
 
@@ -671,6 +1259,11 @@ public class NurHelper {
                     } else
                         return;
 
+                    // Versions and capabilities change with update, query them on next connect
+                    mProfile = mProfile.withoutCapabilities();
+                    if (mPrefs != null)
+                        mProfile.save(mPrefs);
+
                     //Update params has been given. Show update Intent
                     showNurUpdateUI();
                 } catch (Exception e) {
@@ -762,7 +1355,7 @@ public class NurHelper {
 
     /**
      * Handle power off click.
-     * Sends PowerOff command to reader.
+     * Sends PowerOff command to reader. Called on reader thread.
      */
     public void powerOff() {
         try {
@@ -770,32 +1363,149 @@ public class NurHelper {
 
                 if (IsAccessorySupported()) { //Only device with accessory can be power off by command
                     mAccExt.powerDown(); //Power off device
-                    Toast.makeText(context, "Device Power OFF!", Toast.LENGTH_LONG).show();
-                } else Toast.makeText(context, "PowerOff not supported!", Toast.LENGTH_LONG).show();
+                    showToast("Device Power OFF!");
+                } else showToast("PowerOff not supported!");
             } else {
-                Toast.makeText(context, "Reader not connected!", Toast.LENGTH_LONG).show();
+                showToast("Reader not connected!");
             }
         } catch (Exception ex) {
-            Toast.makeText(context, ex.getMessage(), Toast.LENGTH_LONG).show();
+            showToast(ex.getMessage());
         }
 
     }
 
+    private void showToast(final String text) {
+        context.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(context, text, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Use simulated reader with given tag population instead of real one, null for real reader.
+     * Takes effect on next init().
+     */
+    public void setSimulation(SimulatedNurApi.Population population) {
+        mSimulation = population;
+    }
+
+    public boolean isSimulated() {
+        return mNurApi instanceof SimulatedNurApi;
+    }
+
     /**
      * Handle reader connection button click.
      * First is check if Bluetooth adapter is ON or OFF.
      * Then Bluetooth scan is performed to search devices from near.
      * User can select device from list to connect.
      * It's useful to store last connected device MAC to persistent memory inorder to reconnect later on to same device without selecting from list. This demo doesn't do MAC storing.
+     * Call on reader thread.
      */
     public void connect() {
-        if (mNurApi.isConnected()) {
+        if (isSimulated()) {
+            try {
+                if (mNurApi.isConnected())
+                    mNurApi.disconnect();
+                else
+                    mNurApi.connect();
+            } catch (Exception ex) {
+                Log.e(TAG, "connect: " + ex.getMessage());
+            }
+        } else if (mNurApi.isConnected()) {
             hAcTr.dispose();
             hAcTr = null;
         } else {
-            Toast.makeText(context, "Start searching. Make sure device power ON!", Toast.LENGTH_LONG).show();
-            NurDeviceListActivity.startDeviceRequest(context, mNurApi);
+            // Device list is an activity, started from main thread
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Toast.makeText(context, "Start searching. Make sure device power ON!", Toast.LENGTH_LONG).show();
+                    NurDeviceListActivity.startDeviceRequest(context, mNurApi);
+                }
+            });
+        }
+    }
+
+    /**
+     * Connect to last connected reader without device list.
+     *
+     * @return false if no reader has been selected yet
+     */
+    public boolean connectLast() throws Exception {
+        if (isSimulated()) {
+            if (!mNurApi.isConnected())
+                mNurApi.connect();
+            return true;
+        }
+        if (mProfile.spec == null)
+            return false;
+        if (!mNurApi.isConnected())
+            connectTo(new NurDeviceSpec(mProfile.spec));
+        return true;
+    }
+
+    /**
+     * Forget saved reader, next connectLast() does nothing until a reader is selected again.
+     */
+    public void forgetReader() {
+        mProfile = new ReaderProfile();
+        mProfile.save(mPrefs);
+    }
+
+    /**
+     * Saved profile of last reader, see ReaderProfile.toMap().
+     */
+    public Map<String, Object> getReaderProfile() {
+        return mProfile.toMap();
+    }
+
+    /**
+     * Query capabilities of newly seen reader or firmware and save them for next connect.
+     */
+    private void refreshProfile(NurRespReaderInfo ri) {
+        ReaderProfile profile = mProfile.forDevice(mProfile.spec, mProfile.address);
+        // Versions of the previous firmware must not survive
+        profile.serial = ri.serial;
+        profile.swVersion = ri.swVersion;
+        profile.name = ri.name;
+        profile.accessorySupported = mAccExt.isSupported();
+        profile.secondaryVersion = null;
+        profile.fwVersion = null;
+        profile.bootloaderVersion = null;
+        profile.antennaMapping = null;
+        try {
+            profile.antennaMapping = mNurApi.getAntennaMapping();
+            if (profile.accessorySupported) {
+                //Let's take name of device from Accessory api
+                profile.name = mAccExt.getConfig().name;
+                profile.fwVersion = mAccExt.getFwVersion().getFullApplicationVersion();
+                profile.bootloaderVersion = mAccExt.getFwVersion().getBootloaderVersion();
+            }
+            profile.secondaryVersion = mNurApi.getVersions().secondaryVersion;
+        } catch (Exception ex) {
+            // Missing values are queried when asked
+            Log.w(TAG, "refreshProfile: " + ex.getMessage());
         }
+        mProfile = profile;
+        if (mPrefs != null)
+            profile.save(mPrefs);
+    }
+
+    private void connectTo(NurDeviceSpec spec) throws Exception {
+        if (hAcTr != null) {
+            System.out.println("Dispose transport");
+            hAcTr.dispose();
+        }
+
+        String strAddress;
+        hAcTr = NurDeviceSpec.createAutoConnectTransport(context, mNurApi, spec);
+        strAddress = spec.getAddress();
+        Log.i(TAG, "Dev selected: code = " + strAddress);
+        hAcTr.setAddress(strAddress);
+
+        showConnecting();
     }
 
     public boolean isConnected() {
@@ -811,7 +1521,10 @@ public class NurHelper {
     }
 
     public NurRespDevCaps getDeviceCaps() throws Exception {
-        return mNurApi.getDeviceCaps();
+        NurRespDevCaps caps = mDeviceCaps;
+        if (caps == null)
+            caps = mDeviceCaps = mNurApi.getDeviceCaps();
+        return caps;
     }
 
     public String getNurApiAndroidVersion() {
@@ -823,15 +1536,18 @@ public class NurHelper {
     }
 
     public String getSecondaryVersion() throws Exception {
-        return mNurApi.getVersions().secondaryVersion;
+        String version = mIsConnected ? mProfile.secondaryVersion : null;
+        return version != null ? version : mNurApi.getVersions().secondaryVersion;
     }
 
     public String getFrameworkFullApplicationVersion() throws Exception {
-        return mAccExt.getFwVersion().getFullApplicationVersion();
+        String version = mIsConnected ? mProfile.fwVersion : null;
+        return version != null ? version : mAccExt.getFwVersion().getFullApplicationVersion();
     }
 
     public String getFrameworkBootloaderVersion() throws Exception {
-        return mAccExt.getFwVersion().getBootloaderVersion();
+        String version = mIsConnected ? mProfile.bootloaderVersion : null;
+        return version != null ? version : mAccExt.getFwVersion().getBootloaderVersion();
     }
 
     public String getConnectionAddress() {
@@ -846,22 +1562,11 @@ public class NurHelper {
 
                 try {
                     NurDeviceSpec spec = new NurDeviceSpec(data.getStringExtra(NurDeviceListActivity.SPECSTR));
+                    //Saved device is connected at app startup with connectLast()
+                    mProfile = mProfile.forDevice(spec.getSpec(), spec.getAddress());
+                    mProfile.save(mPrefs);
 
-                    if (hAcTr != null) {
-                        System.out.println("Dispose transport");
-                        hAcTr.dispose();
-                    }
-
-                    String strAddress;
-                    hAcTr = NurDeviceSpec.createAutoConnectTransport(context, mNurApi, spec);
-                    strAddress = spec.getAddress();
-                    Log.i(TAG, "Dev selected: code = " + strAddress);
-                    hAcTr.setAddress(strAddress);
-
-                    showConnecting();
-
-                    //If you want connect to same device automatically later on, you can save 'strAddress" and use that for connecting at app startup for example.
-                    //saveSettings(spec);
+                    connectTo(spec);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
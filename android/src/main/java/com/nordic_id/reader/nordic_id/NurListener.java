@@ -1,6 +1,6 @@
 package com.nordic_id.reader.nordic_id;
 
-import java.util.HashMap;
+import java.util.Map;
 
 interface NurListener {
     void onConnected(boolean isConnected);
@@ -9,7 +9,9 @@ interface NurListener {
 
     void onTraceTagEvent(int scaledRssi);
 
+    void onMultiTagTraceEvent(Map<String, Integer> signals);
+
     void onClearInventoryReadings();
 
-    void onInventoryResult(HashMap<String, String> tags,String jsonString);
+    void onInventoryResult(TagEvent tag);
 }
@@ -0,0 +1,183 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Named counters and latency histograms of the plugin, updated lock free from reader and NurApi threads.
+ * snapshot() reports every counter with its per second rate over the last RATE_WINDOW_MS or more,
+ * and every histogram as count, mean and percentiles. Rates are kept per consumer, so polling and
+ * the metrics stream do not shorten each other's window.
+ */
+class PluginMetrics {
+    static final String INVENTORY_ROUNDS = "inventoryRounds";
+    static final String TAG_READS = "tagReads";
+    static final String UNIQUE_TAGS = "uniqueTags";
+    static final String DROPPED_TAG_EVENTS = "droppedTagEvents";
+    static final String INVENTORY_LATENCY = "inventory";
+    static final String FETCH_TAGS_LATENCY = "fetchTags";
+    static final String READ_TAG_LATENCY = "readTag";
+
+    static final long RATE_WINDOW_MS = 1000;
+
+    //Snapshot consumers, each has its own rate baseline
+    static final String CONSUMER_CALL = "call";
+    static final String CONSUMER_STREAM = "stream";
+
+    /**
+     * Log2 buckets of microseconds: bucket n counts latencies below 2^n us, last one everything longer.
+     * Percentiles are bucket upper bounds, so at most 2x too high.
+     */
+    static class Histogram {
+        static final int BUCKETS = 26;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalUs = new AtomicLong();
+        private final AtomicLong mMaxUs = new AtomicLong();
+
+        void record(long micros) {
+            micros = Math.max(0, micros);
+            mBuckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+            mCount.incrementAndGet();
+            mTotalUs.addAndGet(micros);
+            long max = mMaxUs.get();
+            while (micros > max && !mMaxUs.compareAndSet(max, micros))
+                max = mMaxUs.get();
+        }
+
+        long getCount() {
+            return mCount.get();
+        }
+
+        /**
+         * Latency at percentile (0-100) in ms, 0 when empty.
+         */
+        double percentileMs(double percentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int n = 0; n < BUCKETS; n++)
+                total += counts[n] = mBuckets.get(n);
+            if (total == 0)
+                return 0;
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int n = 0; n < BUCKETS; n++) {
+                seen += counts[n];
+                if (seen >= Math.max(1, rank))
+                    return Math.min(1L << n, mMaxUs.get()) / 1000.0;
+            }
+            return mMaxUs.get() / 1000.0;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            long count = mCount.get();
+            map.put("count", count);
+            map.put("meanMs", count > 0 ? mTotalUs.get() / 1000.0 / count : 0.0);
+            map.put("p50Ms", percentileMs(50));
+            map.put("p95Ms", percentileMs(95));
+            map.put("p99Ms", percentileMs(99));
+            map.put("maxMs", mMaxUs.get() / 1000.0);
+            return map;
+        }
+    }
+
+    private final ConcurrentHashMap<String, AtomicLong> mCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+
+    //Counter values at start of rate window of one consumer
+    private static class RateBase {
+        final Map<String, Long> values = new HashMap<>();
+        long time;
+    }
+
+    private final long mCreateTime = System.currentTimeMillis();
+    //Guarded by this
+    private final Map<String, RateBase> mRateBases = new HashMap<>();
+
+    void add(String counter, long delta) {
+        AtomicLong value = mCounters.get(counter);
+        if (value == null) {
+            mCounters.putIfAbsent(counter, new AtomicLong());
+            value = mCounters.get(counter);
+        }
+        value.addAndGet(delta);
+    }
+
+    void increment(String counter) {
+        add(counter, 1);
+    }
+
+    /**
+     * Start counter over from zero, rates of every consumer continue from zero too.
+     */
+    synchronized void reset(String counter) {
+        AtomicLong value = mCounters.get(counter);
+        if (value == null)
+            return;
+        value.set(0);
+        for (RateBase base : mRateBases.values())
+            base.values.put(counter, 0L);
+    }
+
+    long get(String counter) {
+        AtomicLong value = mCounters.get(counter);
+        return value != null ? value.get() : 0;
+    }
+
+    Histogram histogram(String name) {
+        Histogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            mHistograms.putIfAbsent(name, new Histogram());
+            histogram = mHistograms.get(name);
+        }
+        return histogram;
+    }
+
+    /**
+     * Record latency of command started at System.nanoTime() startNanos.
+     */
+    void recordSince(String histogram, long startNanos) {
+        histogram(histogram).record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    Map<String, Object> snapshot(long now) {
+        return snapshot(CONSUMER_CALL, now);
+    }
+
+    /**
+     * Counters as name and namePerSecond, histograms as nameLatency maps.
+     * Rates are since the previous snapshot of consumer that started a new window.
+     */
+    synchronized Map<String, Object> snapshot(String consumer, long now) {
+        RateBase rateBase = mRateBases.get(consumer);
+        if (rateBase == null) {
+            rateBase = new RateBase();
+            rateBase.time = mCreateTime;
+            mRateBases.put(consumer, rateBase);
+        }
+        Map<String, Object> map = new HashMap<>();
+        long elapsed = now - rateBase.time;
+        for (Map.Entry<String, AtomicLong> counter : mCounters.entrySet()) {
+            long value = counter.getValue().get();
+            Long base = rateBase.values.get(counter.getKey());
+            map.put(counter.getKey(), value);
+            map.put(counter.getKey() + "PerSecond",
+                    elapsed > 0 ? (value - (base != null ? base : 0)) * 1000.0 / elapsed : 0.0);
+        }
+        for (Map.Entry<String, Histogram> histogram : mHistograms.entrySet())
+            map.put(histogram.getKey() + "Latency", histogram.getValue().toMap());
+
+        // Rates cover at least one window, so frequent snapshots do not report noise
+        if (elapsed >= RATE_WINDOW_MS) {
+            for (Map.Entry<String, AtomicLong> counter : mCounters.entrySet())
+                rateBase.values.put(counter.getKey(), counter.getValue().get());
+            rateBase.time = now;
+        }
+        return map;
+    }
+}
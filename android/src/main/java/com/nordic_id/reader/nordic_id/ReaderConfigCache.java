@@ -0,0 +1,143 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.AntennaMapping;
+import com.nordicid.nurapi.NurApi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reader setup values needed on every trace and inventory, kept in memory so reading them is not a round trip
+ * to the reader (tens of ms over BLE). Filled on connect, invalidated on disconnect.
+ * Setup written through this class updates the cache, setup changed otherwise must be followed by invalidate().
+ * Values are read from reader on first use when cache is not filled.
+ */
+class ReaderConfigCache {
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private volatile int mAntennaMaskEx = UNKNOWN;
+    private volatile int mSelectedAntenna = UNKNOWN;
+    private volatile int mTxLevel = UNKNOWN;
+    private volatile int mInventoryTarget = UNKNOWN;
+    private volatile AntennaMapping[] mAntennaMapping;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * Read all values from reader. Call on reader thread after connect.
+     */
+    void load(NurApi api) throws Exception {
+        load(api, null);
+    }
+
+    /**
+     * Read values from reader, antenna mapping is taken from knownMapping when not null (e.g. ReaderProfile).
+     */
+    void load(NurApi api, AntennaMapping[] knownMapping) throws Exception {
+        mAntennaMaskEx = api.getSetupAntennaMaskEx();
+        mSelectedAntenna = api.getSetupSelectedAntenna();
+        mTxLevel = api.getSetupTxLevel();
+        mInventoryTarget = api.getSetupInventoryTarget();
+        mAntennaMapping = knownMapping != null ? knownMapping : api.getAntennaMapping();
+    }
+
+    void invalidate() {
+        mAntennaMaskEx = UNKNOWN;
+        mSelectedAntenna = UNKNOWN;
+        mTxLevel = UNKNOWN;
+        mInventoryTarget = UNKNOWN;
+        mAntennaMapping = null;
+    }
+
+    boolean isLoaded() {
+        return mAntennaMaskEx != UNKNOWN && mSelectedAntenna != UNKNOWN && mTxLevel != UNKNOWN
+                && mInventoryTarget != UNKNOWN && mAntennaMapping != null;
+    }
+
+    int getAntennaMaskEx(NurApi api) throws Exception {
+        int value = mAntennaMaskEx;
+        if (value == UNKNOWN) {
+            mMissCount.incrementAndGet();
+            value = mAntennaMaskEx = api.getSetupAntennaMaskEx();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    int getSelectedAntenna(NurApi api) throws Exception {
+        int value = mSelectedAntenna;
+        if (value == UNKNOWN) {
+            mMissCount.incrementAndGet();
+            value = mSelectedAntenna = api.getSetupSelectedAntenna();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    int getTxLevel(NurApi api) throws Exception {
+        int value = mTxLevel;
+        if (value == UNKNOWN) {
+            mMissCount.incrementAndGet();
+            value = mTxLevel = api.getSetupTxLevel();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    AntennaMapping[] getAntennaMapping(NurApi api) throws Exception {
+        AntennaMapping[] value = mAntennaMapping;
+        if (value == null) {
+            mMissCount.incrementAndGet();
+            value = mAntennaMapping = api.getAntennaMapping();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Write antenna mask unless reader already has it.
+     */
+    void setAntennaMaskEx(NurApi api, int mask) throws Exception {
+        if (mAntennaMaskEx == mask)
+            return;
+        mAntennaMaskEx = UNKNOWN;
+        api.setSetupAntennaMaskEx(mask);
+        mAntennaMaskEx = mask;
+    }
+
+    void setSelectedAntenna(NurApi api, int antenna) throws Exception {
+        if (mSelectedAntenna == antenna)
+            return;
+        mSelectedAntenna = UNKNOWN;
+        api.setSetupSelectedAntenna(antenna);
+        mSelectedAntenna = antenna;
+    }
+
+    void setTxLevel(NurApi api, int level) throws Exception {
+        if (mTxLevel == level)
+            return;
+        mTxLevel = UNKNOWN;
+        api.setSetupTxLevel(level);
+        mTxLevel = level;
+    }
+
+    void setInventoryTarget(NurApi api, int target) throws Exception {
+        if (mInventoryTarget == target)
+            return;
+        mInventoryTarget = UNKNOWN;
+        api.setSetupInventoryTarget(target);
+        mInventoryTarget = target;
+    }
+
+    long getHitCount() {
+        return mHitCount.get();
+    }
+
+    long getMissCount() {
+        return mMissCount.get();
+    }
+}
@@ -0,0 +1,194 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Runs reader commands one at a time on a dedicated thread, so NurApi I/O never blocks the platform main thread
+ * and commands from Flutter are serialized in call order.
+ * Results are delivered through the callback executor, which posts to the main thread in the plugin.
+ * Pending commands can be cancelled, the running command always finishes.
+ * Commands run holding the reader lock. Code that must access the reader from another thread, like the trace loop,
+ * takes the same lock, so it never interleaves with a command.
+ * Lifecycle calls (init, reset, destroy) are the exception, they stay on the main thread and run when no
+ * reader I/O is expected.
+ */
+class ReaderExecutor {
+    static final String ERROR_CANCELLED = "CANCELLED";
+
+    /**
+     * Reader command, run on the reader thread.
+     */
+    interface Command {
+        Object run() throws Exception;
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Executor mCallbackExecutor;
+
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+    private final AtomicLong mCompletedCount = new AtomicLong();
+    private final AtomicLong mFailedCount = new AtomicLong();
+    private final AtomicLong mCancelledCount = new AtomicLong();
+    private volatile long mLastCommandMs;
+    private final PluginMetrics.Histogram mLatency = new PluginMetrics.Histogram();
+
+    ReaderExecutor(Executor callbackExecutor) {
+        mCallbackExecutor = callbackExecutor;
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "NurReader");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Queue command whose result is not needed. Failures only count in metrics.
+     */
+    void execute(Command command) {
+        enqueue(new Task(command, null, null));
+    }
+
+    /**
+     * Queue command and deliver its return value to result, or exception message as errorCode.
+     */
+    void submit(String errorCode, Command command, Result result) {
+        enqueue(new Task(command, errorCode, result));
+    }
+
+    /**
+     * Drop commands not yet started, their results get ERROR_CANCELLED.
+     *
+     * @return number of cancelled commands
+     */
+    int cancelPending() {
+        List<Runnable> pending = new ArrayList<>();
+        mExecutor.getQueue().drainTo(pending);
+        for (Runnable runnable : pending) {
+            final Task task = (Task) runnable;
+            mCancelledCount.incrementAndGet();
+            if (task.mResult != null) {
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.mResult.error(ERROR_CANCELLED, "Reader command cancelled", null);
+                    }
+                });
+            }
+        }
+        return pending.size();
+    }
+
+    /**
+     * Lock held while a command runs.
+     */
+    ReentrantLock getLock() {
+        return mLock;
+    }
+
+    /**
+     * Commands waiting, running command not included.
+     */
+    int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    long getCompletedCount() {
+        return mCompletedCount.get();
+    }
+
+    long getFailedCount() {
+        return mFailedCount.get();
+    }
+
+    long getCancelledCount() {
+        return mCancelledCount.get();
+    }
+
+    /**
+     * Run time of latest finished command in ms.
+     */
+    long getLastCommandMs() {
+        return mLastCommandMs;
+    }
+
+    /**
+     * Run times of finished commands.
+     */
+    PluginMetrics.Histogram getLatency() {
+        return mLatency;
+    }
+
+    private void enqueue(Task task) {
+        mExecutor.execute(task);
+        int depth = mExecutor.getQueue().size();
+        int max = mMaxQueueDepth.get();
+        while (depth > max && !mMaxQueueDepth.compareAndSet(max, depth))
+            max = mMaxQueueDepth.get();
+    }
+
+    private class Task implements Runnable {
+        final Command mCommand;
+        final String mErrorCode;
+        final Result mResult;
+
+        Task(Command command, String errorCode, Result result) {
+            mCommand = command;
+            mErrorCode = errorCode;
+            mResult = result;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            Object value = null;
+            Exception error = null;
+            mLock.lock();
+            try {
+                value = mCommand.run();
+                mCompletedCount.incrementAndGet();
+            } catch (Exception ex) {
+                error = ex;
+                mFailedCount.incrementAndGet();
+            } finally {
+                mLock.unlock();
+            }
+            long elapsedUs = (System.nanoTime() - start) / 1000;
+            mLastCommandMs = elapsedUs / 1000;
+            mLatency.record(elapsedUs);
+
+            if (mResult == null)
+                return;
+            final Object resultValue = value;
+            final Exception resultError = error;
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (resultError != null)
+                        mResult.error(mErrorCode, resultError.getMessage(), null);
+                    else
+                        mResult.success(resultValue);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.nordic_id.reader.nordic_id;
+
+import android.content.SharedPreferences;
+
+import com.nordicid.nurapi.AntennaMapping;
+import com.nordicid.nurapi.NurRespReaderInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last connected reader, persisted in SharedPreferences.
+ * Device spec lets plugin reconnect at startup without device list activity. Capabilities, versions and
+ * antenna mapping are valid while reader serial and firmware version match, so reconnect to the same reader
+ * costs one reader info query instead of a query per capability. Accessory versions are not in reader info,
+ * so capabilities are dropped whenever a firmware update is started.
+ */
+class ReaderProfile {
+    static final String PREFS_NAME = "nordic_id_reader";
+
+    private static final String KEY_SPEC = "spec";
+    private static final String KEY_ADDRESS = "address";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_SERIAL = "serial";
+    private static final String KEY_SW_VERSION = "swVersion";
+    private static final String KEY_ACCESSORY = "accessorySupported";
+    private static final String KEY_SECONDARY_VERSION = "secondaryVersion";
+    private static final String KEY_FW_VERSION = "fwVersion";
+    private static final String KEY_BOOTLOADER_VERSION = "bootloaderVersion";
+    //Length prefixed format, older "antennas" value could not hold every name
+    private static final String KEY_ANTENNAS = "antennaMapping";
+
+    //Device of NurDeviceListActivity, null if no reader selected yet
+    String spec;
+    String address;
+
+    //Capabilities, null serial until first connect
+    String name;
+    String serial;
+    String swVersion;
+    boolean accessorySupported;
+    String secondaryVersion;
+    String fwVersion;
+    String bootloaderVersion;
+    AntennaMapping[] antennaMapping;
+
+    static ReaderProfile load(SharedPreferences prefs) {
+        ReaderProfile profile = new ReaderProfile();
+        profile.spec = prefs.getString(KEY_SPEC, null);
+        profile.address = prefs.getString(KEY_ADDRESS, null);
+        profile.name = prefs.getString(KEY_NAME, null);
+        profile.serial = prefs.getString(KEY_SERIAL, null);
+        profile.swVersion = prefs.getString(KEY_SW_VERSION, null);
+        profile.accessorySupported = prefs.getBoolean(KEY_ACCESSORY, false);
+        profile.secondaryVersion = prefs.getString(KEY_SECONDARY_VERSION, null);
+        profile.fwVersion = prefs.getString(KEY_FW_VERSION, null);
+        profile.bootloaderVersion = prefs.getString(KEY_BOOTLOADER_VERSION, null);
+        profile.antennaMapping = decodeAntennas(prefs.getString(KEY_ANTENNAS, null));
+        return profile;
+    }
+
+    void save(SharedPreferences prefs) {
+        prefs.edit()
+                .putString(KEY_SPEC, spec)
+                .putString(KEY_ADDRESS, address)
+                .putString(KEY_NAME, name)
+                .putString(KEY_SERIAL, serial)
+                .putString(KEY_SW_VERSION, swVersion)
+                .putBoolean(KEY_ACCESSORY, accessorySupported)
+                .putString(KEY_SECONDARY_VERSION, secondaryVersion)
+                .putString(KEY_FW_VERSION, fwVersion)
+                .putString(KEY_BOOTLOADER_VERSION, bootloaderVersion)
+                .putString(KEY_ANTENNAS, encodeAntennas(antennaMapping))
+                .apply();
+    }
+
+    /**
+     * Profile of newly selected device, capabilities are kept only if it is the same device.
+     */
+    ReaderProfile forDevice(String spec, String address) {
+        ReaderProfile profile = address != null && address.equals(this.address) ? copy() : new ReaderProfile();
+        profile.spec = spec;
+        profile.address = address;
+        return profile;
+    }
+
+    /**
+     * Same device without capabilities, they are queried again on next connect.
+     */
+    ReaderProfile withoutCapabilities() {
+        ReaderProfile profile = new ReaderProfile();
+        profile.spec = spec;
+        profile.address = address;
+        return profile;
+    }
+
+    /**
+     * Cached capabilities belong to connected reader.
+     */
+    boolean matches(NurRespReaderInfo info) {
+        return serial != null && info != null && serial.equals(info.serial)
+                && swVersion != null && swVersion.equals(info.swVersion);
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("address", address);
+        map.put("name", name);
+        map.put("serial", serial);
+        map.put("swVersion", swVersion);
+        map.put("accessorySupported", accessorySupported);
+        map.put("secondaryVersion", secondaryVersion);
+        map.put("fwVersion", fwVersion);
+        map.put("bootloaderVersion", bootloaderVersion);
+        List<String> antennas = new ArrayList<>();
+        if (antennaMapping != null) {
+            for (AntennaMapping antenna : antennaMapping)
+                antennas.add(antenna.name);
+        }
+        map.put("antennas", antennas);
+        return map;
+    }
+
+    private ReaderProfile copy() {
+        ReaderProfile profile = new ReaderProfile();
+        profile.spec = spec;
+        profile.address = address;
+        profile.name = name;
+        profile.serial = serial;
+        profile.swVersion = swVersion;
+        profile.accessorySupported = accessorySupported;
+        profile.secondaryVersion = secondaryVersion;
+        profile.fwVersion = fwVersion;
+        profile.bootloaderVersion = bootloaderVersion;
+        profile.antennaMapping = antennaMapping;
+        return profile;
+    }
+
+    /**
+     * "id:length:name" for every antenna, no separator between antennas, null for no mapping.
+     * Name length is in chars so names may contain any char.
+     */
+    static String encodeAntennas(AntennaMapping[] mapping) {
+        if (mapping == null)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        for (AntennaMapping antenna : mapping) {
+            String name = antenna.name != null ? antenna.name : "";
+            sb.append(antenna.antennaId).append(':').append(name.length()).append(':').append(name);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return null for no mapping or malformed value
+     */
+    static AntennaMapping[] decodeAntennas(String value) {
+        if (value == null)
+            return null;
+        List<AntennaMapping> mapping = new ArrayList<>();
+        int pos = 0;
+        while (pos < value.length()) {
+            int idEnd = value.indexOf(':', pos);
+            int lenEnd = idEnd < 0 ? -1 : value.indexOf(':', idEnd + 1);
+            if (lenEnd < 0)
+                return null;
+            AntennaMapping antenna = new AntennaMapping();
+            int nameLen;
+            try {
+                antenna.antennaId = Integer.parseInt(value.substring(pos, idEnd));
+                nameLen = Integer.parseInt(value.substring(idEnd + 1, lenEnd));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+            pos = lenEnd + 1;
+            if (nameLen < 0 || nameLen > value.length() - pos)
+                return null;
+            antenna.name = value.substring(pos, pos + nameLen);
+            pos += nameLen;
+            mapping.add(antenna);
+        }
+        return mapping.toArray(new AntennaMapping[0]);
+    }
+}
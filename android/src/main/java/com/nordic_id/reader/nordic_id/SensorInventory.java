@@ -0,0 +1,83 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurInventoryExtended;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+import com.nordicid.nurapi.NurRespInventory;
+
+/**
+ * Sensor inventory round.
+ * One filtered extended inventory selects sensor tags (TID E280B12x) and during that round
+ * they backscatter their sensing code in XPC_W2, so sensing data of all tags comes from a single round.
+ */
+class SensorInventory {
+    //Sensing code is valid only when both of these bits are set in XPC_W2
+    static final int XPC_W2_SENSOR_VALID = 0x0C00;
+    static final int XPC_W2_SENSOR_MASK = 0x03FF;
+    static final int NO_SENSOR_DATA = -1;
+
+    private final NurInventoryExtended mInvParam = new NurInventoryExtended();
+    private final NurInventoryExtendedFilter mInvFilter = new NurInventoryExtendedFilter();
+
+    private volatile boolean mEnabled = false;
+    //0 = sensor round on every inventory
+    private volatile long mIntervalMs = 0;
+    //Written by configure() from plugin thread and by rounds on reader thread
+    private volatile long mLastRoundTime = 0;
+
+    SensorInventory() {
+        mInvParam.inventorySelState = NurApi.INVSELSTATE_SL;
+        mInvParam.inventoryTarget = NurApi.INVTARGET_A;
+        mInvParam.Q = 0;
+        mInvParam.rounds = 0;
+        mInvParam.session = NurApi.SESSION_S0;
+        mInvParam.transitTime = 0;
+
+        mInvFilter.action = NurApi.FILTER_ACTION_0;
+        mInvFilter.address = 0;
+        mInvFilter.bank = NurApi.BANK_TID;
+        mInvFilter.maskdata = new byte[]{(byte) 0xE2, (byte) 0x80, (byte) 0xB1, (byte) 0x20};
+        mInvFilter.maskBitLength = (mInvFilter.maskdata.length * 8) - 2;
+        mInvFilter.targetSession = NurApi.SESSION_SL;
+        mInvFilter.truncate = false;
+    }
+
+    void configure(boolean enabled, long intervalMs) {
+        mIntervalMs = Math.max(0, intervalMs);
+        mEnabled = enabled;
+        mLastRoundTime = 0;
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Q and rounds of sensor round, 0 = reader decides. Session and target are fixed by the select filter.
+     */
+    void setRoundParams(int q, int rounds) {
+        mInvParam.Q = q;
+        mInvParam.rounds = rounds;
+    }
+
+    /**
+     * True when next single inventory should include a sensor round, or stream should pause for one.
+     */
+    boolean isDue(long now) {
+        return mEnabled && now - mLastRoundTime >= mIntervalMs;
+    }
+
+    NurRespInventory inventory(NurApi api, long now) throws Exception {
+        mLastRoundTime = now;
+        return api.inventoryExtended(mInvParam, mInvFilter);
+    }
+
+    /**
+     * @return sensing code (0-1023) or NO_SENSOR_DATA
+     */
+    static int decodeSensorData(int xpcW2) {
+        if ((xpcW2 & XPC_W2_SENSOR_VALID) == XPC_W2_SENSOR_VALID)
+            return xpcW2 & XPC_W2_SENSOR_MASK;
+        return NO_SENSOR_DATA;
+    }
+}
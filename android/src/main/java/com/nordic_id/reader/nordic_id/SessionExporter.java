@@ -0,0 +1,241 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Streams tags of a TagIndex to a file through a 64 KB buffer, no per tag objects are created.
+ * File is written next to the target and renamed over it when complete, so a reader never sees a partial export.
+ *
+ * CSV: header line and one line per tag in first seen order, EPC in hex.
+ *
+ * Binary, all integers unsigned LEB128 varints, signed ones zigzag coded:
+ * header: "NIDX", u8 VERSION, u8 flags (FLAG_DEFLATE), varint tag count
+ * body, zlib stream if FLAG_DEFLATE: tags in EPC order, each
+ * varint bytes shared with previous EPC, varint suffix length, suffix bytes, zigzag best rssi, zigzag last rssi,
+ * varint antenna id, varint read count, zigzag first seen delta to previous tag (ms), varint last seen - first seen.
+ */
+class SessionExporter {
+    static final byte[] MAGIC = {'N', 'I', 'D', 'X'};
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 0x01;
+    static final String CSV_HEADER = "epc,bestRssi,lastRssi,antennaId,readCount,firstSeen,lastSeen\n";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //Longest CSV line or binary record: 255 byte EPC and numbers
+    private static final int MAX_RECORD_SIZE = 2 * 255 + 128;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private final ByteBuffer mBuf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] mDeflated = new byte[BUFFER_SIZE];
+    private FileChannel mChannel;
+    private Deflater mDeflater;
+    private long mBytes;
+
+    /**
+     * Export tags as CSV. Caller synchronizes index.
+     *
+     * @return export stats
+     */
+    Map<String, Object> exportCsv(TagIndex index, File file) throws IOException {
+        long start = System.nanoTime();
+        File tmp = begin(file);
+        try {
+            putAscii(CSV_HEADER);
+            byte[] epc = new byte[255];
+            for (int id = 0; id < index.size(); id++) {
+                ensure(MAX_RECORD_SIZE);
+                int len = index.copyEpc(id, epc, 0);
+                for (int n = 0; n < len; n++) {
+                    mBuf.put(HEX[(epc[n] >> 4) & 0xF]);
+                    mBuf.put(HEX[epc[n] & 0xF]);
+                }
+                putDecimal(',', index.getBestRssi(id));
+                putDecimal(',', index.getLastRssi(id));
+                putDecimal(',', index.getAntennaId(id));
+                putDecimal(',', index.getReadCount(id));
+                putDecimal(',', index.getFirstSeen(id));
+                putDecimal(',', index.getLastSeen(id));
+                mBuf.put((byte) '\n');
+            }
+            end(tmp, file);
+        } finally {
+            abort(tmp);
+        }
+        return stats(index.size(), start);
+    }
+
+    /**
+     * Export tags in binary format, body optionally deflated. Caller synchronizes index.
+     *
+     * @return export stats
+     */
+    Map<String, Object> exportBinary(TagIndex index, File file, boolean deflate) throws IOException {
+        long start = System.nanoTime();
+        int[] ids = index.sortedByEpc();
+        File tmp = begin(file);
+        try {
+            mBuf.put(MAGIC);
+            mBuf.put((byte) VERSION);
+            mBuf.put((byte) (deflate ? FLAG_DEFLATE : 0));
+            putVarint(ids.length);
+            if (deflate) {
+                flush();
+                mDeflater = new Deflater(Deflater.BEST_SPEED);
+            }
+
+            byte[] epc = new byte[255];
+            byte[] prev = new byte[255];
+            int prevLen = 0;
+            long prevFirstSeen = 0;
+            for (int id : ids) {
+                ensure(MAX_RECORD_SIZE);
+                int len = index.copyEpc(id, epc, 0);
+                int shared = 0;
+                while (shared < len && shared < prevLen && epc[shared] == prev[shared])
+                    shared++;
+                putVarint(shared);
+                putVarint(len - shared);
+                mBuf.put(epc, shared, len - shared);
+                putVarint(zigzag(index.getBestRssi(id)));
+                putVarint(zigzag(index.getLastRssi(id)));
+                putVarint(index.getAntennaId(id));
+                putVarint(index.getReadCount(id));
+                long firstSeen = index.getFirstSeen(id);
+                putVarint(zigzag(firstSeen - prevFirstSeen));
+                putVarint(index.getLastSeen(id) - firstSeen);
+
+                byte[] swap = prev;
+                prev = epc;
+                epc = swap;
+                prevLen = len;
+                prevFirstSeen = firstSeen;
+            }
+            end(tmp, file);
+        } finally {
+            abort(tmp);
+        }
+        return stats(ids.length, start);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private File begin(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        mChannel = new FileOutputStream(tmp).getChannel();
+        mBuf.clear();
+        mBytes = 0;
+        return tmp;
+    }
+
+    private void end(File tmp, File file) throws IOException {
+        flush();
+        if (mDeflater != null) {
+            mDeflater.finish();
+            while (!mDeflater.finished())
+                writeDeflated();
+        }
+        mChannel.force(false);
+        mChannel.close();
+        mChannel = null;
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    //Release file and deflater, temporary file is removed if export did not complete
+    private void abort(File tmp) {
+        if (mDeflater != null) {
+            mDeflater.end();
+            mDeflater = null;
+        }
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException ex) {
+                // Export already failed
+            }
+            mChannel = null;
+            tmp.delete();
+        }
+    }
+
+    private Map<String, Object> stats(int tags, long startNanos) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tags", tags);
+        stats.put("bytes", mBytes);
+        stats.put("durationMs", (System.nanoTime() - startNanos) / 1000000.0);
+        return stats;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (mBuf.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        mBuf.flip();
+        if (mDeflater != null) {
+            mDeflater.setInput(mBuf.array(), 0, mBuf.limit());
+            while (!mDeflater.needsInput())
+                writeDeflated();
+        } else {
+            mBytes += mBuf.remaining();
+            while (mBuf.hasRemaining())
+                mChannel.write(mBuf);
+        }
+        mBuf.clear();
+    }
+
+    private void writeDeflated() throws IOException {
+        int len = mDeflater.deflate(mDeflated);
+        ByteBuffer out = ByteBuffer.wrap(mDeflated, 0, len);
+        mBytes += len;
+        while (out.hasRemaining())
+            mChannel.write(out);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            mBuf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mBuf.put((byte) value);
+    }
+
+    private void putDecimal(char separator, long value) {
+        mBuf.put((byte) separator);
+        if (value < 0) {
+            mBuf.put((byte) '-');
+            value = -value;
+        }
+        int start = mBuf.position();
+        do {
+            mBuf.put((byte) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+        // Digits were written least significant first
+        byte[] array = mBuf.array();
+        for (int i = start, j = mBuf.position() - 1; i < j; i++, j--) {
+            byte digit = array[i];
+            array[i] = array[j];
+            array[j] = digit;
+        }
+    }
+
+    private void putAscii(String text) throws IOException {
+        for (int n = 0; n < text.length(); n++) {
+            ensure(1);
+            mBuf.put((byte) text.charAt(n));
+        }
+    }
+}
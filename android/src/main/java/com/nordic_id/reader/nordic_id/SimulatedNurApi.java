@@ -0,0 +1,682 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.AntennaMapping;
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurApiListener;
+import com.nordicid.nurapi.NurEventInventory;
+import com.nordicid.nurapi.NurIRConfig;
+import com.nordicid.nurapi.NurInventoryExtended;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurRespReadData;
+import com.nordicid.nurapi.NurRespReaderInfo;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reader simulator for testing the plugin without hardware.
+ * Answers the commands the plugin uses (inventory, fetchTags, inventory streams, traceTagByEpc, readTagByEpc,
+ * inventory with read, setup and antenna mapping) from a synthetic SGTIN-96 tag population. Tags drift in signal strength between
+ * rounds and commands take time like on a real reader, scaled with Population.latencyScale.
+ * Everything else falls through to NurApi, which fails as there is no transport.
+ */
+class SimulatedNurApi extends NurApi {
+    /**
+     * Simulated tag population and reader timing.
+     */
+    static class Population {
+        int tagCount = 1000;
+        //Mean and spread of tag signal strength, dBm
+        int rssiMean = -60;
+        int rssiSpread = 8;
+        //Maximum signal change of tag between rounds, dBm. Simulates tags and reader moving.
+        int movement = 1;
+        //Probability to read tag with strong signal on one round. Weak tags are read less often.
+        double readProbability = 0.95;
+        //Antenna names as in reader antenna mapping
+        String[] antennaNames = {"CrossDipole.X", "CrossDipole.Y", "Circular", "Proximity"};
+        //Time of inventory round and per found tag, fetch per tag, trace and read commands
+        int inventoryRoundMs = 10;
+        int inventoryPerTagUs = 700;
+        int fetchPerTagUs = 40;
+        int traceMs = 12;
+        int readMs = 20;
+        //Setup read or write and antenna mapping query, one round trip to reader
+        int setupMs = 25;
+        //Multiplier of all times, 0 runs as fast as possible
+        double latencyScale = 1.0;
+        //Reader stops inventory stream after this, like real reader does
+        int streamTimeoutMs = 20000;
+        long seed = 1;
+    }
+
+    private static final int RSSI_MIN = -95;
+    private static final int RSSI_MAX = -30;
+    //Proximity antenna reads only tags right next to it
+    private static final int PROXIMITY_LOSS = 25;
+    private static final int CROSS_DIPOLE_LOSS = 3;
+
+    private final Population mPopulation;
+    private final Random mRandom;
+    private final AntennaMapping[] mAntennaMapping;
+    private final int[] mAntennaLoss;
+
+    //Population, tag id is index in arrays
+    private final TagIndex mTags;
+    private final byte[][] mEpc;
+    private final double[] mRssi;
+
+    //Tags read into module memory since last fetch. Negated RSSI of tag, -1 if not in memory.
+    private final int[] mModuleRssi;
+    private final byte[] mModuleAntenna;
+    private final int[] mModuleTags;
+    private int mModuleCount;
+
+    private volatile boolean mConnected;
+    private volatile Thread mStreamThread;
+    private volatile boolean mExtendedStream;
+
+    private int mAntennaMaskEx;
+    private int mSelectedAntenna = ANTENNAID_AUTOSELECT;
+    private int mTxLevel;
+    private int mInventoryQ;
+    private int mInventorySession;
+    private int mInventoryRounds;
+    private int mInventoryTarget;
+    //Inventory with read, memory is returned with every tag when running
+    private final NurIRConfig mIrConfig = new NurIRConfig();
+
+    SimulatedNurApi(Population population) {
+        mPopulation = population;
+        mRandom = new Random(population.seed);
+
+        mAntennaMapping = new AntennaMapping[population.antennaNames.length];
+        mAntennaLoss = new int[population.antennaNames.length];
+        for (int n = 0; n < mAntennaMapping.length; n++) {
+            AntennaMapping map = new AntennaMapping();
+            map.antennaId = n;
+            map.name = population.antennaNames[n];
+            mAntennaMapping[n] = map;
+            if (map.name.startsWith("Proximity"))
+                mAntennaLoss[n] = PROXIMITY_LOSS;
+            else if (map.name.startsWith("CrossDipole"))
+                mAntennaLoss[n] = CROSS_DIPOLE_LOSS;
+            mAntennaMaskEx |= 1 << n;
+        }
+
+        int count = population.tagCount;
+        mTags = new TagIndex(count);
+        mEpc = new byte[count][];
+        mRssi = new double[count];
+        mModuleRssi = new int[count];
+        mModuleAntenna = new byte[count];
+        mModuleTags = new int[count];
+        Arrays.fill(mModuleRssi, -1);
+        for (int n = 0; n < count; n++) {
+            mEpc[n] = sgtin96(1234567, mRandom.nextInt(300), n + 1);
+            mTags.observe(mEpc[n], 0, 0, 0);
+            mRssi[n] = population.rssiMean + mRandom.nextGaussian() * population.rssiSpread;
+        }
+    }
+
+    /**
+     * SGTIN-96 EPC, partition 5 (7 digit company prefix), filter 1.
+     */
+    static byte[] sgtin96(long companyPrefix, long itemRef, long serial) {
+        long hi = (0x30L << 56) | (1L << 53) | (5L << 50) | (companyPrefix << 26) | (itemRef << 6) | (serial >>> 32);
+        int lo = (int) serial;
+        byte[] epc = new byte[12];
+        for (int n = 0; n < 8; n++)
+            epc[n] = (byte) (hi >>> (56 - n * 8));
+        for (int n = 0; n < 4; n++)
+            epc[8 + n] = (byte) (lo >>> (24 - n * 8));
+        return epc;
+    }
+
+    byte[] getPopulationEpc(int n) {
+        return mEpc[n];
+    }
+
+    @Override
+    public void connect() {
+        if (mConnected)
+            return;
+        mConnected = true;
+        NurApiListener listener = getListener();
+        if (listener != null)
+            listener.connectedEvent();
+    }
+
+    @Override
+    public void disconnect() {
+        if (!mConnected)
+            return;
+        mConnected = false;
+        stopStream();
+        NurApiListener listener = getListener();
+        if (listener != null)
+            listener.disconnectedEvent();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mConnected;
+    }
+
+    @Override
+    public NurRespReaderInfo getReaderInfo() throws Exception {
+        checkConnected();
+        NurRespReaderInfo info = new NurRespReaderInfo();
+        info.name = "Simulator";
+        info.serial = "SIM" + mPopulation.seed;
+        return info;
+    }
+
+    @Override
+    public AntennaMapping[] getAntennaMapping() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mAntennaMapping;
+    }
+
+    @Override
+    public NurRespInventory inventory() throws Exception {
+        return inventory(mInventoryRounds, mInventoryQ, mInventorySession);
+    }
+
+    @Override
+    public synchronized NurRespInventory inventory(int rounds, int q, int session) throws Exception {
+        return inventory(rounds, q, session, null, 0);
+    }
+
+    private synchronized NurRespInventory inventory(int rounds, int q, int session,
+                                                    NurInventoryExtendedFilter[] filters, int filterCount) throws Exception {
+        checkConnected();
+        int found = inventoryRound(filters, filterCount);
+        delay(mPopulation.inventoryRoundMs * 1000L + (long) found * mPopulation.inventoryPerTagUs);
+        if (found == 0)
+            throw new NurApiException(NurApiErrors.NO_TAG);
+
+        NurRespInventory resp = new NurRespInventory();
+        resp.numTagsFound = found;
+        resp.numTagsMem = mModuleCount;
+        resp.roundsDone = Math.max(1, rounds);
+        resp.Q = q;
+        resp.collisions = collisions(found, q);
+        return resp;
+    }
+
+    @Override
+    public NurRespInventory inventoryExtended(NurInventoryExtended params, NurInventoryExtendedFilter filter) throws Exception {
+        return inventory(params.rounds, params.Q, params.session, new NurInventoryExtendedFilter[]{filter}, 1);
+    }
+
+    @Override
+    public NurRespInventory inventoryExtended(NurInventoryExtended params, NurInventoryExtendedFilter[] filters, int filterCount) throws Exception {
+        return inventory(params.rounds, params.Q, params.session, filters, filterCount);
+    }
+
+    @Override
+    public synchronized void clearIdBuffer(boolean clearReader) throws Exception {
+        NurTagStorage storage = getStorage();
+        synchronized (storage) {
+            storage.clear();
+        }
+        clearModule();
+    }
+
+    @Override
+    public synchronized void fetchTags(boolean includeMeta) throws Exception {
+        checkConnected();
+        delay((long) mModuleCount * mPopulation.fetchPerTagUs);
+        moveModuleToStorage();
+    }
+
+    @Override
+    public void startInventoryStream() throws Exception {
+        startStream(false);
+    }
+
+    @Override
+    public void stopInventoryStream() {
+        if (!mExtendedStream)
+            stopStream();
+    }
+
+    @Override
+    public boolean isInventoryStreamRunning() {
+        return mStreamThread != null && !mExtendedStream;
+    }
+
+    @Override
+    public void startInventoryExtendedStream(NurInventoryExtended params, NurInventoryExtendedFilter filter) throws Exception {
+        startStream(true);
+    }
+
+    @Override
+    public void startInventoryExtendedStream(NurInventoryExtended params, NurInventoryExtendedFilter[] filters) throws Exception {
+        startStream(true);
+    }
+
+    @Override
+    public void stopInventoryExtendedStream() {
+        if (mExtendedStream)
+            stopStream();
+    }
+
+    @Override
+    public boolean isInventoryExtendedStreamRunning() {
+        return mStreamThread != null && mExtendedStream;
+    }
+
+    @Override
+    public synchronized NurRespReadData traceTagByEpc(byte[] epc, int epcLen, int flags) throws Exception {
+        checkConnected();
+        delay(mPopulation.traceMs * 1000L);
+        int id = mTags.indexOf(epc.length == epcLen ? epc : Arrays.copyOf(epc, epcLen));
+        int antenna = id == TagIndex.NOT_FOUND ? -1 : pickAntenna(id);
+        int rssi = antenna < 0 ? 0 : readRssi(id, antenna);
+        if (rssi == 0)
+            throw new NurApiException(NurApiErrors.NO_TAG);
+
+        NurRespReadData resp = new NurRespReadData();
+        resp.rssi = rssi;
+        resp.scaledRssi = scaleRssi(rssi);
+        resp.antennaID = antenna;
+        if ((flags & TRACETAG_NO_EPC) == 0) {
+            resp.epc = mEpc[id].clone();
+            resp.epcLen = resp.epc.length;
+            resp.epcStr = byteArrayToHexString(resp.epc);
+        }
+        return resp;
+    }
+
+    @Override
+    public NurRespReadData traceTagByEpc(byte[] epc) throws Exception {
+        return traceTagByEpc(epc, epc.length, 0);
+    }
+
+    @Override
+    public void stopTraceTag() {
+    }
+
+    @Override
+    public synchronized byte[] readTagByEpc(byte[] epc, int epcLen, int bank, int address, int wordCount) throws Exception {
+        checkConnected();
+        delay(mPopulation.readMs * 1000L);
+        int id = mTags.indexOf(epc.length == epcLen ? epc : Arrays.copyOf(epc, epcLen));
+        if (id == TagIndex.NOT_FOUND || readRssi(id, pickAntenna(id)) == 0)
+            throw new NurApiException(NurApiErrors.NO_TAG);
+
+        byte[] data = readMemory(id, bank, address, wordCount);
+        if (data == null)
+            throw new NurApiException(NurApiErrors.G2_TAG_MEM_OVERRUN);
+        return data;
+    }
+
+    @Override
+    public synchronized void setIRConfig(int type, int bank, int address, int wordCount) throws Exception {
+        checkConnected();
+        if (type != IRTYPE_EPCDATA || wordCount < 1 || wordCount > MAX_IR_WORDS)
+            throw new NurApiException(NurApiErrors.INVALID_PARAMETER);
+        mIrConfig.IsRunning = true;
+        mIrConfig.irType = type;
+        mIrConfig.irBank = bank;
+        mIrConfig.irAddr = address;
+        mIrConfig.irWordCount = wordCount;
+    }
+
+    @Override
+    public void setIRConfig(NurIRConfig config) throws Exception {
+        if (config.IsRunning)
+            setIRConfig(config.irType, config.irBank, config.irAddr, config.irWordCount);
+        else
+            setIRState(false);
+    }
+
+    @Override
+    public synchronized void setIRState(boolean running) throws Exception {
+        checkConnected();
+        mIrConfig.IsRunning = running;
+    }
+
+    @Override
+    public synchronized NurIRConfig getIRConfig() throws Exception {
+        checkConnected();
+        NurIRConfig config = new NurIRConfig();
+        config.IsRunning = mIrConfig.IsRunning;
+        config.irType = mIrConfig.irType;
+        config.irBank = mIrConfig.irBank;
+        config.irAddr = mIrConfig.irAddr;
+        config.irWordCount = mIrConfig.irWordCount;
+        return config;
+    }
+
+    @Override
+    public int getSetupAntennaMaskEx() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mAntennaMaskEx;
+    }
+
+    @Override
+    public void setSetupAntennaMaskEx(int mask) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mAntennaMaskEx = mask;
+    }
+
+    @Override
+    public int getSetupSelectedAntenna() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mSelectedAntenna;
+    }
+
+    @Override
+    public void setSetupSelectedAntenna(int antenna) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mSelectedAntenna = antenna;
+    }
+
+    @Override
+    public int getSetupTxLevel() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mTxLevel;
+    }
+
+    @Override
+    public void setSetupTxLevel(int level) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mTxLevel = level;
+    }
+
+    @Override
+    public int getSetupInventoryQ() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mInventoryQ;
+    }
+
+    @Override
+    public void setSetupInventoryQ(int q) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mInventoryQ = q;
+    }
+
+    @Override
+    public int getSetupInventorySession() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mInventorySession;
+    }
+
+    @Override
+    public void setSetupInventorySession(int session) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mInventorySession = session;
+    }
+
+    @Override
+    public int getSetupInventoryRounds() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mInventoryRounds;
+    }
+
+    @Override
+    public void setSetupInventoryRounds(int rounds) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mInventoryRounds = rounds;
+    }
+
+    @Override
+    public int getSetupInventoryTarget() throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        return mInventoryTarget;
+    }
+
+    @Override
+    public void setSetupInventoryTarget(int target) throws Exception {
+        checkConnected();
+        delay(mPopulation.setupMs * 1000L);
+        mInventoryTarget = target;
+    }
+
+    /**
+     * EPC bank holds CRC, PC and EPC, TID bank Impinj like TID with population index as serial, other banks
+     * repeat population index.
+     *
+     * @return memory or null if range is past end of bank
+     */
+    private byte[] readMemory(int id, int bank, int address, int wordCount) {
+        byte[] mem;
+        if (bank == BANK_EPC) {
+            mem = new byte[4 + mEpc[id].length];
+            int pc = (mEpc[id].length / 2) << 11;
+            mem[2] = (byte) (pc >> 8);
+            mem[3] = (byte) pc;
+            System.arraycopy(mEpc[id], 0, mem, 4, mEpc[id].length);
+        } else {
+            mem = new byte[bank == BANK_TID ? 12 : 64];
+            int off = 0;
+            if (bank == BANK_TID) {
+                mem[0] = (byte) 0xE2;
+                mem[1] = (byte) 0x80;
+                mem[2] = (byte) 0x11;
+                mem[3] = (byte) 0x60;
+                off = 4;
+            }
+            for (int n = off; n < mem.length; n += 4) {
+                mem[n] = (byte) (id >> 24);
+                mem[n + 1] = (byte) (id >> 16);
+                mem[n + 2] = (byte) (id >> 8);
+                mem[n + 3] = (byte) id;
+            }
+        }
+        if ((address + wordCount) * 2 > mem.length)
+            return null;
+        return Arrays.copyOfRange(mem, address * 2, (address + wordCount) * 2);
+    }
+
+    private void checkConnected() throws NurApiException {
+        if (!mConnected)
+            throw new NurApiException(NurApiErrors.TR_NOT_CONNECTED);
+    }
+
+    private void delay(long us) {
+        long scaled = (long) (us * mPopulation.latencyScale);
+        if (scaled <= 0)
+            return;
+        try {
+            Thread.sleep(scaled / 1000, (int) (scaled % 1000) * 1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Move tags one step and read them into module memory.
+     * Only EPC bank filters are simulated, others select all tags (population has no sensor tags).
+     *
+     * @return tags found on this round
+     */
+    private int inventoryRound(NurInventoryExtendedFilter[] filters, int filterCount) {
+        int found = 0;
+        int movement = mPopulation.movement;
+        for (int id = 0; id < mEpc.length; id++) {
+            if (movement > 0) {
+                double rssi = mRssi[id] + (mRandom.nextDouble() * 2 - 1) * movement;
+                mRssi[id] = Math.max(RSSI_MIN, Math.min(RSSI_MAX, rssi));
+            }
+            if (!isSelected(id, filters, filterCount))
+                continue;
+
+            int antenna = pickAntenna(id);
+            if (antenna < 0)
+                continue;
+            int rssi = readRssi(id, antenna);
+            if (rssi == 0)
+                continue;
+
+            found++;
+            if (mModuleRssi[id] < 0 && mModuleCount < mModuleTags.length)
+                mModuleTags[mModuleCount++] = id;
+            mModuleRssi[id] = -rssi;
+            mModuleAntenna[id] = (byte) antenna;
+        }
+        return found;
+    }
+
+    //Any EPC filter matching selects the tag, byte aligned masks from start of EPC only
+    private boolean isSelected(int id, NurInventoryExtendedFilter[] filters, int filterCount) {
+        boolean epcFilters = false;
+        for (int n = 0; n < filterCount; n++) {
+            NurInventoryExtendedFilter filter = filters[n];
+            if (filter.bank != BANK_EPC || filter.address != 32)
+                continue;
+            epcFilters = true;
+            int bytes = filter.maskBitLength / 8;
+            byte[] epc = mEpc[id];
+            if (bytes > epc.length)
+                continue;
+            boolean match = true;
+            for (int b = 0; b < bytes && match; b++)
+                match = epc[b] == filter.maskdata[b];
+            if (match)
+                return true;
+        }
+        return !epcFilters;
+    }
+
+    //Antenna tag is read from, -1 if no antenna enabled
+    private int pickAntenna(int id) {
+        int mask = mAntennaMaskEx;
+        if (mSelectedAntenna != ANTENNAID_AUTOSELECT)
+            mask &= 1 << mSelectedAntenna;
+        int enabled = Integer.bitCount(mask);
+        if (enabled == 0)
+            return -1;
+        // Spread tags over enabled antennas
+        int nth = (id + mRandom.nextInt(enabled)) % enabled;
+        int antenna = -1;
+        for (int n = 0; n <= nth; n++) {
+            antenna = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+        return antenna;
+    }
+
+    //Signal of one read, 0 if tag did not answer
+    private int readRssi(int id, int antenna) {
+        double rssi = mRssi[id] - mTxLevel - (antenna < mAntennaLoss.length ? mAntennaLoss[antenna] : 0);
+        rssi += mRandom.nextGaussian() * 2;
+        if (rssi < RSSI_MIN)
+            return 0;
+        // Weakest tags answer at most every other round
+        double weak = (rssi - RSSI_MIN) / (RSSI_MAX - RSSI_MIN);
+        double probability = mPopulation.readProbability * Math.min(1.0, 0.5 + weak);
+        if (mRandom.nextDouble() >= probability)
+            return 0;
+        return (int) Math.min(RSSI_MAX, Math.round(rssi));
+    }
+
+    private static int scaleRssi(int rssi) {
+        return Math.max(0, Math.min(100, (rssi - RSSI_MIN) * 100 / (RSSI_MAX - RSSI_MIN)));
+    }
+
+    private static int collisions(int found, int q) {
+        int slots = 1 << Math.max(0, Math.min(15, q));
+        return found > slots ? found - slots : 0;
+    }
+
+    private void clearModule() {
+        for (int n = 0; n < mModuleCount; n++)
+            mModuleRssi[mModuleTags[n]] = -1;
+        mModuleCount = 0;
+    }
+
+    private void moveModuleToStorage() {
+        NurTagStorage storage = getStorage();
+        int timestamp = (int) System.currentTimeMillis();
+        synchronized (storage) {
+            for (int n = 0; n < mModuleCount; n++) {
+                int id = mModuleTags[n];
+                int rssi = -mModuleRssi[id];
+                int pc = (mEpc[id].length / 2) << 11;
+                byte[] irData = mIrConfig.IsRunning ? readMemory(id, mIrConfig.irBank, mIrConfig.irAddr, mIrConfig.irWordCount) : null;
+                storage.addTag(new NurTag(timestamp, rssi, scaleRssi(rssi), 0, pc, 0, mModuleAntenna[id], mEpc[id], irData));
+            }
+        }
+        clearModule();
+    }
+
+    private synchronized void startStream(boolean extended) throws Exception {
+        checkConnected();
+        if (mStreamThread != null)
+            return;
+        mExtendedStream = extended;
+        mStreamThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                streamLoop(Thread.currentThread());
+            }
+        }, "SimulatedInventoryStream");
+        mStreamThread.setDaemon(true);
+        mStreamThread.start();
+    }
+
+    private void stopStream() {
+        Thread thread = mStreamThread;
+        mStreamThread = null;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void streamLoop(Thread self) {
+        long stopAt = System.currentTimeMillis() + mPopulation.streamTimeoutMs;
+        boolean extended = mExtendedStream;
+        while (mStreamThread == self && !self.isInterrupted()) {
+            NurEventInventory event = new NurEventInventory();
+            synchronized (this) {
+                event.tagsAdded = inventoryRound(null, 0);
+                event.roundsDone = 1;
+                event.Q = mInventoryQ;
+                event.collisions = collisions(event.tagsAdded, mInventoryQ);
+                moveModuleToStorage();
+            }
+            delay(mPopulation.inventoryRoundMs * 1000L + (long) event.tagsAdded * mPopulation.inventoryPerTagUs);
+            event.stopped = System.currentTimeMillis() >= stopAt || self.isInterrupted();
+            if (event.stopped)
+                mStreamThread = null;
+
+            NurApiListener listener = getListener();
+            if (listener != null) {
+                if (extended)
+                    listener.inventoryExtendedStreamEvent(event);
+                else
+                    listener.inventoryStreamEvent(event);
+            }
+            if (event.stopped)
+                break;
+        }
+    }
+}
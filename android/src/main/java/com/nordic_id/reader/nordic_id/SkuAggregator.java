@@ -0,0 +1,110 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts tags per GTIN instead of delivering every EPC.
+ * EPCs are decoded with EpcDecoder and deduplicated exactly by serial within GTIN, so same item read
+ * in many rounds, or with another filter value, is counted once. Tags without GTIN are counted under NO_GTIN,
+ * deduplicated by EPC. Count changes since last drainDeltas() are kept per GTIN.
+ */
+class SkuAggregator {
+    static final String NO_GTIN = "";
+
+    private final EpcDecoder mDecoder;
+    private volatile boolean mEnabled = false;
+
+    //Guarded by this
+    private final HashMap<String, HashSet<String>> mSerials = new HashMap<>();
+    private HashMap<String, Integer> mPending = new HashMap<>();
+    private long mItemCount = 0;
+
+    SkuAggregator(EpcDecoder decoder) {
+        mDecoder = decoder;
+    }
+
+    /**
+     * Enabling starts a new count.
+     */
+    synchronized void setEnabled(boolean enabled) {
+        if (enabled && !mEnabled)
+            clear();
+        mEnabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Count EPC unless its item is already counted.
+     *
+     * @return true if EPC was a new item
+     */
+    synchronized boolean add(byte[] epc) {
+        EpcDecoder.Gs1 gs1 = mDecoder.decode(epc);
+        String gtin;
+        String serial;
+        if (gs1 != null && !gs1.gtin.isEmpty()) {
+            gtin = gs1.gtin;
+            serial = gs1.serial;
+        } else {
+            gtin = NO_GTIN;
+            serial = NurApi.byteArrayToHexString(epc);
+        }
+
+        HashSet<String> serials = mSerials.get(gtin);
+        if (serials == null) {
+            serials = new HashSet<>();
+            mSerials.put(gtin, serials);
+        }
+        if (!serials.add(serial))
+            return false;
+
+        mItemCount++;
+        Integer pending = mPending.get(gtin);
+        mPending.put(gtin, pending != null ? pending + 1 : 1);
+        return true;
+    }
+
+    /**
+     * Count increments per GTIN since last call, empty if nothing changed.
+     */
+    synchronized Map<String, Integer> drainDeltas() {
+        if (mPending.isEmpty())
+            return Collections.emptyMap();
+        Map<String, Integer> deltas = mPending;
+        mPending = new HashMap<>();
+        return deltas;
+    }
+
+    /**
+     * Total count per GTIN.
+     */
+    synchronized Map<String, Integer> getCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, HashSet<String>> sku : mSerials.entrySet())
+            counts.put(sku.getKey(), sku.getValue().size());
+        return counts;
+    }
+
+    synchronized void clear() {
+        mSerials.clear();
+        mPending = new HashMap<>();
+        mItemCount = 0;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", mEnabled);
+        metrics.put("skuCount", mSerials.size());
+        metrics.put("itemCount", mItemCount);
+        return metrics;
+    }
+}
@@ -0,0 +1,48 @@
+package com.nordic_id.reader.nordic_id;
+
+/**
+ * Single tag observation handed from NurHelper to the listener.
+ */
+class TagEvent {
+    static final int TYPE_ADDED = 0;
+    static final int TYPE_UPDATED = 1;
+    static final int TYPE_LOST = 2;
+
+    final byte[] epc;
+    final int rssi;
+    final int antennaId;
+    //Milliseconds since epoch when tag was handled
+    final long timestamp;
+    //Sensing code from sensor inventory or SensorInventory.NO_SENSOR_DATA
+    final int sensorData;
+    //TYPE_ADDED, TYPE_UPDATED or TYPE_LOST
+    final int type;
+    //Memory read with inventory (InventoryRead) or null
+    final byte[] irData;
+
+    TagEvent(byte[] epc, int rssi, int antennaId, long timestamp) {
+        this(epc, rssi, antennaId, timestamp, SensorInventory.NO_SENSOR_DATA, TYPE_ADDED);
+    }
+
+    TagEvent(byte[] epc, int rssi, int antennaId, long timestamp, int sensorData, int type) {
+        this(epc, rssi, antennaId, timestamp, sensorData, type, null);
+    }
+
+    TagEvent(byte[] epc, int rssi, int antennaId, long timestamp, int sensorData, int type, byte[] irData) {
+        this.epc = epc;
+        this.rssi = rssi;
+        this.antennaId = antennaId;
+        this.timestamp = timestamp;
+        this.sensorData = sensorData;
+        this.type = type;
+        this.irData = irData;
+    }
+
+    boolean hasSensorData() {
+        return sensorData != SensorInventory.NO_SENSOR_DATA;
+    }
+
+    boolean hasIrData() {
+        return irData != null;
+    }
+}
@@ -0,0 +1,95 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Compact binary encoding of tag batches delivered over TagsStatus event channel.
+ * Decoded on Flutter side by TagEpc.decodeTags in lib/tag_epc.dart, keep both in sync.
+ *
+ * All values are big endian.
+ * Header: u8 version, i32 tag count
+ * Tag:    u8 flags (bits 6-7 event type), u8 epc length, epc bytes, i16 rssi, u8 antenna id, i64 timestamp,
+ *         optional fields in flag bit order:
+ *         FLAG_SENSOR_DATA: u16 sensing code
+ *         FLAG_IR_DATA:     u8 length, memory bytes read with inventory
+ *         FLAG_GS1:         scheme, company prefix, GTIN-14 and serial, each u8 length and ASCII bytes (EpcDecoder)
+ */
+class TagEventCodec {
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5;
+    //Tag record size without EPC bytes
+    static final int TAG_FIXED_SIZE = 13;
+
+    static final int FLAG_SENSOR_DATA = 0x01;
+    static final int FLAG_IR_DATA = 0x02;
+    static final int FLAG_GS1 = 0x04;
+    static final int TYPE_SHIFT = 6;
+
+    private TagEventCodec() {
+    }
+
+    static int encodedSize(List<TagEvent> tags) {
+        int size = HEADER_SIZE;
+        for (int i = 0; i < tags.size(); i++) {
+            TagEvent tag = tags.get(i);
+            size += TAG_FIXED_SIZE + tag.epc.length;
+            if (tag.hasSensorData())
+                size += 2;
+            if (tag.hasIrData())
+                size += 1 + tag.irData.length;
+        }
+        return size;
+    }
+
+    static byte[] encode(List<TagEvent> tags) {
+        return encode(tags, null);
+    }
+
+    /**
+     * Encode batch, GS1 fields of every GS1 coded EPC are added when decoder is not null.
+     */
+    static byte[] encode(List<TagEvent> tags, EpcDecoder decoder) {
+        int size = encodedSize(tags);
+        EpcDecoder.Gs1[] gs1 = null;
+        if (decoder != null) {
+            gs1 = new EpcDecoder.Gs1[tags.size()];
+            for (int i = 0; i < gs1.length; i++) {
+                gs1[i] = decoder.decode(tags.get(i).epc);
+                if (gs1[i] != null)
+                    size += gs1[i].encoded.length;
+            }
+        }
+
+        byte[] out = new byte[size];
+        ByteBuffer buf = ByteBuffer.wrap(out);
+        buf.put((byte) VERSION);
+        buf.putInt(tags.size());
+        for (int i = 0; i < tags.size(); i++) {
+            TagEvent tag = tags.get(i);
+            int flags = tag.type << TYPE_SHIFT;
+            if (tag.hasSensorData())
+                flags |= FLAG_SENSOR_DATA;
+            if (tag.hasIrData())
+                flags |= FLAG_IR_DATA;
+            if (gs1 != null && gs1[i] != null)
+                flags |= FLAG_GS1;
+
+            buf.put((byte) flags);
+            buf.put((byte) tag.epc.length);
+            buf.put(tag.epc);
+            buf.putShort((short) tag.rssi);
+            buf.put((byte) tag.antennaId);
+            buf.putLong(tag.timestamp);
+            if ((flags & FLAG_SENSOR_DATA) != 0)
+                buf.putShort((short) tag.sensorData);
+            if ((flags & FLAG_IR_DATA) != 0) {
+                buf.put((byte) tag.irData.length);
+                buf.put(tag.irData);
+            }
+            if ((flags & FLAG_GS1) != 0)
+                buf.put(gs1[i].encoded);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,302 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.Arrays;
+
+/**
+ * Tag index of inventory session keyed on raw EPC bytes.
+ * EPCs up to 16 bytes (96 and 128 bit EPCs) are packed into two longs, only longer EPCs are kept as byte arrays.
+ * Per tag statistics live in parallel primitive arrays indexed by tag id.
+ * Tag ids are assigned in first seen order and stay valid until clear().
+ * Not thread safe, caller synchronizes.
+ */
+class TagIndex {
+    static final int NOT_FOUND = -1;
+
+    private static final int PACKED_MAX_LEN = 16;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    //Open addressing hash table (linear probing) of tag id + 1, 0 is empty slot. Kept at most half full.
+    private int[] mTable;
+    private int mTableMask;
+    private int mSize;
+
+    //EPC of tag. First 16 bytes are packed big endian into hi and lo.
+    private byte[] mEpcLen;
+    private long[] mEpcHi;
+    private long[] mEpcLo;
+    private int[] mHash;
+    //Full EPC of tags longer than 16 bytes, allocated when first one is seen
+    private byte[][] mLongEpc;
+
+    private long[] mFirstSeen;
+    private long[] mLastSeen;
+    private int[] mReadCount;
+    private short[] mBestRssi;
+    private short[] mLastRssi;
+    private byte[] mAntennaId;
+
+    TagIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    TagIndex(int expectedTags) {
+        int capacity = Math.max(16, expectedTags);
+        allocateTable(capacity * 2);
+        mEpcLen = new byte[capacity];
+        mEpcHi = new long[capacity];
+        mEpcLo = new long[capacity];
+        mHash = new int[capacity];
+        mFirstSeen = new long[capacity];
+        mLastSeen = new long[capacity];
+        mReadCount = new int[capacity];
+        mBestRssi = new short[capacity];
+        mLastRssi = new short[capacity];
+        mAntennaId = new byte[capacity];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    void clear() {
+        Arrays.fill(mTable, 0);
+        if (mLongEpc != null)
+            Arrays.fill(mLongEpc, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /**
+     * Independent copy with the same tag ids, to be read without holding the lock of this index.
+     */
+    TagIndex copy() {
+        int capacity = Math.max(16, mSize);
+        TagIndex copy = new TagIndex(0);
+        copy.mTable = mTable.clone();
+        copy.mTableMask = mTableMask;
+        copy.mSize = mSize;
+        copy.mEpcLen = Arrays.copyOf(mEpcLen, capacity);
+        copy.mEpcHi = Arrays.copyOf(mEpcHi, capacity);
+        copy.mEpcLo = Arrays.copyOf(mEpcLo, capacity);
+        copy.mHash = Arrays.copyOf(mHash, capacity);
+        // Long EPC arrays are never modified, sharing them is safe
+        if (mLongEpc != null)
+            copy.mLongEpc = Arrays.copyOf(mLongEpc, capacity);
+        copy.mFirstSeen = Arrays.copyOf(mFirstSeen, capacity);
+        copy.mLastSeen = Arrays.copyOf(mLastSeen, capacity);
+        copy.mReadCount = Arrays.copyOf(mReadCount, capacity);
+        copy.mBestRssi = Arrays.copyOf(mBestRssi, capacity);
+        copy.mLastRssi = Arrays.copyOf(mLastRssi, capacity);
+        copy.mAntennaId = Arrays.copyOf(mAntennaId, capacity);
+        return copy;
+    }
+
+    /**
+     * @return tag id or NOT_FOUND
+     */
+    int indexOf(byte[] epc) {
+        long hi = pack(epc, 0);
+        long lo = pack(epc, 8);
+        int hash = hash(epc, hi, lo);
+        for (int slot = hash & mTableMask; ; slot = (slot + 1) & mTableMask) {
+            int id = mTable[slot] - 1;
+            if (id < 0)
+                return NOT_FOUND;
+            if (mHash[id] == hash && matches(id, epc, hi, lo))
+                return id;
+        }
+    }
+
+    /**
+     * Record one read of a tag. New tag is added with read count 1.
+     *
+     * @return tag id
+     */
+    int observe(byte[] epc, int rssi, int antennaId, long now) {
+        long hi = pack(epc, 0);
+        long lo = pack(epc, 8);
+        int hash = hash(epc, hi, lo);
+        int slot = hash & mTableMask;
+        for (; ; slot = (slot + 1) & mTableMask) {
+            int id = mTable[slot] - 1;
+            if (id < 0)
+                break;
+            if (mHash[id] == hash && matches(id, epc, hi, lo)) {
+                mLastSeen[id] = now;
+                mReadCount[id]++;
+                mLastRssi[id] = (short) rssi;
+                if (rssi > mBestRssi[id])
+                    mBestRssi[id] = (short) rssi;
+                mAntennaId[id] = (byte) antennaId;
+                return id;
+            }
+        }
+
+        int id = mSize++;
+        if (id == mEpcLen.length)
+            growEntries();
+        mTable[slot] = id + 1;
+
+        mEpcLen[id] = (byte) epc.length;
+        mEpcHi[id] = hi;
+        mEpcLo[id] = lo;
+        mHash[id] = hash;
+        if (epc.length > PACKED_MAX_LEN) {
+            if (mLongEpc == null)
+                mLongEpc = new byte[mEpcLen.length][];
+            mLongEpc[id] = epc.clone();
+        }
+
+        mFirstSeen[id] = now;
+        mLastSeen[id] = now;
+        mReadCount[id] = 1;
+        mBestRssi[id] = (short) rssi;
+        mLastRssi[id] = (short) rssi;
+        mAntennaId[id] = (byte) antennaId;
+
+        if (mSize * 2 > mTable.length)
+            rehash(mTable.length * 2);
+        return id;
+    }
+
+    int getEpcLength(int id) {
+        return mEpcLen[id] & 0xFF;
+    }
+
+    /**
+     * Copy EPC of tag into dst.
+     *
+     * @return EPC length
+     */
+    int copyEpc(int id, byte[] dst, int offset) {
+        int len = getEpcLength(id);
+        if (len > PACKED_MAX_LEN) {
+            System.arraycopy(mLongEpc[id], 0, dst, offset, len);
+        } else {
+            for (int n = 0; n < len; n++) {
+                long word = n < 8 ? mEpcHi[id] : mEpcLo[id];
+                dst[offset + n] = (byte) (word >>> (56 - (n & 7) * 8));
+            }
+        }
+        return len;
+    }
+
+    byte[] getEpc(int id) {
+        byte[] epc = new byte[getEpcLength(id)];
+        copyEpc(id, epc, 0);
+        return epc;
+    }
+
+    long getFirstSeen(int id) {
+        return mFirstSeen[id];
+    }
+
+    long getLastSeen(int id) {
+        return mLastSeen[id];
+    }
+
+    int getReadCount(int id) {
+        return mReadCount[id];
+    }
+
+    int getBestRssi(int id) {
+        return mBestRssi[id];
+    }
+
+    int getLastRssi(int id) {
+        return mLastRssi[id];
+    }
+
+    int getAntennaId(int id) {
+        return mAntennaId[id] & 0xFF;
+    }
+
+    /**
+     * Compare EPCs of two tags as unsigned bytes, shorter EPC first when it is prefix of the other.
+     */
+    int compareEpc(int a, int b) {
+        if (mEpcHi[a] != mEpcHi[b])
+            return Long.compare(mEpcHi[a] ^ Long.MIN_VALUE, mEpcHi[b] ^ Long.MIN_VALUE);
+        if (mEpcLo[a] != mEpcLo[b])
+            return Long.compare(mEpcLo[a] ^ Long.MIN_VALUE, mEpcLo[b] ^ Long.MIN_VALUE);
+        int lenA = getEpcLength(a);
+        int lenB = getEpcLength(b);
+        // Equal packed bytes, EPCs differ at most after 16 bytes
+        for (int n = PACKED_MAX_LEN; n < lenA && n < lenB; n++) {
+            int diff = (mLongEpc[a][n] & 0xFF) - (mLongEpc[b][n] & 0xFF);
+            if (diff != 0)
+                return diff;
+        }
+        return lenA - lenB;
+    }
+
+    /**
+     * Tag ids in EPC order, EPCs are not copied.
+     */
+    int[] sortedByEpc() {
+        int[] ids = new int[mSize];
+        for (int id = 0; id < mSize; id++)
+            ids[id] = id;
+        IdSort.sort(ids, new IdSort.IdComparator() {
+            @Override
+            public int compare(int a, int b) {
+                return compareEpc(a, b);
+            }
+        });
+        return ids;
+    }
+
+    private boolean matches(int id, byte[] epc, long hi, long lo) {
+        if ((mEpcLen[id] & 0xFF) != epc.length || mEpcHi[id] != hi || mEpcLo[id] != lo)
+            return false;
+        return epc.length <= PACKED_MAX_LEN || Arrays.equals(mLongEpc[id], epc);
+    }
+
+    //Big endian pack of 8 bytes starting at offset, missing bytes are zero
+    private static long pack(byte[] epc, int offset) {
+        long word = 0;
+        int end = Math.min(epc.length, offset + 8);
+        for (int n = offset; n < end; n++)
+            word |= (epc[n] & 0xFFL) << (56 - (n - offset) * 8);
+        return word;
+    }
+
+    private static int hash(byte[] epc, long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L + lo;
+        for (int n = PACKED_MAX_LEN; n < epc.length; n++)
+            h = h * 31 + epc[n];
+        h = (h ^ epc.length) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocateTable(int minSize) {
+        int size = Integer.highestOneBit(Math.max(minSize - 1, 1)) << 1;
+        mTable = new int[size];
+        mTableMask = size - 1;
+    }
+
+    private void rehash(int newSize) {
+        allocateTable(newSize);
+        for (int id = 0; id < mSize; id++) {
+            int slot = mHash[id] & mTableMask;
+            while (mTable[slot] != 0)
+                slot = (slot + 1) & mTableMask;
+            mTable[slot] = id + 1;
+        }
+    }
+
+    private void growEntries() {
+        int capacity = mEpcLen.length * 2;
+        mEpcLen = Arrays.copyOf(mEpcLen, capacity);
+        mEpcHi = Arrays.copyOf(mEpcHi, capacity);
+        mEpcLo = Arrays.copyOf(mEpcLo, capacity);
+        mHash = Arrays.copyOf(mHash, capacity);
+        if (mLongEpc != null)
+            mLongEpc = Arrays.copyOf(mLongEpc, capacity);
+        mFirstSeen = Arrays.copyOf(mFirstSeen, capacity);
+        mLastSeen = Arrays.copyOf(mLastSeen, capacity);
+        mReadCount = Arrays.copyOf(mReadCount, capacity);
+        mBestRssi = Arrays.copyOf(mBestRssi, capacity);
+        mLastRssi = Arrays.copyOf(mLastRssi, capacity);
+        mAntennaId = Arrays.copyOf(mAntennaId, capacity);
+    }
+}
@@ -0,0 +1,85 @@
+package com.nordic_id.reader.nordic_id;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads same memory area of many tags, each singulated by EPC, and collects results in one binary payload.
+ * Decoded on Flutter side by TagReadResult.decode in lib/tag_read_result.dart, keep both in sync.
+ *
+ * All values are big endian.
+ * Header: u8 version, i32 tag count
+ * Tag:    u8 epc length, epc bytes, u16 error (0 on success, NurApiErrors code), u16 data length, data bytes
+ *
+ * Run on reader thread, not thread safe.
+ */
+class TagMemoryReader {
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5;
+    //Tag record size without EPC and data bytes
+    static final int TAG_FIXED_SIZE = 5;
+    //Error code of failures not coming from NurApi
+    static final int ERROR_UNKNOWN = 0xFFFF;
+    static final int MAX_WORDS = 255;
+
+    //Tries per tag when tag does not answer
+    private int mRetries = 2;
+
+    void setRetries(int retries) {
+        mRetries = Math.max(0, retries);
+    }
+
+    /**
+     * Read wordCount words from bank starting at word address of every tag in epcs.
+     */
+    byte[] readTags(NurApi api, List<byte[]> epcs, int bank, int address, int wordCount) {
+        if (wordCount < 1 || wordCount > MAX_WORDS)
+            throw new IllegalArgumentException("Word count must be 1-" + MAX_WORDS);
+
+        // Exact size when every tag answers, payload is then returned without copying
+        int size = HEADER_SIZE;
+        for (int i = 0; i < epcs.size(); i++)
+            size += TAG_FIXED_SIZE + epcs.get(i).length + wordCount * 2;
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put((byte) VERSION);
+        buf.putInt(epcs.size());
+        for (int i = 0; i < epcs.size(); i++) {
+            byte[] epc = epcs.get(i);
+            buf.put((byte) epc.length);
+            buf.put(epc);
+
+            byte[] data = null;
+            int error = NurApiErrors.NUR_NO_ERROR;
+            for (int attempt = 0; attempt <= mRetries; attempt++) {
+                try {
+                    data = api.readTagByEpc(epc, epc.length, bank, address, wordCount);
+                    error = NurApiErrors.NUR_NO_ERROR;
+                    break;
+                } catch (NurApiException ex) {
+                    error = ex.error;
+                    // Only missing tag is worth retrying
+                    if (ex.error != NurApiErrors.NO_TAG)
+                        break;
+                } catch (Exception ex) {
+                    error = ERROR_UNKNOWN;
+                    break;
+                }
+            }
+
+            buf.putShort((short) error);
+            if (data != null) {
+                buf.putShort((short) data.length);
+                buf.put(data);
+            } else {
+                buf.putShort((short) 0);
+            }
+        }
+        return buf.hasRemaining() ? Arrays.copyOf(buf.array(), buf.position()) : buf.array();
+    }
+}
@@ -16,6 +16,7 @@ public class TraceAntennaSelector
 
 	AvgBuffer mSignalAvg = new AvgBuffer(3, 0);
 	NurApi mApi;
+	ReaderConfigCache mConfig;
 
 	int mBackupSelectedAntenna;
 	int mBackupAntennaMask;
@@ -39,35 +40,45 @@ public class TraceAntennaSelector
 	}
 	
 	public void begin(NurApi api) throws Exception
+	{
+		// Nothing cached, setup is read from reader
+		begin(api, new ReaderConfigCache());
+	}
+
+	/**
+	 * Begin with setup values from cache, setup changes are written through it.
+	 */
+	void begin(NurApi api, ReaderConfigCache config) throws Exception
 	{
 		mApi = api;
+		mConfig = config;
 
 		mCurrentAnt = ANT_UNKNOWN;
 
 		mSignalAvg.clear();
 
-		mBackupAntennaMask = mApi.getSetupAntennaMaskEx();
-		mBackupSelectedAntenna = mApi.getSetupSelectedAntenna();
-		mBackupTxLevel = mApi.getSetupTxLevel();
+		mBackupAntennaMask = mConfig.getAntennaMaskEx(mApi);
+		mBackupSelectedAntenna = mConfig.getSelectedAntenna(mApi);
+		mBackupTxLevel = mConfig.getTxLevel(mApi);
 
-		mApi.setSetupSelectedAntenna(NurApi.ANTENNAID_AUTOSELECT);
+		mConfig.setSelectedAntenna(mApi, NurApi.ANTENNAID_AUTOSELECT);
 		
-		AntennaMapping []map = mApi.getAntennaMapping();
+		AntennaMapping []map = mConfig.getAntennaMapping(mApi);
 		
 		mCrossDipoleAntMask = getPhysicalAntennaMask(map, "CrossDipole");
 		mCircularAntMask = getPhysicalAntennaMask(map, "Circular");
 		mProximityAntMask = getPhysicalAntennaMask(map, "Proximity");
 		
-		mApi.setSetupTxLevel(0);
+		mConfig.setTxLevel(mApi, 0);
 		
 		selectCrossDipoleAntenna();
 	}
 	
 	public void stop() throws Exception
 	{
-		mApi.setSetupAntennaMaskEx(mBackupAntennaMask);
-		mApi.setSetupSelectedAntenna(mBackupSelectedAntenna);
-		mApi.setSetupTxLevel(mBackupTxLevel);
+		mConfig.setAntennaMaskEx(mApi, mBackupAntennaMask);
+		mConfig.setSelectedAntenna(mApi, mBackupSelectedAntenna);
+		mConfig.setTxLevel(mApi, mBackupTxLevel);
 	}
 	
 	public int getSignalStrength()
@@ -84,7 +95,7 @@ public class TraceAntennaSelector
 	{
 		if (mCrossDipoleAntMask != 0 && mCurrentAnt != ANT_CD)
 		{
-			mApi.setSetupAntennaMaskEx(mCrossDipoleAntMask);
+			mConfig.setAntennaMaskEx(mApi, mCrossDipoleAntMask);
 			mCurrentAnt = ANT_CD;
 			Log.d("TRACE", "ANT_CD");
 		}
@@ -94,7 +105,7 @@ public class TraceAntennaSelector
 	{
 		if (mCircularAntMask != 0 && mCurrentAnt != ANT_CIRCULAR)
 		{
-			mApi.setSetupAntennaMaskEx(mCircularAntMask);
+			mConfig.setAntennaMaskEx(mApi, mCircularAntMask);
 			mCurrentAnt = ANT_CIRCULAR;
 			Log.d("TRACE", "ANT_CIRCULAR");
 		}
@@ -104,7 +115,7 @@ public class TraceAntennaSelector
 	{
 		if (mProximityAntMask != 0 && mCurrentAnt != ANT_PROXIMITY)
 		{
-			mApi.setSetupAntennaMaskEx(mProximityAntMask);
+			mConfig.setAntennaMaskEx(mApi, mProximityAntMask);
 			mCurrentAnt = ANT_PROXIMITY;
 			Log.d("TRACE", "ANT_PROXIMITY");
 		}
@@ -0,0 +1,119 @@
+package com.nordic_id.reader.nordic_id;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Poll interval of trace loop.
+ * Changing or strong signal is polled fast so locating the tag reacts quickly, steady signal at base interval,
+ * missing tag with exponential back off and a single attempt per pass so radio is not kept busy for nothing.
+ * Also keeps achieved pass rate and latency percentiles of trace passes.
+ */
+class TraceScheduler {
+    static final long FAST_INTERVAL_MS = 20;
+    static final long MAX_ABSENT_INTERVAL_MS = 1000;
+    static final long MIN_SLEEP_MS = 5;
+    //Scaled RSSI change between passes considered as moving
+    static final int CHANGE_THRESHOLD = 5;
+    static final int STRONG_SIGNAL = 70;
+    static final int PRESENT_ATTEMPTS = 3;
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final double EWMA_ALPHA = 0.1;
+
+    private volatile long mBaseIntervalMs = 100;
+
+    private long mIntervalMs = 100;
+    private int mLastRssi = 0;
+    private boolean mPresent = false;
+
+    private final long[] mLatencies = new long[LATENCY_SAMPLES];
+    private int mLatencyCount = 0;
+    private int mLatencyPos = 0;
+    private long mPassCount = 0;
+    private long mFoundCount = 0;
+    private long mLastPassTime = 0;
+    private double mPassesPerSecond = 0;
+
+    void setBaseInterval(long intervalMs) {
+        mBaseIntervalMs = Math.max(FAST_INTERVAL_MS, intervalMs);
+    }
+
+    synchronized void reset() {
+        mIntervalMs = mBaseIntervalMs;
+        mLastRssi = 0;
+        mPresent = false;
+        mLatencyCount = 0;
+        mLatencyPos = 0;
+        mPassCount = 0;
+        mFoundCount = 0;
+        mLastPassTime = 0;
+        mPassesPerSecond = 0;
+    }
+
+    /**
+     * Trace attempts for next pass, retries only help when tag was there a moment ago.
+     */
+    synchronized int getAttempts() {
+        return mPresent || mPassCount == 0 ? PRESENT_ATTEMPTS : 1;
+    }
+
+    /**
+     * Record finished pass and pick time to wait before next one.
+     *
+     * @param scaledRssi signal of the pass, 0 when tag was not found
+     * @param passMs     time spent in the pass
+     * @param now        current time in ms
+     * @return sleep time in ms
+     */
+    synchronized long onPass(int scaledRssi, long passMs, long now) {
+        mPassCount++;
+        mLatencies[mLatencyPos] = passMs;
+        mLatencyPos = (mLatencyPos + 1) % LATENCY_SAMPLES;
+        mLatencyCount = Math.min(LATENCY_SAMPLES, mLatencyCount + 1);
+        if (mLastPassTime > 0 && now > mLastPassTime)
+            mPassesPerSecond += EWMA_ALPHA * (1000.0 / (now - mLastPassTime) - mPassesPerSecond);
+        mLastPassTime = now;
+
+        long base = mBaseIntervalMs;
+        if (scaledRssi <= 0) {
+            // Back off from base interval while tag stays missing
+            mIntervalMs = mPresent ? base : Math.min(MAX_ABSENT_INTERVAL_MS, Math.max(base, mIntervalMs * 2));
+            mPresent = false;
+        } else {
+            mFoundCount++;
+            boolean changing = !mPresent || Math.abs(scaledRssi - mLastRssi) >= CHANGE_THRESHOLD;
+            mIntervalMs = changing || scaledRssi > STRONG_SIGNAL ? Math.min(FAST_INTERVAL_MS, base) : base;
+            mPresent = true;
+        }
+        mLastRssi = scaledRssi;
+        return Math.max(MIN_SLEEP_MS, mIntervalMs - passMs);
+    }
+
+    synchronized long getInterval() {
+        return mIntervalMs;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        long[] sorted = Arrays.copyOf(mLatencies, mLatencyCount);
+        Arrays.sort(sorted);
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("intervalMs", mIntervalMs);
+        metrics.put("passCount", mPassCount);
+        metrics.put("foundCount", mFoundCount);
+        metrics.put("passesPerSecond", mPassesPerSecond);
+        metrics.put("latencyP50Ms", percentile(sorted, 50));
+        metrics.put("latencyP95Ms", percentile(sorted, 95));
+        metrics.put("latencyP99Ms", percentile(sorted, 99));
+        return metrics;
+    }
+
+    //Nearest rank percentile of sorted values, 0 when empty
+    static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
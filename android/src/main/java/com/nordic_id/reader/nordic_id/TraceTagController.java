@@ -20,6 +20,10 @@ import com.nordicid.nurapi.NurEventTraceTag;
 import com.nordicid.nurapi.NurEventTriggeredRead;
 import com.nordicid.nurapi.NurRespReadData;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
 public class TraceTagController {
 
 	private NurApi mApi;
@@ -27,9 +31,18 @@ public class TraceTagController {
 	private TraceTagListener mTraceListener;
 	private TraceAntennaSelector mTraceAntSelector = new TraceAntennaSelector();
 
-	private long mUpdateInterVal = 100;
+	private TraceScheduler mTraceScheduler = new TraceScheduler();
+	private MultiTagTrace mMultiTagTrace = new MultiTagTrace();
+
+	//Held by trace thread for every reader access, shared with ReaderExecutor so trace passes and reader commands never overlap
+	private ReentrantLock mReaderLock = new ReentrantLock();
 
 	private Handler mHandler;
+
+	//Trace updates to main thread at most once per UI frame, latest value wins
+	static final long UI_UPDATE_INTERVAL_MS = 16;
+	private LatestValuePublisher<Integer> mSignalPublisher;
+	private LatestValuePublisher<Map<String, Integer>> mMultiSignalPublisher;
 	
 	private NurApiListener mThisClassListener = new NurApiListener() {
 		@Override
@@ -106,6 +119,31 @@ public class TraceTagController {
 	public TraceTagController(NurApi na) {
 		mHandler = new Handler(Looper.getMainLooper());
 		mApi = na;
+
+		LatestValuePublisher.Scheduler mainThread = new LatestValuePublisher.Scheduler() {
+			@Override
+			public void schedule(Runnable drain, long delayMs) {
+				mHandler.postDelayed(drain, delayMs);
+			}
+		};
+		mSignalPublisher = new LatestValuePublisher<>(mainThread, UI_UPDATE_INTERVAL_MS,
+				new LatestValuePublisher.Consumer<Integer>() {
+					@Override
+					public void accept(Integer signal) {
+						// Only written here on main thread
+						mTracedTagInfo.scaledRssi = signal;
+						if (mTraceListener != null)
+							mTraceListener.traceTagEvent(mTracedTagInfo);
+					}
+				});
+		mMultiSignalPublisher = new LatestValuePublisher<>(mainThread, UI_UPDATE_INTERVAL_MS,
+				new LatestValuePublisher.Consumer<Map<String, Integer>>() {
+					@Override
+					public void accept(Map<String, Integer> signals) {
+						if (mTraceListener != null)
+							mTraceListener.multiTagTraceEvent(signals);
+					}
+				});
 	}
 
 	public NurApiListener getNurApiListener() {
@@ -121,15 +159,8 @@ public class TraceTagController {
 			e.printStackTrace();
 		}
 
-		mTracedTagInfo.scaledRssi = signalStrength;
-
-		mHandler.removeCallbacksAndMessages(null);
-		mHandler.post(new Runnable() {
-			@Override
-			public void run() {
-				mTraceListener.traceTagEvent(mTracedTagInfo);
-			}
-		});
+		// Signal is 0-100, boxing uses Integer cache and does not allocate
+		mSignalPublisher.publish(signalStrength);
 	}
 
 	private NurEventTraceTag doTracePass()
@@ -141,7 +172,8 @@ public class TraceTagController {
     	
     	//Log.d("TRACE", "doTracePass() +");
     	
-        for (int i = 0; i < 3 && mTraceRunning; i++)
+        int attempts = mTraceScheduler.getAttempts();
+        for (int i = 0; i < attempts && mTraceRunning; i++)
         {
             try
             {
@@ -161,80 +193,121 @@ public class TraceTagController {
     }
 
 	boolean mTraceRunning = false;
-		
-	Runnable mBeeperThreadRunnable = new Runnable() {
-		@Override
-		public void run() 
-		{	
-			while (mTraceRunning)
-			{
-				int avgStrength = mTraceAntSelector.getSignalStrength();
-				int sleepTime = 1000;
-				//int beepDuration = Beeper.BEEP_300MS;
-
-				if (avgStrength > 70)
-				{
-					sleepTime = 150 - avgStrength;
-					//beepDuration = Beeper.BEEP_40MS;
-				}
-				else if (avgStrength > 0)
-				{
-					sleepTime = 200 - avgStrength;
-					//beepDuration = Beeper.BEEP_100MS;
-				}
 
-				//Beeper.beep(beepDuration);
+	//Beep/vibrate feedback driven by smoothed signal, null = no feedback
+	private FeedbackScheduler mFeedback;
 
-				try {
-					Thread.sleep(sleepTime);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-	}; 
-	Thread mBeeperThread;
+	//Reader setup shared with inventory, null = setup is read from reader on every begin
+	private ReaderConfigCache mConfig;
 
 	Runnable mTraceThreadRunnable = new Runnable() {
 		@Override
 		public void run() {
 			
+			mReaderLock.lock();
 			try {
-				mTraceAntSelector.begin(mApi);
+				beginAntennaSelector();
 			} catch (Exception e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
+			} finally {
+				mReaderLock.unlock();
 			}
 			
+			mTraceScheduler.reset();
 			while (mTraceRunning)
 			{
 				long t1 = System.currentTimeMillis();
-				NurEventTraceTag ev = doTracePass();
+				NurEventTraceTag ev;
+				mReaderLock.lock();
+				try {
+					ev = doTracePass();
+				} finally {
+					mReaderLock.unlock();
+				}
 				long t2 = System.currentTimeMillis();
 				if (mTraceRunning) {
 					handleTraceTag(ev);
+					if (mFeedback != null)
+						mFeedback.onSignal(mTraceAntSelector.getSignalStrength());
 
 					try {
-						int sleepTime = (int)(mUpdateInterVal - (t2-t1));
-						if (sleepTime < 10)
-							sleepTime = 10;
-						Thread.sleep(sleepTime);
+						Thread.sleep(mTraceScheduler.onPass(ev.scaledRssi, t2 - t1, t2));
 					} catch (InterruptedException e) {
-						e.printStackTrace();
+						// Stopped while backing off
+						break;
 					}
 				}
 			}
+			// Clear interrupt of stopTagTrace so restoring antenna setup is not disturbed
+			Thread.interrupted();
 			
+			mReaderLock.lock();
 			try {
 				mTraceAntSelector.stop();
 			} catch (Exception e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
+			} finally {
+				mReaderLock.unlock();
 			}
 		}
 	};
 	Thread mTraceThread;
 
+	Runnable mMultiTraceThreadRunnable = new Runnable() {
+		@Override
+		public void run() {
+
+			mReaderLock.lock();
+			try {
+				// Same antenna and power setup as single tag trace, antenna is not switched per tag
+				beginAntennaSelector();
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				mReaderLock.unlock();
+			}
+
+			mTraceScheduler.reset();
+			while (mTraceRunning)
+			{
+				long t1 = System.currentTimeMillis();
+				int best = 0;
+				mReaderLock.lock();
+				try {
+					best = mMultiTagTrace.cycle(mApi);
+				} catch (Exception e) {
+					// Treated as nothing found
+				} finally {
+					mReaderLock.unlock();
+				}
+				long t2 = System.currentTimeMillis();
+				if (mTraceRunning) {
+					mMultiSignalPublisher.publish(mMultiTagTrace.getSignals());
+					if (mFeedback != null)
+						mFeedback.onSignal(best);
+
+					try {
+						Thread.sleep(mTraceScheduler.onPass(best, t2 - t1, t2));
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+			}
+			Thread.interrupted();
+
+			mReaderLock.lock();
+			try {
+				mTraceAntSelector.stop();
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				mReaderLock.unlock();
+			}
+		}
+	};
+
 	public boolean setTagTrace(String epc)
 	{
 		try {
@@ -255,12 +328,10 @@ public class TraceTagController {
 				setTagTrace(epc);
 				
 				mTraceRunning = true;
+				if (mFeedback != null)
+					mFeedback.start();
 				mTraceThread = new Thread(mTraceThreadRunnable);
 				mTraceThread.start();
-				
-				mBeeperThread = new Thread(mBeeperThreadRunnable);
-				mBeeperThread.setPriority(Thread.MIN_PRIORITY);
-				mBeeperThread.start();
 			} catch (Exception err) {
 				err.printStackTrace();
 				return false;
@@ -272,22 +343,63 @@ public class TraceTagController {
 		return false;		
 	}
 
+	/**
+	 * Locate all EPCs (hex) at once with filtered inventories, signals are reported with multiTagTraceEvent.
+	 * Stopped with stopTagTrace.
+	 */
+	public boolean startMultiTagTrace(List<String> epcs)
+	{
+		if (isTracingTag())
+			return true;
+
+		if (mApi.isConnected() && !epcs.isEmpty()) {
+			try {
+				mMultiTagTrace.setTargets(epcs);
+
+				mTraceRunning = true;
+				if (mFeedback != null)
+					mFeedback.start();
+				mTraceThread = new Thread(mMultiTraceThreadRunnable);
+				mTraceThread.start();
+			} catch (Exception err) {
+				err.printStackTrace();
+				mTraceRunning = false;
+				return false;
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
 	public boolean stopTagTrace() {
 		if (!isTracingTag())
 			return true;
 		
 		try {
 			mTraceRunning = false;
+			if (mFeedback != null)
+				mFeedback.stop();
 			if (mTraceThread != null)
 			{
-				mTraceThread.join(5000);
+				mTraceThread.interrupt();
+				// Stop is usually a reader command holding reader lock, trace thread needs it to finish its pass
+				// and restore antenna setup
+				int holds = mReaderLock.getHoldCount();
+				for (int i = 0; i < holds; i++)
+					mReaderLock.unlock();
+				try {
+					mTraceThread.join(5000);
+				} finally {
+					for (int i = 0; i < holds; i++)
+						mReaderLock.lock();
+				}
 				mTraceThread = null;
 			}
-			if (mBeeperThread != null)
-			{
-				mBeeperThread.join(5000);
-				mBeeperThread = null;
-			}
+			// Drain already posted to main thread must not deliver a signal after stop
+			mSignalPublisher.clear();
+			mMultiSignalPublisher.clear();
 						
 		} catch (Exception err) {
 			err.printStackTrace();
@@ -301,8 +413,38 @@ public class TraceTagController {
 		return mTraceRunning;
 	}
 
+	/**
+	 * Base poll interval, used while signal is steady. Changing signal is polled faster and missing tag slower.
+	 */
 	public void setUpdateInterval(int interval) {
-		mUpdateInterVal = interval;
+		mTraceScheduler.setBaseInterval(interval);
+	}
+
+	Map<String, Object> getTraceMetrics() {
+		Map<String, Object> metrics = mTraceScheduler.getMetrics();
+		// Updates replaced by a newer one before main thread took them
+		metrics.put("droppedUpdates", mSignalPublisher.getPublishedCount() - mSignalPublisher.getDeliveredCount()
+				+ mMultiSignalPublisher.getPublishedCount() - mMultiSignalPublisher.getDeliveredCount());
+		return metrics;
+	}
+
+	void setReaderConfigCache(ReaderConfigCache config) {
+		mConfig = config;
+	}
+
+	private void beginAntennaSelector() throws Exception {
+		if (mConfig != null)
+			mTraceAntSelector.begin(mApi, mConfig);
+		else
+			mTraceAntSelector.begin(mApi);
+	}
+
+	void setReaderLock(ReentrantLock lock) {
+		mReaderLock = lock;
+	}
+
+	void setFeedbackScheduler(FeedbackScheduler feedback) {
+		mFeedback = feedback;
 	}
 
 	public void setListener(TraceTagListener l) {
@@ -311,6 +453,7 @@ public class TraceTagController {
 
 	public interface TraceTagListener {
 		public void traceTagEvent(TracedTagInfo data);
+		public void multiTagTraceEvent(Map<String, Integer> signals);
 		public void readerDisconnected();
 		public void readerConnected();
 		public void IOChangeEvent(NurEventIOChange event);
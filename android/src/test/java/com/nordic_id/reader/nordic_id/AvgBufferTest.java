@@ -0,0 +1,86 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AvgBufferTest {
+  @Test
+  public void add_overMaxSize_averagesLatestValues() {
+    AvgBuffer buf = new AvgBuffer(3, 0);
+    buf.add(10, 0);
+    buf.add(20, 0);
+    buf.add(30, 0);
+    buf.add(40, 0);
+
+    assertEquals(3, buf.size());
+    assertEquals(90, buf.getSumValue(), 1e-9);
+    assertEquals(30, buf.getAvgValue(), 1e-9);
+  }
+
+  @Test
+  public void add_dropsValuesOlderThanMaxAge() {
+    AvgBuffer buf = new AvgBuffer(10, 100);
+    buf.add(10, 1000);
+    buf.add(20, 1050);
+    buf.add(60, 1120);
+
+    assertEquals(2, buf.size());
+    assertEquals(40, buf.getAvgValue(), 1e-9);
+
+    buf.add(5, 5000);
+    assertEquals(1, buf.size());
+    assertEquals(5, buf.getAvgValue(), 1e-9);
+  }
+
+  @Test
+  public void median_ignoresOutliers() {
+    AvgBuffer buf = new AvgBuffer(5, 0, AvgBuffer.MODE_MEDIAN);
+    buf.add(50, 0);
+    buf.add(0, 0);
+    buf.add(52, 0);
+    buf.add(100, 0);
+    buf.add(51, 0);
+    assertEquals(51, buf.getAvgValue(), 1e-9);
+
+    buf.add(53, 0); // pushes out 50
+    assertEquals(52, buf.getAvgValue(), 1e-9);
+
+    buf.add(54, 0); // pushes out 0
+    buf.add(55, 0); // pushes out 52
+    assertEquals(54, buf.getAvgValue(), 1e-9);
+  }
+
+  @Test
+  public void ewma_weightsNewValues() {
+    AvgBuffer buf = new AvgBuffer(10, 0, AvgBuffer.MODE_EWMA);
+    buf.setEwmaAlpha(0.5);
+    buf.add(100, 0);
+    buf.add(0, 0);
+    buf.add(0, 0);
+
+    assertEquals(25, buf.getAvgValue(), 1e-9);
+  }
+
+  @Test
+  public void add_manyValues_keepsExactRunningSum() {
+    AvgBuffer buf = new AvgBuffer(7, 0);
+    for (int n = 0; n < 100000; n++)
+      buf.add(n % 101 * 0.1, 0);
+
+    double expected = 0;
+    for (int n = 100000 - 7; n < 100000; n++)
+      expected += n % 101 * 0.1;
+    assertEquals(expected, buf.getSumValue(), 1e-9);
+  }
+
+  @Test
+  public void clear_resetsAverage() {
+    AvgBuffer buf = new AvgBuffer(3, 0);
+    buf.add(10, 0);
+    buf.clear();
+
+    assertEquals(0, buf.size());
+    assertEquals(0, buf.getAvgValue(), 1e-9);
+  }
+}
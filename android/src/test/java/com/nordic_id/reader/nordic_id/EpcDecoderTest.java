@@ -0,0 +1,62 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.nordicid.nurapi.NurApi;
+import java.util.Map;
+import org.junit.Test;
+
+public class EpcDecoderTest {
+  // urn:epc:tag:sgtin-96:3.0614141.812345.6789
+  private static final String SGTIN = "3074257BF7194E4000001A85";
+
+  @Test
+  public void decode_sgtin96_fields() throws Exception {
+    EpcDecoder decoder = new EpcDecoder();
+    EpcDecoder.Gs1 gs1 = decoder.decode(NurApi.hexStringToByteArray(SGTIN));
+
+    assertEquals("sgtin-96", gs1.scheme);
+    assertEquals("0614141", gs1.companyPrefix);
+    assertEquals("80614141123458", gs1.gtin);
+    assertEquals("6789", gs1.serial);
+  }
+
+  @Test
+  public void decode_cachesByEpcBytes() throws Exception {
+    EpcDecoder decoder = new EpcDecoder();
+    EpcDecoder.Gs1 first = decoder.decode(NurApi.hexStringToByteArray(SGTIN));
+    // Same EPC in a new array, as read in a later round
+    assertSame(first, decoder.decode(NurApi.hexStringToByteArray(SGTIN)));
+
+    // Not GS1 coded EPC is cached as null
+    assertNull(decoder.decode(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+    assertNull(decoder.decode(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+
+    Map<String, Object> metrics = decoder.getMetrics();
+    assertEquals(2L, metrics.get("cacheHits"));
+    assertEquals(2L, metrics.get("cacheMisses"));
+  }
+
+  @Test
+  public void decode_evictsLeastRecentlyUsed() {
+    EpcDecoder decoder = new EpcDecoder();
+    decoder.configure(true, 2);
+    byte[] a = SimulatedNurApi.sgtin96(1234567, 1, 1);
+    byte[] b = SimulatedNurApi.sgtin96(1234567, 1, 2);
+    byte[] c = SimulatedNurApi.sgtin96(1234567, 1, 3);
+
+    decoder.decode(a);
+    decoder.decode(b);
+    decoder.decode(a);
+    decoder.decode(c); // evicts b
+    decoder.decode(a);
+    decoder.decode(b);
+
+    Map<String, Object> metrics = decoder.getMetrics();
+    assertEquals(2, metrics.get("cacheSize"));
+    assertEquals(2L, metrics.get("cacheHits"));
+    assertEquals(4L, metrics.get("cacheMisses"));
+  }
+}
@@ -0,0 +1,134 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ExpectedManifestTest {
+  private static byte[] packed(byte[]... epcs) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] epc : epcs) {
+      out.write(epc.length);
+      out.write(epc, 0, epc.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[][] population(int count) {
+    byte[][] epcs = new byte[count][];
+    for (int n = 0; n < count; n++)
+      epcs[n] = SimulatedNurApi.sgtin96(1234567, n % 300, count - n);
+    return epcs;
+  }
+
+  @Test
+  public void observe_countsFoundMissingAndUnexpected() {
+    byte[][] epcs = population(10000);
+    ExpectedManifest manifest = new ExpectedManifest();
+    // Duplicates are dropped
+    byte[][] withDuplicates = Arrays.copyOf(epcs, 10002);
+    withDuplicates[10000] = epcs[5];
+    withDuplicates[10001] = epcs[7];
+    assertEquals(10000, manifest.load(packed(withDuplicates)));
+
+    for (int n = 0; n < 10000; n += 2) {
+      assertTrue(manifest.observe(epcs[n]) != ExpectedManifest.NOT_EXPECTED);
+      manifest.observe(epcs[n]);
+    }
+    assertEquals(ExpectedManifest.NOT_EXPECTED, manifest.observe(SimulatedNurApi.sgtin96(7654321, 1, 1)));
+    manifest.observe(SimulatedNurApi.sgtin96(7654321, 1, 1));
+    byte[] longEpc = new byte[20];
+    manifest.observe(longEpc);
+
+    Map<String, Object> counts = manifest.getCounts();
+    assertEquals(10000, counts.get("expected"));
+    assertEquals(5000, counts.get("found"));
+    assertEquals(5000, counts.get("missing"));
+    assertEquals(2, counts.get("unexpected"));
+
+    long version = manifest.getVersion();
+    manifest.observe(epcs[0]);
+    assertEquals(version, manifest.getVersion());
+    manifest.clearFound();
+    assertEquals(0, manifest.getCounts().get("found"));
+    assertEquals(0, manifest.getCounts().get("unexpected"));
+  }
+
+  @Test
+  public void getMissing_pagesInEpcOrder() {
+    byte[][] epcs = population(1000);
+    ExpectedManifest manifest = new ExpectedManifest();
+    manifest.load(packed(epcs));
+    for (int n = 0; n < 1000; n++)
+      if (n % 10 != 0)
+        manifest.observe(epcs[n]);
+
+    List<String> first = manifest.getMissing(0, 60);
+    List<String> second = manifest.getMissing(60, 60);
+    assertEquals(60, first.size());
+    assertEquals(40, second.size());
+    assertEquals(0, manifest.getMissing(100, 60).size());
+    first.addAll(second);
+    for (int n = 1; n < first.size(); n++)
+      assertTrue(first.get(n - 1).compareTo(first.get(n)) < 0);
+    for (int n = 0; n < 1000; n += 10)
+      assertTrue(first.contains(NurApi.byteArrayToHexString(epcs[n])));
+  }
+
+  @Test
+  public void indexOf_shortAndLongEpcs() {
+    byte[] shortEpc = {0x30, 0x14};
+    byte[] longEpc = new byte[62];
+    longEpc[61] = 1;
+    byte[] otherLong = longEpc.clone();
+    otherLong[61] = 2;
+    ExpectedManifest manifest = new ExpectedManifest();
+    manifest.load(packed(longEpc, shortEpc, otherLong));
+
+    // Unsigned byte order
+    assertEquals(0, manifest.indexOf(longEpc));
+    assertEquals(1, manifest.indexOf(otherLong));
+    assertEquals(2, manifest.indexOf(shortEpc));
+    assertEquals(ExpectedManifest.NOT_EXPECTED, manifest.indexOf(new byte[62]));
+    assertEquals(ExpectedManifest.NOT_EXPECTED, manifest.indexOf(new byte[] {0x30}));
+
+    manifest.clear();
+    assertEquals(ExpectedManifest.NOT_EXPECTED, manifest.observe(shortEpc));
+    assertEquals(0, manifest.getCounts().get("unexpected"));
+  }
+
+  @Test
+  public void load_emptyOrTruncatedEpc_isRejected() {
+    byte[][] epcs = population(10);
+    ExpectedManifest manifest = new ExpectedManifest();
+    manifest.load(packed(epcs));
+
+    byte[][] withEmpty = Arrays.copyOf(epcs, 11);
+    withEmpty[10] = new byte[0];
+    try {
+      manifest.load(packed(withEmpty));
+      fail("Empty EPC accepted");
+    } catch (IllegalArgumentException ex) {
+      // Expected
+    }
+    byte[] truncated = packed(epcs);
+    try {
+      manifest.load(Arrays.copyOf(truncated, truncated.length - 1));
+      fail("Truncated EPC accepted");
+    } catch (IllegalArgumentException ex) {
+      // Expected
+    }
+    // Previous manifest is kept
+    assertEquals(10, manifest.getCounts().get("expected"));
+    assertTrue(manifest.indexOf(epcs[3]) != ExpectedManifest.NOT_EXPECTED);
+  }
+}
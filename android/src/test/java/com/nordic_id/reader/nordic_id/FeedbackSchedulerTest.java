@@ -0,0 +1,130 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+public class FeedbackSchedulerTest {
+  // Tasks run by advance() on the test thread when their time comes
+  private final List<FutureTask<Void>> mTasks = new ArrayList<>();
+  private final List<Long> mDueTimes = new ArrayList<>();
+  private long mNow = 1000;
+  private final ReentrantLock mReaderLock = new ReentrantLock();
+  private int mBeeps = 0;
+  private int mVibrates = 0;
+
+  private final FeedbackScheduler mFeedback = new FeedbackScheduler(new FeedbackScheduler.Timer() {
+    @Override
+    public Future<?> schedule(Runnable task, long delayMs) {
+      FutureTask<Void> future = new FutureTask<>(task, null);
+      mTasks.add(future);
+      mDueTimes.add(mNow + delayMs);
+      return future;
+    }
+
+    @Override
+    public long now() {
+      return mNow;
+    }
+  }, mReaderLock, new FeedbackScheduler.Output() {
+    @Override
+    public void beep(int durationMs) {
+      assertTrue(mReaderLock.isHeldByCurrentThread());
+      mBeeps++;
+    }
+
+    @Override
+    public void vibrate(int durationMs) {
+      mVibrates++;
+    }
+  });
+
+  private void advance(long ms) {
+    long end = mNow + ms;
+    while (true) {
+      int next = -1;
+      for (int n = 0; n < mTasks.size(); n++)
+        if (mDueTimes.get(n) <= end && (next < 0 || mDueTimes.get(n) < mDueTimes.get(next)))
+          next = n;
+      if (next < 0)
+        break;
+      mNow = Math.max(mNow, mDueTimes.remove(next));
+      mTasks.remove(next).run();
+    }
+    mNow = end;
+  }
+
+  @Test
+  public void onSignal_strongSignal_feedbackIsRateLimited() {
+    mFeedback.setMode(FeedbackScheduler.MODE_BEEP);
+    mFeedback.start();
+    mFeedback.onSignal(90);
+    advance(550);
+    mFeedback.stop();
+
+    // At 0, 100, 200, 300, 400 and 500 ms
+    assertEquals(6, mBeeps);
+    assertEquals(0, mVibrates);
+    assertEquals(6, mFeedback.getFeedbackCount());
+    advance(150);
+    assertEquals(6, mBeeps);
+  }
+
+  // Reader lock held by another thread, like trace loop holds it during a pass
+  private Thread holdReaderLock(final CountDownLatch release) throws Exception {
+    final CountDownLatch locked = new CountDownLatch(1);
+    Thread holder = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        mReaderLock.lock();
+        locked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          // Released
+        } finally {
+          mReaderLock.unlock();
+        }
+      }
+    });
+    holder.start();
+    locked.await();
+    return holder;
+  }
+
+  @Test
+  public void onSignal_noTagOrReaderLockHeld_noFeedback() throws Exception {
+    mFeedback.setMode(FeedbackScheduler.MODE_BEEP | FeedbackScheduler.MODE_VIBRATE);
+    mFeedback.start();
+    mFeedback.onSignal(0);
+    advance(100);
+    assertEquals(0, mBeeps);
+
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = holdReaderLock(release);
+    mFeedback.onSignal(50);
+    advance(100);
+    assertEquals(0, mBeeps);
+
+    release.countDown();
+    holder.join();
+    advance(FeedbackScheduler.BUSY_RETRY_MS);
+    assertEquals(1, mBeeps);
+    assertEquals(1, mVibrates);
+    mFeedback.stop();
+  }
+
+  @Test
+  public void intervalFor_neverBelowMinInterval() {
+    assertEquals(190, FeedbackScheduler.intervalFor(10));
+    assertEquals(FeedbackScheduler.MIN_INTERVAL_MS, FeedbackScheduler.intervalFor(100));
+  }
+}
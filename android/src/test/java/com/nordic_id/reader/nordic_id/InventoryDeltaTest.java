@@ -0,0 +1,47 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+public class InventoryDeltaTest {
+  private static byte[] epc(int n) {
+    return new byte[] {0x30, 0x14, 0, 0, 0, 0, 0, 0, 0, 0, (byte) (n >> 8), (byte) n};
+  }
+
+  @Test
+  public void sweepLost_tagsNotPassedToOnObserved_notReported() {
+    InventoryDelta delta = new InventoryDelta();
+    delta.configure(true, 5, 1000);
+    NurListener listener = mock(NurListener.class);
+    TagIndex index = new TagIndex();
+
+    // SKU aggregation indexes tags without delta tracking them, past initial capacity
+    for (int n = 0; n < 2000; n++)
+      index.observe(epc(n), -50, 1, 0);
+    delta.sweepLost(index, 5000, listener);
+
+    verify(listener, never()).onInventoryResult(any(TagEvent.class));
+  }
+
+  @Test
+  public void onObserved_tagIndexedBeforeTracking_addedThenLost() {
+    InventoryDelta delta = new InventoryDelta();
+    delta.configure(true, 5, 1000);
+    NurListener listener = mock(NurListener.class);
+    TagIndex index = new TagIndex();
+
+    int id = index.observe(epc(1), -50, 1, 0);
+    id = index.observe(epc(1), -50, 1, 100);
+    assertEquals(TagEvent.TYPE_ADDED, delta.onObserved(index, id));
+    assertEquals(InventoryDelta.NO_EVENT, delta.onObserved(index, index.observe(epc(1), -51, 1, 200)));
+
+    delta.sweepLost(index, 5000, listener);
+    verify(listener, times(1)).onInventoryResult(any(TagEvent.class));
+  }
+}
@@ -0,0 +1,185 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InventoryJournalTest {
+  private final Map<InventoryJournal, ScheduledExecutorService> mExecutors = new HashMap<>();
+  private File mFile;
+
+  @Before
+  public void setUp() throws Exception {
+    mFile = File.createTempFile("inventory", ".journal");
+    mFile.delete();
+  }
+
+  @After
+  public void tearDown() {
+    for (ScheduledExecutorService executor : mExecutors.values())
+      executor.shutdownNow();
+    mFile.delete();
+  }
+
+  private InventoryJournal newJournal() {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    InventoryJournal journal = new InventoryJournal(executor);
+    mExecutors.put(journal, executor);
+    return journal;
+  }
+
+  // Commits on journal thread after everything queued so far
+  private void sync(final InventoryJournal journal) throws Exception {
+    mExecutors.get(journal).submit(new Runnable() {
+      @Override
+      public void run() {
+        journal.commit();
+      }
+    }).get();
+  }
+
+  private static byte[] epc(int n) {
+    return new byte[] {0x30, 0x14, 0, 0, 0, 0, 0, 0, 0, 0, (byte) (n >> 8), (byte) n};
+  }
+
+  private static int sessionSize(InventoryJournal journal) {
+    TagIndex session = journal.getSession();
+    synchronized (session) {
+      return session.size();
+    }
+  }
+
+  @Test
+  public void reopen_recoversSession() throws Exception {
+    InventoryJournal journal = newJournal();
+    journal.open(mFile);
+    for (int n = 0; n < 100; n++) {
+      journal.record(epc(n), -50, 1, 1000 + n);
+      journal.record(epc(n), -40, 2, 2000 + n);
+    }
+    sync(journal);
+    assertEquals(100, sessionSize(journal));
+
+    InventoryJournal recovered = newJournal();
+    recovered.open(mFile);
+    sync(recovered);
+    assertEquals(100, sessionSize(recovered));
+    assertEquals(200L, recovered.getMetrics().get("recoveredRecords"));
+    TagIndex session = recovered.getSession();
+    synchronized (session) {
+      assertEquals(-40, session.getLastRssi(0));
+      assertEquals(2, session.getAntennaId(0));
+      assertEquals(2000, session.getLastSeen(0));
+    }
+  }
+
+  @Test
+  public void open_midSession_journalsSessionSoFar() throws Exception {
+    InventoryJournal journal = newJournal();
+    for (int n = 0; n < 10; n++) {
+      journal.record(epc(n), -60, 1, 1000 + n);
+      journal.record(epc(n), -45, 1, 1500 + n);
+      journal.record(epc(n), -55, 3, 2000 + n);
+    }
+    sync(journal);
+    journal.open(mFile);
+    journal.record(epc(10), -50, 2, 3000);
+    sync(journal);
+
+    InventoryJournal recovered = newJournal();
+    recovered.open(mFile);
+    sync(recovered);
+    assertEquals(11, sessionSize(recovered));
+    assertEquals(31L, recovered.getMetrics().get("recoveredRecords"));
+    TagIndex session = recovered.getSession();
+    synchronized (session) {
+      int id = session.indexOf(epc(4));
+      assertEquals(3, session.getReadCount(id));
+      assertEquals(-45, session.getBestRssi(id));
+      assertEquals(-55, session.getLastRssi(id));
+      assertEquals(3, session.getAntennaId(id));
+      assertEquals(1004, session.getFirstSeen(id));
+      assertEquals(2004, session.getLastSeen(id));
+    }
+  }
+
+  @Test
+  public void reopen_tornRecordEndsRecovery() throws Exception {
+    InventoryJournal journal = newJournal();
+    journal.open(mFile);
+    for (int n = 0; n < 10; n++)
+      journal.record(epc(n), -50, 1, 1000 + n);
+    sync(journal);
+    long bytes = (Long) journal.getMetrics().get("journalBytes");
+
+    // Last byte of the last record (its CRC) was never written
+    RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+    file.seek(bytes - 1);
+    int crc = file.read();
+    file.seek(bytes - 1);
+    file.write(crc ^ 0xFF);
+    file.close();
+
+    InventoryJournal recovered = newJournal();
+    recovered.open(mFile);
+    sync(recovered);
+    assertEquals(9, sessionSize(recovered));
+    Map<String, Object> metrics = recovered.getMetrics();
+    assertEquals(9L, metrics.get("recoveredRecords"));
+    // Journal continues over the torn record
+    assertEquals(bytes - InventoryJournal.RECORD_FIXED_SIZE - epc(0).length, metrics.get("journalBytes"));
+  }
+
+  @Test
+  public void clear_previousSessionIsNotRecovered() throws Exception {
+    InventoryJournal journal = newJournal();
+    journal.open(mFile);
+    for (int n = 0; n < 10; n++)
+      journal.record(epc(n), -50, 1, 1000);
+    sync(journal);
+    journal.clear();
+    journal.record(epc(500), -50, 1, 2000);
+    sync(journal);
+    assertEquals(1, sessionSize(journal));
+
+    InventoryJournal recovered = newJournal();
+    recovered.open(mFile);
+    sync(recovered);
+    assertEquals(1, sessionSize(recovered));
+
+    recovered.close(mFile);
+    sync(recovered);
+    assertFalse(mFile.exists());
+  }
+
+  @Test
+  public void commit_uniqueTagsCountsTagsNewToSession() throws Exception {
+    PluginMetrics metrics = new PluginMetrics();
+    InventoryJournal journal = newJournal();
+    journal.setMetrics(metrics);
+    // Same tags over several rounds, as without delta mode every round reads them again
+    for (int round = 0; round < 3; round++) {
+      for (int n = 0; n < 20; n++)
+        journal.record(epc(n), -50, 1, 1000 * round + n);
+      sync(journal);
+    }
+    journal.record(epc(20), -50, 1, 5000);
+    sync(journal);
+    assertEquals(21L, metrics.get(PluginMetrics.UNIQUE_TAGS));
+
+    journal.clear();
+    journal.record(epc(3), -50, 1, 6000);
+    sync(journal);
+    assertEquals(1L, metrics.get(PluginMetrics.UNIQUE_TAGS));
+  }
+}
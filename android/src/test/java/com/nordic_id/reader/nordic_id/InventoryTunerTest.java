@@ -0,0 +1,91 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.nordicid.nurapi.NurApi;
+
+import org.junit.Test;
+
+public class InventoryTunerTest {
+  @Test
+  public void onRound_largePopulation_convergesToDualTargetSession() {
+    InventoryTuner tuner = new InventoryTuner();
+    for (int n = 0; n < 50; n++) {
+      // Expected slot outcomes of 1000 tags in frame of 2^Q slots
+      double slots = 1 << tuner.getQ();
+      double single = 1000 * Math.pow(1 - 1 / slots, 999);
+      double empty = slots * Math.pow(1 - 1 / slots, 1000);
+      tuner.onRound((int) single, (int) (slots - single - empty), 1, 100);
+    }
+
+    assertEquals(NurApi.SESSION_S1, tuner.getSession());
+    assertEquals(10, tuner.getQ());
+    assertEquals(4, tuner.getRounds());
+  }
+
+  @Test
+  public void onRound_emptyRoundInS1_flipsTargetAndKeepsEstimate() {
+    InventoryTuner tuner = new InventoryTuner();
+    tuner.onRound(100, 20, 1, 100);
+    assertEquals(NurApi.SESSION_S1, tuner.getSession());
+    assertEquals(NurApi.INVTARGET_A, tuner.getTarget());
+    int q = tuner.getQ();
+
+    tuner.onRound(0, 0, 1, 100);
+    assertEquals(NurApi.INVTARGET_B, tuner.getTarget());
+    tuner.onRound(100, 20, 1, 100);
+    tuner.onRound(0, 0, 1, 100);
+    assertEquals(NurApi.INVTARGET_A, tuner.getTarget());
+
+    assertEquals(NurApi.SESSION_S1, tuner.getSession());
+    assertEquals(q, tuner.getQ());
+    assertEquals(2L, tuner.getMetrics().get("targetFlips"));
+  }
+
+  @Test
+  public void onRound_populationLeavesInS1_fallsBackToS0() {
+    InventoryTuner tuner = new InventoryTuner();
+    for (int n = 0; n < 10; n++)
+      tuner.onRound(100, 20, 1, 100);
+    assertEquals(NurApi.SESSION_S1, tuner.getSession());
+
+    // Tags are gone, reader reports NO_TAG on every round
+    for (int n = 0; n < 50; n++)
+      tuner.onRound(0, 0, 1, 100);
+
+    assertEquals(1L, tuner.getMetrics().get("targetFlips"));
+    assertEquals(NurApi.SESSION_S0, tuner.getSession());
+    assertEquals(NurApi.INVTARGET_A, tuner.getTarget());
+    assertEquals(0, tuner.getQ());
+    assertEquals(1, tuner.getRounds());
+    assertTrue((Double) tuner.getMetrics().get("populationEstimate") < 1);
+  }
+
+  @Test
+  public void onRound_smallPopulation_staysInS0WithLowQ() {
+    InventoryTuner tuner = new InventoryTuner();
+    for (int n = 0; n < 20; n++)
+      tuner.onRound(5, 0, 1, 20);
+
+    assertEquals(NurApi.SESSION_S0, tuner.getSession());
+    assertEquals(2, tuner.getQ());
+    assertEquals(1, tuner.getRounds());
+    tuner.onRound(0, 0, 1, 20);
+    assertEquals(NurApi.INVTARGET_A, tuner.getTarget());
+  }
+
+  @Test
+  public void onRound_fullFrameOfRoundQ_raisesEstimateAndReportsChange() {
+    InventoryTuner tuner = new InventoryTuner();
+    // Reader ran Q 2 while tuner is at Q 4, all 4 slots used
+    assertTrue(tuner.onRound(3, 1, 1, 20, 2));
+    assertEquals(8.0, (Double) tuner.getMetrics().get("populationEstimate"), 0.001);
+    assertEquals(3, tuner.getQ());
+
+    for (int n = 0; n < 20; n++)
+      tuner.onRound(5, 0, 1, 20);
+    assertFalse(tuner.onRound(5, 0, 1, 20));
+  }
+}
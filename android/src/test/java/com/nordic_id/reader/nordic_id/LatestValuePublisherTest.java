@@ -0,0 +1,91 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatestValuePublisherTest {
+  private final List<Runnable> mScheduled = new ArrayList<>();
+  private final List<Integer> mDelivered = new ArrayList<>();
+
+  private LatestValuePublisher<Integer> publisher() {
+    return new LatestValuePublisher<>(
+        new LatestValuePublisher.Scheduler() {
+          @Override
+          public void schedule(Runnable drain, long delayMs) {
+            mScheduled.add(drain);
+          }
+        },
+        0,
+        new LatestValuePublisher.Consumer<Integer>() {
+          @Override
+          public void accept(Integer value) {
+            mDelivered.add(value);
+          }
+        });
+  }
+
+  @Test
+  public void publish_beforeDrain_conflatesToLatest() {
+    LatestValuePublisher<Integer> publisher = publisher();
+    publisher.publish(1);
+    publisher.publish(2);
+    publisher.publish(3);
+
+    assertEquals(1, mScheduled.size());
+    mScheduled.get(0).run();
+    assertEquals(1, mDelivered.size());
+    assertEquals(3, (int) mDelivered.get(0));
+    assertEquals(3, publisher.getPublishedCount());
+    assertEquals(1, publisher.getDeliveredCount());
+  }
+
+  @Test
+  public void publish_afterDrain_schedulesAgain() {
+    LatestValuePublisher<Integer> publisher = publisher();
+    publisher.publish(1);
+    mScheduled.get(0).run();
+    publisher.publish(2);
+
+    assertEquals(2, mScheduled.size());
+    publisher.clear();
+    mScheduled.get(1).run();
+    assertEquals(1, mDelivered.size());
+  }
+
+  @Test
+  public void publish_concurrentProducer_lastValueIsDelivered() throws Exception {
+    final ExecutorService consumer = Executors.newSingleThreadExecutor();
+    final List<Integer> delivered = new ArrayList<>();
+    final LatestValuePublisher<Integer> publisher = new LatestValuePublisher<>(
+        new LatestValuePublisher.Scheduler() {
+          @Override
+          public void schedule(Runnable drain, long delayMs) {
+            consumer.execute(drain);
+          }
+        },
+        0,
+        new LatestValuePublisher.Consumer<Integer>() {
+          @Override
+          public void accept(Integer value) {
+            delivered.add(value);
+          }
+        });
+
+    for (int n = 0; n <= 100000; n++)
+      publisher.publish(n);
+    consumer.shutdown();
+    consumer.awaitTermination(5, TimeUnit.SECONDS);
+
+    assertEquals(100000, (int) delivered.get(delivered.size() - 1));
+    for (int n = 1; n < delivered.size(); n++)
+      assertTrue(delivered.get(n) > delivered.get(n - 1));
+  }
+}
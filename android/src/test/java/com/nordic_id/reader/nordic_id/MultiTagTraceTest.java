@@ -0,0 +1,47 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MultiTagTraceTest {
+  @Test
+  public void cycle_chunksOfFilters_signalOnlyForTracedTags() throws Exception {
+    SimulatedNurApi.Population population = new SimulatedNurApi.Population();
+    population.tagCount = 100;
+    population.rssiMean = -50;
+    population.rssiSpread = 0;
+    population.readProbability = 1;
+    population.latencyScale = 0;
+    SimulatedNurApi api = new SimulatedNurApi(population);
+    api.connect();
+
+    List<String> epcs = new ArrayList<>();
+    for (int n = 0; n < 10; n++)
+      epcs.add(NurApi.byteArrayToHexString(api.getPopulationEpc(n * 7)));
+    String missing = NurApi.byteArrayToHexString(SimulatedNurApi.sgtin96(7654321, 1, 1));
+    epcs.add(missing);
+
+    MultiTagTrace trace = new MultiTagTrace();
+    trace.setTargets(epcs);
+    assertEquals(11, trace.getTargetCount());
+    // Two chunks: 8 + 3 filters
+    for (int n = 0; n < 6; n++)
+      trace.cycle(api);
+
+    Map<String, Integer> signals = trace.getSignals();
+    assertEquals(11, signals.size());
+    for (int n = 0; n < 10; n++)
+      assertTrue(epcs.get(n), signals.get(epcs.get(n).toUpperCase()) > 0);
+    assertEquals(0, (int) signals.get(missing.toUpperCase()));
+    // Trace does not leave tags in storage used by inventory
+    assertEquals(0, api.getStorage().size());
+  }
+}
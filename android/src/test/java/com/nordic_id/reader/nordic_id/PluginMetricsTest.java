@@ -0,0 +1,88 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class PluginMetricsTest {
+  @Test
+  public void histogram_percentilesWithinBucket() {
+    PluginMetrics.Histogram histogram = new PluginMetrics.Histogram();
+    // 90 fast commands of 1 ms, 10 slow of 40 ms
+    for (int n = 0; n < 90; n++)
+      histogram.record(1000);
+    for (int n = 0; n < 10; n++)
+      histogram.record(40000);
+
+    assertEquals(100, histogram.getCount());
+    double p50 = histogram.percentileMs(50);
+    assertTrue(p50 >= 1 && p50 <= 2.048);
+    double p99 = histogram.percentileMs(99);
+    assertTrue(p99 >= 40 && p99 <= 65.536);
+    // Capped to the longest recorded latency
+    assertEquals(40.0, histogram.percentileMs(100), 0.001);
+    assertEquals(0.0, new PluginMetrics.Histogram().percentileMs(50), 0.0);
+  }
+
+  @Test
+  public void snapshot_ratesOverWindow() {
+    PluginMetrics metrics = new PluginMetrics();
+    long start = System.currentTimeMillis();
+    metrics.snapshot(start + PluginMetrics.RATE_WINDOW_MS);
+
+    metrics.add(PluginMetrics.TAG_READS, 500);
+    metrics.increment(PluginMetrics.INVENTORY_ROUNDS);
+    Map<String, Object> snapshot = metrics.snapshot(start + 3 * PluginMetrics.RATE_WINDOW_MS);
+
+    assertEquals(500L, snapshot.get(PluginMetrics.TAG_READS));
+    assertEquals(250.0, (Double) snapshot.get(PluginMetrics.TAG_READS + "PerSecond"), 0.001);
+    assertEquals(0.5, (Double) snapshot.get(PluginMetrics.INVENTORY_ROUNDS + "PerSecond"), 0.001);
+
+    // Nothing new in next window
+    snapshot = metrics.snapshot(start + 4 * PluginMetrics.RATE_WINDOW_MS);
+    assertEquals(0.0, (Double) snapshot.get(PluginMetrics.TAG_READS + "PerSecond"), 0.001);
+  }
+
+  @Test
+  public void snapshot_consumersKeepOwnRateWindow() {
+    PluginMetrics metrics = new PluginMetrics();
+    long start = System.currentTimeMillis();
+    metrics.snapshot(PluginMetrics.CONSUMER_CALL, start + PluginMetrics.RATE_WINDOW_MS);
+    metrics.snapshot(PluginMetrics.CONSUMER_STREAM, start + PluginMetrics.RATE_WINDOW_MS);
+
+    metrics.add(PluginMetrics.TAG_READS, 100);
+    // Stream snapshots often, call snapshot still sees reads of its whole window
+    Map<String, Object> stream = metrics.snapshot(PluginMetrics.CONSUMER_STREAM, start + 2 * PluginMetrics.RATE_WINDOW_MS);
+    Map<String, Object> call = metrics.snapshot(PluginMetrics.CONSUMER_CALL, start + 2 * PluginMetrics.RATE_WINDOW_MS);
+    assertEquals(100.0, (Double) stream.get(PluginMetrics.TAG_READS + "PerSecond"), 0.001);
+    assertEquals(100.0, (Double) call.get(PluginMetrics.TAG_READS + "PerSecond"), 0.001);
+  }
+
+  @Test
+  public void reset_countsFromZero() {
+    PluginMetrics metrics = new PluginMetrics();
+    long start = System.currentTimeMillis();
+    metrics.add(PluginMetrics.UNIQUE_TAGS, 50);
+    metrics.snapshot(start + PluginMetrics.RATE_WINDOW_MS);
+
+    metrics.reset(PluginMetrics.UNIQUE_TAGS);
+    metrics.add(PluginMetrics.UNIQUE_TAGS, 10);
+    Map<String, Object> snapshot = metrics.snapshot(start + 2 * PluginMetrics.RATE_WINDOW_MS);
+    assertEquals(10L, snapshot.get(PluginMetrics.UNIQUE_TAGS));
+    assertEquals(10.0, (Double) snapshot.get(PluginMetrics.UNIQUE_TAGS + "PerSecond"), 0.001);
+  }
+
+  @Test
+  public void snapshot_reportsHistograms() {
+    PluginMetrics metrics = new PluginMetrics();
+    metrics.histogram(PluginMetrics.INVENTORY_LATENCY).record(2500);
+
+    Map<String, Object> snapshot = metrics.snapshot(System.currentTimeMillis());
+    @SuppressWarnings("unchecked")
+    Map<String, Object> latency = (Map<String, Object>) snapshot.get(PluginMetrics.INVENTORY_LATENCY + "Latency");
+    assertEquals(1L, latency.get("count"));
+    assertEquals(2.5, (Double) latency.get("maxMs"), 0.001);
+  }
+}
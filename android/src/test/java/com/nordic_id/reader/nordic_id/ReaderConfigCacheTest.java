@@ -0,0 +1,76 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.nordicid.nurapi.AntennaMapping;
+import com.nordicid.nurapi.NurApi;
+import org.junit.Test;
+
+public class ReaderConfigCacheTest {
+  private static NurApi reader() throws Exception {
+    NurApi api = mock(NurApi.class);
+    when(api.getSetupAntennaMaskEx()).thenReturn(0x0F);
+    when(api.getSetupSelectedAntenna()).thenReturn(NurApi.ANTENNAID_AUTOSELECT);
+    when(api.getSetupTxLevel()).thenReturn(3);
+    when(api.getSetupInventoryTarget()).thenReturn(NurApi.INVTARGET_A);
+    when(api.getAntennaMapping()).thenReturn(new AntennaMapping[0]);
+    return api;
+  }
+
+  @Test
+  public void load_servesReadsFromMemory() throws Exception {
+    NurApi api = reader();
+    ReaderConfigCache config = new ReaderConfigCache();
+    config.load(api);
+    assertTrue(config.isLoaded());
+
+    for (int n = 0; n < 5; n++) {
+      assertEquals(0x0F, config.getAntennaMaskEx(api));
+      assertEquals(NurApi.ANTENNAID_AUTOSELECT, config.getSelectedAntenna(api));
+      assertEquals(3, config.getTxLevel(api));
+      config.getAntennaMapping(api);
+    }
+
+    verify(api, times(1)).getSetupAntennaMaskEx();
+    verify(api, times(1)).getSetupSelectedAntenna();
+    verify(api, times(1)).getSetupTxLevel();
+    verify(api, times(1)).getAntennaMapping();
+    assertEquals(20, config.getHitCount());
+    assertEquals(0, config.getMissCount());
+  }
+
+  @Test
+  public void set_writesOnlyChangedValues() throws Exception {
+    NurApi api = reader();
+    ReaderConfigCache config = new ReaderConfigCache();
+    config.load(api);
+
+    config.setSelectedAntenna(api, NurApi.ANTENNAID_AUTOSELECT);
+    config.setTxLevel(api, 0);
+    config.setTxLevel(api, 0);
+    config.setInventoryTarget(api, NurApi.INVTARGET_B);
+
+    verify(api, times(0)).setSetupSelectedAntenna(NurApi.ANTENNAID_AUTOSELECT);
+    verify(api, times(1)).setSetupTxLevel(0);
+    verify(api, times(1)).setSetupInventoryTarget(NurApi.INVTARGET_B);
+    assertEquals(0, config.getTxLevel(api));
+  }
+
+  @Test
+  public void invalidate_readsFromReaderAgain() throws Exception {
+    NurApi api = reader();
+    ReaderConfigCache config = new ReaderConfigCache();
+    config.load(api);
+    config.invalidate();
+
+    assertEquals(3, config.getTxLevel(api));
+    assertEquals(3, config.getTxLevel(api));
+    verify(api, times(2)).getSetupTxLevel();
+    assertEquals(1, config.getMissCount());
+  }
+}
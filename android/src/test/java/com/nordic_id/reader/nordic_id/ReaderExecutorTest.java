@@ -0,0 +1,125 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import io.flutter.plugin.common.MethodChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ReaderExecutorTest {
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  @Test
+  public void submit_runsCommandsInOrder() throws Exception {
+    ReaderExecutor executor = new ReaderExecutor(DIRECT);
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+    MethodChannel.Result result = mock(MethodChannel.Result.class);
+
+    for (int n = 0; n < 5; n++) {
+      final int value = n;
+      executor.submit("ERROR", new ReaderExecutor.Command() {
+        @Override
+        public Object run() {
+          order.add(value);
+          return value;
+        }
+      }, result);
+    }
+
+    verify(result, timeout(1000)).success(4);
+    assertEquals(5, order.size());
+    for (int n = 0; n < 5; n++)
+      assertEquals(n, (int) order.get(n));
+    assertEquals(5, executor.getCompletedCount());
+  }
+
+  @Test
+  public void submit_failingCommand_deliversError() {
+    ReaderExecutor executor = new ReaderExecutor(DIRECT);
+    MethodChannel.Result result = mock(MethodChannel.Result.class);
+
+    executor.submit("READ_ERROR", new ReaderExecutor.Command() {
+      @Override
+      public Object run() throws Exception {
+        throw new Exception("No tag");
+      }
+    }, result);
+
+    verify(result, timeout(1000)).error("READ_ERROR", "No tag", null);
+  }
+
+  @Test
+  public void cancelPending_cancelsQueuedCommands() throws Exception {
+    ReaderExecutor executor = new ReaderExecutor(DIRECT);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    MethodChannel.Result running = mock(MethodChannel.Result.class);
+    MethodChannel.Result queued = mock(MethodChannel.Result.class);
+
+    executor.submit("ERROR", new ReaderExecutor.Command() {
+      @Override
+      public Object run() throws Exception {
+        started.countDown();
+        release.await();
+        return true;
+      }
+    }, running);
+    started.await();
+    for (int n = 0; n < 3; n++) {
+      executor.submit("ERROR", new ReaderExecutor.Command() {
+        @Override
+        public Object run() {
+          return true;
+        }
+      }, queued);
+    }
+    assertEquals(3, executor.getQueueDepth());
+
+    assertEquals(3, executor.cancelPending());
+    release.countDown();
+
+    verify(running, timeout(1000)).success(true);
+    verify(queued, timeout(1000).times(3)).error(ReaderExecutor.ERROR_CANCELLED, "Reader command cancelled", null);
+    assertEquals(3, executor.getMaxQueueDepth());
+    assertEquals(3, executor.getCancelledCount());
+  }
+
+  @Test
+  public void submit_waitsWhileReaderLockIsHeld() throws Exception {
+    ReaderExecutor executor = new ReaderExecutor(DIRECT);
+    final CountDownLatch ran = new CountDownLatch(1);
+    MethodChannel.Result result = mock(MethodChannel.Result.class);
+
+    executor.getLock().lock();
+    try {
+      executor.submit("ERROR", new ReaderExecutor.Command() {
+        @Override
+        public Object run() {
+          ran.countDown();
+          return true;
+        }
+      }, result);
+      assertFalse(ran.await(100, TimeUnit.MILLISECONDS));
+    } finally {
+      executor.getLock().unlock();
+    }
+
+    assertTrue(ran.await(1000, TimeUnit.MILLISECONDS));
+    verify(result, timeout(1000)).success(true);
+  }
+}
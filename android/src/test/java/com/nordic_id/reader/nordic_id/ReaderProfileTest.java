@@ -0,0 +1,77 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.nordicid.nurapi.AntennaMapping;
+import com.nordicid.nurapi.NurRespReaderInfo;
+import org.junit.Test;
+
+public class ReaderProfileTest {
+  private static NurRespReaderInfo info(String serial, String swVersion) {
+    NurRespReaderInfo info = new NurRespReaderInfo();
+    info.serial = serial;
+    info.swVersion = swVersion;
+    return info;
+  }
+
+  @Test
+  public void antennas_roundTrip() {
+    AntennaMapping[] mapping = new AntennaMapping[2];
+    mapping[0] = new AntennaMapping();
+    mapping[0].antennaId = 0;
+    mapping[0].name = "CrossDipole.X";
+    mapping[1] = new AntennaMapping();
+    mapping[1].antennaId = 3;
+    mapping[1].name = "Proximity;2:x";
+
+    AntennaMapping[] decoded = ReaderProfile.decodeAntennas(ReaderProfile.encodeAntennas(mapping));
+    assertEquals(2, decoded.length);
+    assertEquals(3, decoded[1].antennaId);
+    assertEquals("CrossDipole.X", decoded[0].name);
+    assertEquals("Proximity;2:x", decoded[1].name);
+
+    assertEquals(0, ReaderProfile.decodeAntennas(ReaderProfile.encodeAntennas(new AntennaMapping[0])).length);
+    assertNull(ReaderProfile.decodeAntennas(null));
+    assertNull(ReaderProfile.decodeAntennas("x:Broken;1"));
+    assertNull(ReaderProfile.decodeAntennas("0:CrossDipole.X;3:Proximity"));
+    assertNull(ReaderProfile.decodeAntennas("0:20:Short"));
+  }
+
+  @Test
+  public void matches_onlySameSerialAndFirmware() {
+    ReaderProfile profile = new ReaderProfile();
+    assertFalse(profile.matches(info("1234", "7.0")));
+
+    profile.serial = "1234";
+    profile.swVersion = "7.0";
+    assertTrue(profile.matches(info("1234", "7.0")));
+    assertFalse(profile.matches(info("1234", "7.1")));
+    assertFalse(profile.matches(info("9999", "7.0")));
+  }
+
+  @Test
+  public void forDevice_keepsCapabilitiesOfSameAddressOnly() {
+    ReaderProfile profile = new ReaderProfile();
+    profile.address = "AA:BB";
+    profile.serial = "1234";
+    profile.accessorySupported = true;
+
+    ReaderProfile same = profile.forDevice("type=BLE;addr=AA:BB", "AA:BB");
+    assertEquals("1234", same.serial);
+    assertTrue(same.accessorySupported);
+    assertEquals("type=BLE;addr=AA:BB", same.spec);
+
+    ReaderProfile updated = profile.withoutCapabilities();
+    assertEquals("AA:BB", updated.address);
+    assertNull(updated.serial);
+    assertFalse(updated.accessorySupported);
+
+    ReaderProfile other = profile.forDevice("type=BLE;addr=CC:DD", "CC:DD");
+    assertNull(other.serial);
+    assertFalse(other.accessorySupported);
+    assertEquals("CC:DD", other.address);
+  }
+}
@@ -0,0 +1,37 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SensorInventoryTest {
+  @Test
+  public void decodeSensorData_validBitsSet_returnsSensingCode() {
+    assertEquals(0, SensorInventory.decodeSensorData(0x0C00));
+    assertEquals(0x155, SensorInventory.decodeSensorData(0x0D55));
+    assertEquals(1023, SensorInventory.decodeSensorData(0x0FFF));
+    // Bits above valid bits do not matter
+    assertEquals(0x123, SensorInventory.decodeSensorData(0xF123 | 0x0C00));
+  }
+
+  @Test
+  public void decodeSensorData_validBitMissing_returnsNoData() {
+    assertEquals(SensorInventory.NO_SENSOR_DATA, SensorInventory.decodeSensorData(0));
+    assertEquals(SensorInventory.NO_SENSOR_DATA, SensorInventory.decodeSensorData(0x0BFF));
+    assertEquals(SensorInventory.NO_SENSOR_DATA, SensorInventory.decodeSensorData(0x07FF));
+  }
+
+  @Test
+  public void isDue_followsIntervalAndEnable() {
+    SensorInventory sensor = new SensorInventory();
+    assertFalse(sensor.isDue(1000));
+
+    sensor.configure(true, 0);
+    assertTrue(sensor.isDue(1000));
+
+    sensor.configure(true, 500);
+    assertTrue(sensor.isDue(1000));
+  }
+}
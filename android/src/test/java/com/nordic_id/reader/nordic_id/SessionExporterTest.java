@@ -0,0 +1,151 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionExporterTest {
+  private File mFile;
+
+  @Before
+  public void setUp() throws Exception {
+    mFile = File.createTempFile("session", ".export");
+  }
+
+  @After
+  public void tearDown() {
+    mFile.delete();
+  }
+
+  private static TagIndex session(int count) {
+    TagIndex index = new TagIndex();
+    // Reverse serial order, export sorts
+    for (int n = count; n > 0; n--) {
+      byte[] epc = SimulatedNurApi.sgtin96(1234567, n % 7, n);
+      index.observe(epc, -50 - n % 30, n % 4, 1000000 + n);
+      index.observe(epc, -45, 1, 1000000 + n + 20);
+    }
+    return index;
+  }
+
+  private static long readVarint(InputStream in) throws Exception {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = in.read();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  // Decodes every tag of binary export, checking it against index
+  private static void assertBinaryMatches(TagIndex index, byte[] file) throws Exception {
+    InputStream in = new ByteArrayInputStream(file);
+    byte[] magic = new byte[4];
+    new DataInputStream(in).readFully(magic);
+    assertArrayEquals(SessionExporter.MAGIC, magic);
+    assertEquals(SessionExporter.VERSION, in.read());
+    int flags = in.read();
+    assertEquals(index.size(), readVarint(in));
+    if ((flags & SessionExporter.FLAG_DEFLATE) != 0)
+      in = new InflaterInputStream(in);
+    DataInputStream body = new DataInputStream(in);
+
+    byte[] prev = new byte[0];
+    long firstSeen = 0;
+    for (int n = 0; n < index.size(); n++) {
+      int shared = (int) readVarint(body);
+      byte[] epc = Arrays.copyOf(prev, shared + (int) readVarint(body));
+      body.readFully(epc, shared, epc.length - shared);
+      int id = index.indexOf(epc);
+      assertTrue(id != TagIndex.NOT_FOUND);
+      assertEquals(index.getBestRssi(id), unzigzag(readVarint(body)));
+      assertEquals(index.getLastRssi(id), unzigzag(readVarint(body)));
+      assertEquals(index.getAntennaId(id), readVarint(body));
+      assertEquals(index.getReadCount(id), readVarint(body));
+      firstSeen += unzigzag(readVarint(body));
+      assertEquals(index.getFirstSeen(id), firstSeen);
+      assertEquals(index.getLastSeen(id), firstSeen + readVarint(body));
+      if (n > 0)
+        assertTrue(index.compareEpc(index.indexOf(prev), id) < 0);
+      prev = epc;
+    }
+    assertEquals(-1, body.read());
+  }
+
+  @Test
+  public void exportCsv_lineForEveryTag() throws Exception {
+    TagIndex index = session(3);
+    Map<String, Object> stats = new SessionExporter().exportCsv(index, mFile);
+
+    String csv = new String(Files.readAllBytes(mFile.toPath()), Charset.forName("US-ASCII"));
+    String[] lines = csv.split("\n");
+    assertEquals(4, lines.length);
+    assertEquals(SessionExporter.CSV_HEADER.trim(), lines[0]);
+    assertEquals(NurApi.byteArrayToHexString(index.getEpc(0)) + ",-45,-45,1,2,1000003,1000023", lines[1]);
+    assertEquals(3, stats.get("tags"));
+    assertEquals((long) csv.length(), stats.get("bytes"));
+    assertFalse(new File(mFile.getPath() + ".tmp").exists());
+  }
+
+  @Test
+  public void exportBinary_roundTrip() throws Exception {
+    TagIndex index = session(20000);
+    new SessionExporter().exportBinary(index, mFile, false);
+    byte[] plain = Files.readAllBytes(mFile.toPath());
+    assertBinaryMatches(index, plain);
+  }
+
+  @Test
+  public void exportBinary_deflatedRoundTripIsSmaller() throws Exception {
+    TagIndex index = session(20000);
+    new SessionExporter().exportBinary(index, mFile, false);
+    long plainSize = mFile.length();
+
+    Map<String, Object> stats = new SessionExporter().exportBinary(index, mFile, true);
+    byte[] deflated = Files.readAllBytes(mFile.toPath());
+    assertEquals((long) deflated.length, stats.get("bytes"));
+    assertTrue(deflated.length < plainSize);
+    assertBinaryMatches(index, deflated);
+  }
+
+  @Test
+  public void export_renameFails_removesTemporaryFile() throws Exception {
+    // Non-empty directory in place of target, rename over it fails
+    mFile.delete();
+    mFile.mkdir();
+    File blocker = new File(mFile, "keep");
+    blocker.createNewFile();
+    try {
+      new SessionExporter().exportCsv(session(3), mFile);
+      fail("Rename over directory succeeded");
+    } catch (IOException ex) {
+      assertFalse(new File(mFile.getPath() + ".tmp").exists());
+    } finally {
+      blocker.delete();
+    }
+  }
+}
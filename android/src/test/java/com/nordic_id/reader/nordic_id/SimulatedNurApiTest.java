@@ -0,0 +1,99 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurRespReadData;
+
+import org.junit.Test;
+
+public class SimulatedNurApiTest {
+  private static SimulatedNurApi connected(int tagCount) {
+    SimulatedNurApi.Population population = new SimulatedNurApi.Population();
+    population.tagCount = tagCount;
+    population.rssiMean = -50;
+    population.rssiSpread = 0;
+    population.latencyScale = 0;
+    SimulatedNurApi api = new SimulatedNurApi(population);
+    api.connect();
+    return api;
+  }
+
+  @Test
+  public void inventory_fetchTags_fillsStorageWithPopulation() throws Exception {
+    SimulatedNurApi api = connected(500);
+
+    for (int n = 0; n < 5; n++) {
+      NurRespInventory resp = api.inventory();
+      assertTrue(resp.numTagsFound > 0);
+    }
+    api.fetchTags();
+
+    assertTrue(api.getStorage().size() > 450);
+    assertTrue(api.getStorage().size() <= 500);
+  }
+
+  @Test
+  public void traceTagByEpc_unknownEpc_throwsNoTag() throws Exception {
+    SimulatedNurApi api = connected(10);
+
+    NurRespReadData data = null;
+    for (int n = 0; data == null && n < 10; n++) {
+      try {
+        data = api.traceTagByEpc(api.getPopulationEpc(3));
+      } catch (NurApiException ex) {
+        assertEquals(NurApiErrors.NO_TAG, ex.error);
+      }
+    }
+    assertTrue(data.scaledRssi > 0);
+
+    try {
+      api.traceTagByEpc(new byte[12]);
+      fail();
+    } catch (NurApiException ex) {
+      assertEquals(NurApiErrors.NO_TAG, ex.error);
+    }
+  }
+
+  @Test
+  public void readTagByEpc_epcBank_returnsEpc() throws Exception {
+    SimulatedNurApi api = connected(10);
+    byte[] epc = api.getPopulationEpc(5);
+
+    byte[] data = null;
+    for (int n = 0; data == null && n < 10; n++) {
+      try {
+        data = api.readTagByEpc(epc, epc.length, NurApi.BANK_EPC, 2, 6);
+      } catch (NurApiException ex) {
+        assertEquals(NurApiErrors.NO_TAG, ex.error);
+      }
+    }
+    assertArrayEquals(epc, data);
+  }
+
+  @Test
+  public void fetchTags_inventoryRead_returnsTidWithTags() throws Exception {
+    SimulatedNurApi api = connected(10);
+    api.setIRConfig(NurApi.IRTYPE_EPCDATA, NurApi.BANK_TID, 0, 2);
+
+    api.inventory();
+    api.fetchTags();
+
+    assertTrue(api.getStorage().size() > 0);
+    byte[] tid = {(byte) 0xE2, (byte) 0x80, 0x11, 0x60};
+    assertArrayEquals(tid, api.getStorage().get(0).getIrData());
+  }
+
+  @Test(expected = NurApiException.class)
+  public void inventory_disconnected_throws() throws Exception {
+    SimulatedNurApi api = connected(10);
+    api.disconnect();
+    api.inventory();
+  }
+}
@@ -0,0 +1,58 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.nordicid.nurapi.NurApi;
+import java.util.Map;
+import org.junit.Test;
+
+public class SkuAggregatorTest {
+  @Test
+  public void add_countsItemsPerGtinOnce() {
+    SkuAggregator skus = new SkuAggregator(new EpcDecoder());
+    skus.setEnabled(true);
+    for (int round = 0; round < 3; round++) {
+      for (int serial = 1; serial <= 5; serial++)
+        skus.add(SimulatedNurApi.sgtin96(1234567, 1, serial));
+      skus.add(SimulatedNurApi.sgtin96(1234567, 2, 1));
+    }
+
+    Map<String, Integer> counts = skus.getCounts();
+    assertEquals(2, counts.size());
+    assertTrue(counts.containsValue(5));
+    assertTrue(counts.containsValue(1));
+  }
+
+  @Test
+  public void add_sameItemWithOtherFilter_isNotCountedAgain() throws Exception {
+    SkuAggregator skus = new SkuAggregator(new EpcDecoder());
+    // urn:epc:tag:sgtin-96:3.0614141.812345.6789 and the same item with filter 1
+    assertTrue(skus.add(NurApi.hexStringToByteArray("3074257BF7194E4000001A85")));
+    assertFalse(skus.add(NurApi.hexStringToByteArray("3034257BF7194E4000001A85")));
+    // Not GS1 coded, deduplicated by EPC
+    assertTrue(skus.add(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+    assertFalse(skus.add(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+
+    Map<String, Integer> counts = skus.getCounts();
+    assertEquals(Integer.valueOf(1), counts.get("80614141123458"));
+    assertEquals(Integer.valueOf(1), counts.get(SkuAggregator.NO_GTIN));
+  }
+
+  @Test
+  public void drainDeltas_returnsIncrementsSinceLastDrain() {
+    SkuAggregator skus = new SkuAggregator(new EpcDecoder());
+    skus.add(SimulatedNurApi.sgtin96(1234567, 1, 1));
+    skus.add(SimulatedNurApi.sgtin96(1234567, 1, 2));
+    Map<String, Integer> deltas = skus.drainDeltas();
+    assertEquals(1, deltas.size());
+    assertEquals(Integer.valueOf(2), deltas.values().iterator().next());
+
+    assertTrue(skus.drainDeltas().isEmpty());
+    skus.add(SimulatedNurApi.sgtin96(1234567, 1, 2));
+    assertTrue(skus.drainDeltas().isEmpty());
+    skus.add(SimulatedNurApi.sgtin96(1234567, 1, 3));
+    assertEquals(Integer.valueOf(1), skus.drainDeltas().values().iterator().next());
+  }
+}
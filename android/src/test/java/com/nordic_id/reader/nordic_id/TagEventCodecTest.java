@@ -0,0 +1,111 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+
+import com.nordicid.nurapi.NurApi;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TagEventCodecTest {
+  @Test
+  public void encode_emptyBatch_writesHeaderOnly() {
+    byte[] out = TagEventCodec.encode(Collections.<TagEvent>emptyList());
+
+    assertEquals(TagEventCodec.HEADER_SIZE, out.length);
+    assertEquals(TagEventCodec.VERSION, out[0]);
+    assertEquals(0, ByteBuffer.wrap(out, 1, 4).getInt());
+  }
+
+  @Test
+  public void encode_tags_writesLengthPrefixedRecords() {
+    byte[] epc1 = {(byte) 0xE2, 0x00, 0x12, 0x34, 0x56, 0x78, (byte) 0x9A, (byte) 0xBC, 0x01, 0x02, 0x03, 0x04};
+    byte[] epc2 = {0x30, 0x08};
+    byte[] out = TagEventCodec.encode(Arrays.asList(
+        new TagEvent(epc1, -57, 3, 1700000000123L),
+        new TagEvent(epc2, -80, 0, 42L)));
+
+    ByteBuffer buf = ByteBuffer.wrap(out);
+    assertEquals(TagEventCodec.VERSION, buf.get());
+    assertEquals(2, buf.getInt());
+
+    assertEquals(0, buf.get());
+    assertEquals(epc1.length, buf.get());
+    byte[] epc = new byte[epc1.length];
+    buf.get(epc);
+    assertEquals(Arrays.toString(epc1), Arrays.toString(epc));
+    assertEquals(-57, buf.getShort());
+    assertEquals(3, buf.get());
+    assertEquals(1700000000123L, buf.getLong());
+
+    assertEquals(0, buf.get());
+    assertEquals(epc2.length, buf.get());
+    buf.position(buf.position() + epc2.length);
+    assertEquals(-80, buf.getShort());
+    assertEquals(0, buf.get());
+    assertEquals(42L, buf.getLong());
+    assertEquals(0, buf.remaining());
+  }
+
+  @Test
+  public void encode_sensorData_writesOptionalField() {
+    byte[] out = TagEventCodec.encode(Collections.singletonList(
+        new TagEvent(new byte[] {0x01}, -60, 1, 5L, 0x3FF, TagEvent.TYPE_ADDED)));
+
+    ByteBuffer buf = ByteBuffer.wrap(out, TagEventCodec.HEADER_SIZE, out.length - TagEventCodec.HEADER_SIZE);
+    assertEquals(TagEventCodec.FLAG_SENSOR_DATA, buf.get());
+    buf.position(buf.position() + 1 + 1 + 2 + 1 + 8);
+    assertEquals(0x3FF, buf.getShort());
+    assertEquals(0, buf.remaining());
+  }
+
+  @Test
+  public void encode_sensorAndIrData_writesFieldsInFlagOrder() {
+    byte[] tid = {(byte) 0xE2, (byte) 0x80, 0x11, 0x60};
+    byte[] out = TagEventCodec.encode(Collections.singletonList(
+        new TagEvent(new byte[] {0x01}, -60, 1, 5L, 0x12, TagEvent.TYPE_ADDED, tid)));
+
+    ByteBuffer buf = ByteBuffer.wrap(out, TagEventCodec.HEADER_SIZE, out.length - TagEventCodec.HEADER_SIZE);
+    assertEquals(TagEventCodec.FLAG_SENSOR_DATA | TagEventCodec.FLAG_IR_DATA, buf.get());
+    buf.position(buf.position() + 1 + 1 + 2 + 1 + 8);
+    assertEquals(0x12, buf.getShort());
+    assertEquals(tid.length, buf.get());
+    byte[] data = new byte[tid.length];
+    buf.get(data);
+    assertEquals(Arrays.toString(tid), Arrays.toString(data));
+    assertEquals(0, buf.remaining());
+  }
+
+  @Test
+  public void encode_withDecoder_writesGs1FieldsOfGs1Tags() throws Exception {
+    EpcDecoder decoder = new EpcDecoder();
+    byte[] sgtin = NurApi.hexStringToByteArray("3074257BF7194E4000001A85");
+    byte[] out = TagEventCodec.encode(Arrays.asList(
+        new TagEvent(sgtin, -60, 1, 5L),
+        new TagEvent(new byte[] {0x01}, -60, 1, 5L)), decoder);
+
+    ByteBuffer buf = ByteBuffer.wrap(out, TagEventCodec.HEADER_SIZE, out.length - TagEventCodec.HEADER_SIZE);
+    assertEquals(TagEventCodec.FLAG_GS1, buf.get());
+    buf.position(buf.position() + 1 + sgtin.length + 2 + 1 + 8);
+    String[] expected = {"sgtin-96", "0614141", "80614141123458", "6789"};
+    for (String field : expected) {
+      byte[] value = new byte[buf.get()];
+      buf.get(value);
+      assertEquals(field, new String(value, "US-ASCII"));
+    }
+    // Not GS1 coded, no fields
+    assertEquals(0, buf.get());
+    buf.position(buf.position() + 1 + 1 + 2 + 1 + 8);
+    assertEquals(0, buf.remaining());
+  }
+
+  @Test
+  public void encode_eventType_isStoredInFlags() {
+    byte[] out = TagEventCodec.encode(Collections.singletonList(
+        new TagEvent(new byte[] {0x01}, -60, 1, 5L, SensorInventory.NO_SENSOR_DATA, TagEvent.TYPE_LOST)));
+
+    assertEquals(TagEvent.TYPE_LOST << TagEventCodec.TYPE_SHIFT, out[TagEventCodec.HEADER_SIZE] & 0xFF);
+  }
+}
@@ -0,0 +1,125 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TagIndexTest {
+  private static byte[] epc96(int serial) {
+    return new byte[] {0x30, 0x14, 0x25, 0x7B, (byte) 0xF7, 0x19, 0x4E, 0x40,
+        (byte) (serial >>> 24), (byte) (serial >>> 16), (byte) (serial >>> 8), (byte) serial};
+  }
+
+  @Test
+  public void observe_sameEpc_updatesExistingTag() {
+    TagIndex index = new TagIndex();
+
+    int id = index.observe(epc96(1), -70, 1, 100L);
+    assertEquals(id, index.observe(epc96(1), -50, 2, 200L));
+    assertEquals(id, index.observe(epc96(1), -60, 3, 300L));
+
+    assertEquals(1, index.size());
+    assertEquals(3, index.getReadCount(id));
+    assertEquals(100L, index.getFirstSeen(id));
+    assertEquals(300L, index.getLastSeen(id));
+    assertEquals(-50, index.getBestRssi(id));
+    assertEquals(-60, index.getLastRssi(id));
+    assertEquals(3, index.getAntennaId(id));
+  }
+
+  @Test
+  public void observe_manyTags_keepsIdsAndEpcs() {
+    TagIndex index = new TagIndex(16);
+
+    for (int n = 0; n < 20000; n++)
+      assertEquals(n, index.observe(epc96(n), -60, 0, n));
+
+    assertEquals(20000, index.size());
+    for (int n = 0; n < 20000; n++) {
+      assertEquals(n, index.indexOf(epc96(n)));
+      assertArrayEquals(epc96(n), index.getEpc(n));
+    }
+    assertEquals(TagIndex.NOT_FOUND, index.indexOf(epc96(20000)));
+  }
+
+  @Test
+  public void observe_shortAndLongEpcs_areDistinct() {
+    TagIndex index = new TagIndex();
+    byte[] shortEpc = {0x30, 0x14};
+    byte[] paddedEpc = {0x30, 0x14, 0x00, 0x00};
+    byte[] longEpc = new byte[62];
+    byte[] longEpc2 = new byte[62];
+    longEpc2[61] = 1;
+
+    int a = index.observe(shortEpc, -60, 0, 0);
+    int b = index.observe(paddedEpc, -60, 0, 0);
+    int c = index.observe(longEpc, -60, 0, 0);
+    int d = index.observe(longEpc2, -60, 0, 0);
+
+    assertEquals(4, index.size());
+    assertEquals(a, index.indexOf(shortEpc));
+    assertEquals(b, index.indexOf(paddedEpc));
+    assertEquals(c, index.indexOf(longEpc));
+    assertEquals(d, index.indexOf(longEpc2));
+    assertArrayEquals(longEpc2, index.getEpc(d));
+    assertArrayEquals(shortEpc, index.getEpc(a));
+  }
+
+  @Test
+  public void copy_isIndependentOfOriginal() {
+    TagIndex index = new TagIndex(16);
+    for (int n = 0; n < 100; n++)
+      index.observe(epc96(n), -60, 1, n);
+    byte[] longEpc = new byte[20];
+    index.observe(longEpc, -40, 2, 500L);
+
+    TagIndex copy = index.copy();
+    index.observe(epc96(5), -30, 3, 1000L);
+    index.clear();
+
+    assertEquals(101, copy.size());
+    assertEquals(1, copy.getReadCount(5));
+    assertEquals(-60, copy.getBestRssi(5));
+    assertEquals(100, copy.indexOf(longEpc));
+    // Copy keeps growing on its own
+    assertEquals(101, copy.observe(epc96(200), -50, 1, 2000L));
+    assertEquals(101, copy.indexOf(epc96(200)));
+  }
+
+  @Test
+  public void clear_removesAllTags() {
+    TagIndex index = new TagIndex();
+    index.observe(epc96(1), -60, 0, 0);
+    index.clear();
+
+    assertEquals(0, index.size());
+    assertEquals(TagIndex.NOT_FOUND, index.indexOf(epc96(1)));
+    assertEquals(0, index.observe(epc96(2), -60, 0, 0));
+  }
+
+  @Test
+  public void sortedByEpc_unsignedByteOrder() {
+    TagIndex index = new TagIndex();
+    index.observe(epc96(0x80), -60, 0, 0);
+    index.observe(new byte[] {0x30, 0x14}, -60, 0, 0);
+    for (int n = 40; n > 0; n--)
+      index.observe(epc96(n * 1000), -60, 0, 0);
+    byte[] longEpc = new byte[20];
+    longEpc[0] = (byte) 0xE2;
+    index.observe(longEpc, -60, 0, 0);
+    longEpc = longEpc.clone();
+    longEpc[19] = 1;
+    index.observe(longEpc, -60, 0, 0);
+
+    int[] ids = index.sortedByEpc();
+    assertEquals(index.size(), ids.length);
+    // Prefix first, long EPCs starting with 0xE2 last
+    assertEquals(1, ids[0]);
+    assertEquals(0, ids[1]);
+    assertEquals(index.size() - 1, ids[ids.length - 1]);
+    for (int n = 1; n < ids.length; n++)
+      assertTrue(index.compareEpc(ids[n - 1], ids[n]) < 0);
+  }
+}
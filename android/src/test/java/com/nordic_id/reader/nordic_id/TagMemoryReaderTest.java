@@ -0,0 +1,53 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TagMemoryReaderTest {
+  @Test
+  public void readTags_mixedTags_reportsDataAndErrors() {
+    SimulatedNurApi.Population population = new SimulatedNurApi.Population();
+    population.tagCount = 20;
+    population.rssiMean = -40;
+    population.rssiSpread = 0;
+    population.readProbability = 1.0;
+    population.latencyScale = 0;
+    SimulatedNurApi api = new SimulatedNurApi(population);
+    api.connect();
+
+    List<byte[]> epcs = new ArrayList<>();
+    epcs.add(api.getPopulationEpc(0));
+    epcs.add(new byte[12]);
+    epcs.add(api.getPopulationEpc(7));
+
+    TagMemoryReader reader = new TagMemoryReader();
+    reader.setRetries(5);
+    ByteBuffer buf = ByteBuffer.wrap(reader.readTags(api, epcs, NurApi.BANK_EPC, 2, 6));
+
+    assertEquals(TagMemoryReader.VERSION, buf.get());
+    assertEquals(3, buf.getInt());
+    for (int n = 0; n < 3; n++) {
+      byte[] epc = new byte[buf.get()];
+      buf.get(epc);
+      assertArrayEquals(epcs.get(n), epc);
+      int error = buf.getShort();
+      byte[] data = new byte[buf.getShort()];
+      buf.get(data);
+      if (n == 1) {
+        assertEquals(NurApiErrors.NO_TAG, error);
+        assertEquals(0, data.length);
+      } else {
+        assertEquals(NurApiErrors.NUR_NO_ERROR, error);
+        assertArrayEquals(epcs.get(n), data);
+      }
+    }
+    assertEquals(0, buf.remaining());
+  }
+}
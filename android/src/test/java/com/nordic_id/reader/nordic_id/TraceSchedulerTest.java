@@ -0,0 +1,55 @@
+package com.nordic_id.reader.nordic_id;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TraceSchedulerTest {
+  @Test
+  public void onPass_changingSignal_pollsFast() {
+    TraceScheduler scheduler = new TraceScheduler();
+    scheduler.reset();
+
+    assertEquals(TraceScheduler.FAST_INTERVAL_MS - 8, scheduler.onPass(30, 8, 1000));
+    assertEquals(TraceScheduler.FAST_INTERVAL_MS, scheduler.onPass(40, 0, 1020));
+    // Steady weak signal falls back to base interval
+    assertEquals(92, scheduler.onPass(41, 8, 1040));
+    // Strong signal stays fast
+    assertEquals(TraceScheduler.FAST_INTERVAL_MS, scheduler.onPass(80, 0, 1140));
+    assertEquals(TraceScheduler.FAST_INTERVAL_MS, scheduler.onPass(81, 0, 1160));
+  }
+
+  @Test
+  public void onPass_missingTag_backsOffWithSingleAttempt() {
+    TraceScheduler scheduler = new TraceScheduler();
+    scheduler.reset();
+    scheduler.onPass(50, 0, 1000);
+    assertEquals(TraceScheduler.PRESENT_ATTEMPTS, scheduler.getAttempts());
+
+    long time = 1000;
+    long[] expected = {100, 200, 400, 800, 1000, 1000};
+    for (long interval : expected) {
+      time += interval;
+      assertEquals(interval, scheduler.onPass(0, 0, time));
+      assertEquals(1, scheduler.getAttempts());
+    }
+
+    // Found again, fast right away
+    assertEquals(TraceScheduler.FAST_INTERVAL_MS, scheduler.onPass(20, 0, time + 10));
+    assertEquals(TraceScheduler.PRESENT_ATTEMPTS, scheduler.getAttempts());
+  }
+
+  @Test
+  public void getMetrics_latencyPercentiles() {
+    TraceScheduler scheduler = new TraceScheduler();
+    scheduler.reset();
+    for (int n = 1; n <= 100; n++)
+      scheduler.onPass(50, n, n * 100L);
+
+    assertEquals(50L, scheduler.getMetrics().get("latencyP50Ms"));
+    assertEquals(95L, scheduler.getMetrics().get("latencyP95Ms"));
+    assertEquals(99L, scheduler.getMetrics().get("latencyP99Ms"));
+    assertEquals(100L, scheduler.getMetrics().get("foundCount"));
+    assertEquals(10.0, (Double) scheduler.getMetrics().get("passesPerSecond"), 0.01);
+  }
+}
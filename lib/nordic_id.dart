@@ -1,5 +1,13 @@
+import 'dart:typed_data';
+
 import 'package:flutter/services.dart';
 
+import 'tag_epc.dart';
+import 'tag_read_result.dart';
+
+export 'sku_counts.dart';
+export 'tag_read_result.dart';
+
 //import 'nordic_id_platform_interface.dart';
 
 class NordicId {
@@ -18,14 +26,53 @@ class NordicId {
   static const EventChannel tagsStatusStream = EventChannel('TagsStatus');
   static const EventChannel connectionStatusStream = EventChannel('ConnectionStatus');
 
+  /// Trace signals as a map of EPC (hex) to smoothed signal 0-100, from
+  /// single tag trace and [startMultiTrace].
+  static const EventChannel traceStatusStream = EventChannel('TraceStatus');
+
+  static const EventChannel _metricsChannel = EventChannel('Metrics');
+
+  static const EventChannel _skuCountsChannel = EventChannel('SkuCounts');
+  static const EventChannel _manifestCountsChannel =
+      EventChannel('ManifestCounts');
+
   static Future<bool?> get initialize async {
     return _channel.invokeMethod('Initialize');
   }
 
+  /// Initializes with a simulated reader of [tagCount] synthetic tags instead
+  /// of a real one, for testing without hardware. [latencyScale] scales reader
+  /// command times, 0 runs as fast as possible. [connect] connects to it.
+  static Future<bool?> initializeSimulator(
+      {int tagCount = 1000, double latencyScale = 1.0}) async {
+    return _channel.invokeMethod('Initialize', {
+      'simulatedTags': tagCount,
+      'simulatedLatencyScale': latencyScale
+    });
+  }
+
   static Future<bool?> get connect async {
     return _channel.invokeMethod('Connect');
   }
 
+  /// Reconnects to the last selected reader without the device list.
+  /// Returns false when no reader has been selected yet.
+  static Future<bool?> get connectLast async {
+    return _channel.invokeMethod('ConnectLast');
+  }
+
+  /// Forgets the saved reader and its cached capabilities.
+  static Future<bool?> get forgetReader async {
+    return _channel.invokeMethod('ForgetReader');
+  }
+
+  /// Saved profile of the last reader: address, name, serial, swVersion,
+  /// accessorySupported, secondaryVersion, fwVersion, bootloaderVersion and
+  /// antennas.
+  static Future<Map<dynamic, dynamic>?> get readerProfile async {
+    return _channel.invokeMethod('GetReaderProfile');
+  }
+
   static Future<bool?> get isConnected async {
     return _channel.invokeMethod('IsConnected');
   }
@@ -50,8 +97,246 @@ class NordicId {
     return _channel.invokeMethod('RefreshTracing');
   }
 
-  static Future<dynamic> readTag(String tagId) async {
-    return _channel.invokeMethod('ReadTag', {'tag': tagId});
+  /// Locates all [tagIds] at once. Every cycle is one filtered inventory of
+  /// up to 8 EPCs, signals arrive on [traceStatusStream]. Stop with
+  /// [stopTrace].
+  static Future<bool?> startMultiTrace(List<String> tagIds) async {
+    return _channel.invokeMethod('StartMultiTrace', {'tags': tagIds});
+  }
+
+  /// Beep and/or vibrate on the reader while tracing, faster as the signal
+  /// gets stronger. Off by default.
+  static Future<bool?> setTraceFeedback(
+      {bool beep = true, bool vibrate = false}) async {
+    return _channel.invokeMethod(
+        'SetTraceFeedback', {'beep': beep, 'vibrate': vibrate});
+  }
+
+  /// Trace loop statistics: intervalMs, passCount, foundCount,
+  /// passesPerSecond and latencyP50Ms/latencyP95Ms/latencyP99Ms of trace
+  /// passes.
+  static Future<Map<dynamic, dynamic>?> get traceMetrics async {
+    return _channel.invokeMethod('GetTraceMetrics');
+  }
+
+  /// All plugin metrics: counters such as inventoryRounds, tagReads,
+  /// uniqueTags and droppedTagEvents with their per second rates,
+  /// readsPerTag, NurApi and reader command latency histograms, reader
+  /// command queue depth and the [inventoryMetrics] and [traceMetrics] maps.
+  /// uniqueTags counts tags new to the session, whatever the inventory mode.
+  /// tagReads and uniqueTags start over on [clearInventory]. Rates are kept
+  /// apart from [metricsStream], so both can be used at the same time.
+  static Future<Map<dynamic, dynamic>?> get metrics async {
+    return _channel.invokeMethod('GetMetrics');
+  }
+
+  /// [metrics] delivered every [intervalMs] while listened.
+  static Stream<dynamic> metricsStream({int intervalMs = 1000}) {
+    return _metricsChannel.receiveBroadcastStream(intervalMs);
+  }
+
+  /// Decodes GS1 EPCs on the reader side: tags get [TagEpc.scheme],
+  /// [TagEpc.companyPrefix], [TagEpc.gtin] and [TagEpc.serial]. Fields of the
+  /// last [cacheSize] EPCs are cached, so a tag is decoded only once.
+  static Future<bool?> setEpcDecoding(bool enabled,
+      {int cacheSize = 20000}) async {
+    return _channel.invokeMethod(
+        'SetEpcDecoding', {'enabled': enabled, 'cacheSize': cacheSize});
+  }
+
+  /// Counts tags per GTIN instead of delivering them on [tagsStatusStream].
+  /// Items are deduplicated by serial, so counts stay exact over rounds.
+  /// Enabling starts a new count, [clearInventory] clears it.
+  static Future<bool?> setSkuAggregation(bool enabled) async {
+    return _channel.invokeMethod('SetSkuAggregation', {'enabled': enabled});
+  }
+
+  /// Count increments per GTIN, at most one event every [intervalMs] and
+  /// only when counts changed. Apply them with [SkuCounts].
+  static Stream<dynamic> skuCountsStream({int intervalMs = 250}) {
+    return _skuCountsChannel.receiveBroadcastStream(intervalMs);
+  }
+
+  /// Total count per GTIN.
+  static Future<Map<dynamic, dynamic>?> get skuCounts async {
+    return _channel.invokeMethod('GetSkuCounts');
+  }
+
+  /// Reconciles reads against [epcs], the hex EPCs expected to be found.
+  /// Replaces the previous manifest and starts from nothing found, as does
+  /// [clearInventory]. Returns expected, found, missing and unexpected.
+  /// An empty EPC fails with MANIFEST_ERROR and keeps the previous manifest.
+  /// Throws [FormatException] for an odd length EPC or one over 255 bytes.
+  static Future<Map<dynamic, dynamic>?> setManifest(List<String> epcs) async {
+    final builder = BytesBuilder(copy: false);
+    for (final epc in epcs) {
+      if (epc.length.isOdd) {
+        throw FormatException('EPC hex has odd length', epc);
+      }
+      if (epc.length ~/ 2 > 255) {
+        throw FormatException('EPC is over 255 bytes', epc);
+      }
+      final bytes = Uint8List(epc.length ~/ 2);
+      for (var n = 0; n < bytes.length; n++) {
+        bytes[n] = int.parse(epc.substring(n * 2, n * 2 + 2), radix: 16);
+      }
+      builder.addByte(bytes.length);
+      builder.add(bytes);
+    }
+    return _channel
+        .invokeMethod('SetManifest', {'epcs': builder.takeBytes()});
+  }
+
+  static Future<bool?> get clearManifest async {
+    return _channel.invokeMethod('ClearManifest');
+  }
+
+  /// Expected, found, missing and unexpected counts of the manifest.
+  static Future<Map<dynamic, dynamic>?> get manifestCounts async {
+    return _channel.invokeMethod('GetManifestCounts');
+  }
+
+  /// Manifest counts, at most one event every [intervalMs] and only when
+  /// they changed.
+  static Stream<dynamic> manifestCountsStream({int intervalMs = 250}) {
+    return _manifestCountsChannel.receiveBroadcastStream(intervalMs);
+  }
+
+  /// Page of expected EPCs not found yet, in EPC order.
+  static Future<List<String>> missingTags(
+      {int offset = 0, int limit = 1000}) async {
+    final List<dynamic>? page = await _channel
+        .invokeMethod('GetMissingTags', {'offset': offset, 'limit': limit});
+    return page?.cast<String>() ?? [];
+  }
+
+  /// Page of read EPCs not in the manifest, in first read order.
+  static Future<List<String>> unexpectedTags(
+      {int offset = 0, int limit = 1000}) async {
+    final List<dynamic>? page = await _channel
+        .invokeMethod('GetUnexpectedTags', {'offset': offset, 'limit': limit});
+    return page?.cast<String>() ?? [];
+  }
+
+  /// Journals every tag read of the session to a file, so the session is
+  /// recovered on [initialize] after the app was killed. Enabling mid session
+  /// journals the tags read so far too. Fails before [initialize]. Disabling
+  /// deletes the journal. [clearInventory] starts a new session.
+  static Future<bool?> setJournaling(bool enabled) async {
+    return _channel.invokeMethod('SetJournaling', {'enabled': enabled});
+  }
+
+  /// Every tag read in the session with its last read.
+  static Future<List<TagEpc>> get sessionTags async {
+    final Uint8List data = await _channel.invokeMethod('GetSessionTags');
+    return TagEpc.decodeTags(data);
+  }
+
+  /// Writes the session to the file at [path], as CSV or with [binary] in
+  /// the compact binary format: EPC-sorted, delta and varint coded and with
+  /// [deflate] zlib compressed. Returns tags, bytes and durationMs.
+  static Future<Map<dynamic, dynamic>?> exportSession(String path,
+      {bool binary = false, bool deflate = true}) async {
+    return _channel.invokeMethod(
+        'ExportSession', {'path': path, 'binary': binary, 'deflate': deflate});
+  }
+
+  /// Logs every inventory round and tag to logcat. Slows down big
+  /// inventories, keep off in production.
+  static Future<bool?> setDebugLogging(bool enabled) async {
+    return _channel.invokeMethod('SetDebugLogging', {'enabled': enabled});
+  }
+
+  /// Starts continuous inventory. Found tags are delivered on [tagsStatusStream].
+  static Future<bool?> get startInventoryStream async {
+    return _channel.invokeMethod('StartInventoryStream');
+  }
+
+  static Future<bool?> get stopInventoryStream async {
+    return _channel.invokeMethod('StopInventoryStream');
+  }
+
+  /// Tags on [tagsStatusStream] are delivered in batches, one batch every
+  /// [windowMs] or as soon as [maxTags] tags are collected.
+  static Future<bool?> setTagBatching({int windowMs = 50, int maxTags = 500}) async {
+    return _channel.invokeMethod(
+        'SetTagBatching', {'windowMs': windowMs, 'maxTags': maxTags});
+  }
+
+  /// Sensor inventory reads sensing data of sensor tags (TID E280B12x) with one
+  /// filtered inventory round, run before the normal round every time or
+  /// once per [intervalMs]. Other tags are still inventoried every round.
+  /// A running inventory stream pauses for the sensor round when it is due.
+  /// Sensing data is delivered in [TagEpc.sensorData].
+  static Future<bool?> setSensorInventory(bool enabled,
+      {int intervalMs = 0}) async {
+    return _channel.invokeMethod('SetSensorInventory',
+        {'enabled': enabled, 'intervalMs': intervalMs});
+  }
+
+  /// Inventory with read: the reader reads [words] words (1-32) from [bank]
+  /// at word [address] of every tag during inventory, by default the start of
+  /// TID. The memory is delivered in [TagEpc.data] without separate reads.
+  static Future<bool?> setInventoryRead(bool enabled,
+      {int bank = 2, int address = 0, int words = 2}) async {
+    return _channel.invokeMethod('SetInventoryRead',
+        {'enabled': enabled, 'bank': bank, 'address': address, 'words': words});
+  }
+
+  /// Adaptive inventory adjusts Q, rounds, session and A/B target of every
+  /// round to the estimated tag population. Large populations use session S1
+  /// and flip target when a round finds nothing.
+  static Future<bool?> setAdaptiveInventory(bool enabled) async {
+    return _channel.invokeMethod('SetAdaptiveInventory', {'enabled': enabled});
+  }
+
+  /// Current decisions of adaptive inventory: q, rounds, session, target,
+  /// populationEstimate, tagsPerSecond, collisionRate, roundCount and
+  /// targetFlips.
+  static Future<Map<dynamic, dynamic>?> get inventoryMetrics async {
+    return _channel.invokeMethod('GetInventoryMetrics');
+  }
+
+  /// Delta mode keeps tags over inventory rounds and reports only changes:
+  /// new tags, tags whose RSSI moved at least [rssiThreshold] and tags not
+  /// seen for [lostTimeoutMs]. Apply the deltas with [TagInventory].
+  static Future<bool?> setDeltaMode(bool enabled,
+      {int rssiThreshold = 5, int lostTimeoutMs = 3000}) async {
+    return _channel.invokeMethod('SetDeltaMode', {
+      'enabled': enabled,
+      'rssiThreshold': rssiThreshold,
+      'lostTimeoutMs': lostTimeoutMs
+    });
+  }
+
+  /// Forgets all tags read so far.
+  static Future<bool?> get clearInventory async {
+    return _channel.invokeMethod('ClearInventory');
+  }
+
+  /// Reader commands run one at a time in call order. Cancels commands still
+  /// waiting in the queue, they complete with a `CANCELLED` error.
+  /// Returns the number of cancelled commands.
+  static Future<int?> get cancelReaderCommands async {
+    return _channel.invokeMethod('CancelReaderCommands');
+  }
+
+  /// Reads [words] words from [bank] starting at word [address] of tag
+  /// [tagId]. Defaults to the XPC_W2 word of EPC bank, which holds the
+  /// sensing data of sensor tags. Returns the data as a hex string.
+  static Future<dynamic> readTag(String tagId,
+      {int bank = 1, int address = 0x22, int words = 1}) async {
+    return _channel.invokeMethod('ReadTag',
+        {'tag': tagId, 'bank': bank, 'address': address, 'words': words});
+  }
+
+  /// Reads the same memory area of all [tagIds] in one call. Every tag is
+  /// singulated by its EPC and failures are reported per tag.
+  static Future<List<TagReadResult>> readTags(List<String> tagIds,
+      {int bank = 1, int address = 0x22, int words = 1}) async {
+    final Uint8List data = await _channel.invokeMethod('ReadTags',
+        {'tags': tagIds, 'bank': bank, 'address': address, 'words': words});
+    return TagReadResult.decode(data);
   }
 
   /* static Future<bool?> setWorkArea(String value) async {
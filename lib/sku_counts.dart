@@ -0,0 +1,29 @@
+/// Item counts per GTIN maintained from count increments of
+/// [NordicId.skuCountsStream] when [NordicId.setSkuAggregation] is on.
+/// Tags without GTIN are counted under the empty string.
+class SkuCounts {
+  final Map<String, int> _counts = {};
+
+  /// Items counted so far, keyed by GTIN-14.
+  Map<String, int> get counts => Map.unmodifiable(_counts);
+
+  /// Number of items over all GTINs.
+  int get total => _counts.values.fold(0, (sum, count) => sum + count);
+
+  /// Adds one event of increments. Returns true when counts changed.
+  bool apply(Map<dynamic, dynamic> deltas) {
+    deltas.forEach((gtin, delta) {
+      _counts[gtin as String] = (_counts[gtin] ?? 0) + (delta as int);
+    });
+    return deltas.isNotEmpty;
+  }
+
+  /// Replaces counts with totals of [NordicId.skuCounts], e.g. after the
+  /// stream was not listened for a while.
+  void reset(Map<dynamic, dynamic> totals) {
+    _counts.clear();
+    apply(totals);
+  }
+
+  void clear() => _counts.clear();
+}
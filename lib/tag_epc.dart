@@ -1,17 +1,55 @@
 import 'dart:convert';
+import 'dart:typed_data';
+
+/// What happened to a tag since it was last reported.
+/// Without delta mode every tag is reported as [added].
+enum TagChange { added, updated, lost }
 
 class TagEpc {
   final String epc;
-  final String rssi;
+
+  /// Signal strength in dBm. Was a `String` before 2.0.0.
+  final int rssi;
+  final int antennaId;
+  final DateTime? timestamp;
+
+  /// Sensing code (0-1023) of a sensor tag read in sensor inventory mode.
+  final int? sensorData;
+
+  final TagChange change;
+
+  /// Tag memory read during inventory when [NordicId.setInventoryRead] is on.
+  final Uint8List? data;
+
+  /// GS1 fields decoded on the reader side when [NordicId.setEpcDecoding]
+  /// is on, null for EPCs that are not GS1 coded.
+  /// [scheme] is the TDT scheme name such as `sgtin-96`.
+  final String? scheme;
+  final String? companyPrefix;
+
+  /// GTIN-14 with check digit, SGTIN tags only.
+  final String? gtin;
+
+  /// Serial number, serial reference or individual asset reference.
+  final String? serial;
 
   TagEpc({
     required this.epc,
     required this.rssi,
+    this.antennaId = 0,
+    this.timestamp,
+    this.sensorData,
+    this.change = TagChange.added,
+    this.data,
+    this.scheme,
+    this.companyPrefix,
+    this.gtin,
+    this.serial,
   });
 
   factory TagEpc.fromMap(Map<String, dynamic> json) => TagEpc(
         epc: json["epc"],
-        rssi: json["rssi"],
+        rssi: json["rssi"] is String ? int.parse(json["rssi"]) : json["rssi"],
       );
 
   Map<String, dynamic> toMap() => {
@@ -19,9 +57,89 @@ class TagEpc {
         "rssi": rssi,
       };
 
-  static List<TagEpc> parseTags(String str) =>
-      List<TagEpc>.from(json.decode(str).map((x) => TagEpc.fromMap(x)));
+  /// Parses a tag batch received from [NordicId.tagsStatusStream].
+  /// Accepts the binary batch format as well as a JSON list of tags.
+  static List<TagEpc> parseTags(dynamic data) {
+    if (data is Uint8List) return decodeTags(data);
+    return List<TagEpc>.from(json.decode(data).map((x) => TagEpc.fromMap(x)));
+  }
 
   static String tagEpcToJson(List<TagEpc> data) =>
       json.encode(List<dynamic>.from(data.map((x) => x.toMap())));
+
+  // Binary tag batch, must match TagEventCodec.java.
+  // Header: u8 version, i32 tag count
+  // Tag:    u8 flags (bits 6-7 change), u8 epc length, epc bytes, i16 rssi, u8 antenna id, i64 timestamp,
+  //         optional fields in flag bit order
+  static const int _codecVersion = 1;
+  static const int _flagSensorData = 0x01;
+  static const int _flagIrData = 0x02;
+  static const int _flagGs1 = 0x04;
+
+  static final List<String> _hexBytes = List<String>.generate(
+      256, (i) => i.toRadixString(16).padLeft(2, '0').toUpperCase());
+
+  static List<TagEpc> decodeTags(Uint8List bytes) {
+    final data = ByteData.sublistView(bytes);
+    final version = data.getUint8(0);
+    if (version != _codecVersion) {
+      throw FormatException('Unsupported tag batch version $version');
+    }
+    final count = data.getInt32(1);
+    final tags = <TagEpc>[];
+    var offset = 5;
+    for (var i = 0; i < count; i++) {
+      final flags = data.getUint8(offset++);
+      final epcLength = data.getUint8(offset++);
+      final epc = StringBuffer();
+      for (var n = 0; n < epcLength; n++) {
+        epc.write(_hexBytes[bytes[offset + n]]);
+      }
+      offset += epcLength;
+      final rssi = data.getInt16(offset);
+      final antennaId = data.getUint8(offset + 2);
+      final timestamp = data.getInt64(offset + 3);
+      offset += 11;
+      int? sensorData;
+      if (flags & _flagSensorData != 0) {
+        sensorData = data.getUint16(offset);
+        offset += 2;
+      }
+      Uint8List? irData;
+      if (flags & _flagIrData != 0) {
+        final length = data.getUint8(offset++);
+        irData = Uint8List.sublistView(bytes, offset, offset + length);
+        offset += length;
+      }
+      String? scheme, companyPrefix, gtin, serial;
+      if (flags & _flagGs1 != 0) {
+        final fields = <String?>[];
+        for (var n = 0; n < 4; n++) {
+          final length = data.getUint8(offset++);
+          fields.add(length > 0
+              ? String.fromCharCodes(bytes, offset, offset + length)
+              : null);
+          offset += length;
+        }
+        scheme = fields[0];
+        companyPrefix = fields[1];
+        gtin = fields[2];
+        serial = fields[3];
+      }
+      tags.add(TagEpc(
+        epc: epc.toString(),
+        rssi: rssi,
+        antennaId: antennaId,
+        timestamp: DateTime.fromMillisecondsSinceEpoch(timestamp),
+        sensorData: sensorData,
+        change: TagChange.values[(flags >> 6) & 0x03],
+        data: irData,
+        scheme: scheme,
+        companyPrefix: companyPrefix,
+        gtin: gtin,
+        serial: serial,
+      ));
+    }
+    return tags;
+  }
 }
@@ -0,0 +1,26 @@
+import 'tag_epc.dart';
+
+/// Inventory state maintained from tag deltas of [NordicId.tagsStatusStream]
+/// when delta mode is enabled with [NordicId.setDeltaMode].
+class TagInventory {
+  final Map<String, TagEpc> _tags = {};
+
+  /// Tags currently in range, keyed by EPC.
+  Map<String, TagEpc> get tags => Map.unmodifiable(_tags);
+
+  int get length => _tags.length;
+
+  /// Applies a batch of tag deltas. Returns true when inventory changed.
+  bool apply(List<TagEpc> delta) {
+    for (final tag in delta) {
+      if (tag.change == TagChange.lost) {
+        _tags.remove(tag.epc);
+      } else {
+        _tags[tag.epc] = tag;
+      }
+    }
+    return delta.isNotEmpty;
+  }
+
+  void clear() => _tags.clear();
+}
@@ -0,0 +1,53 @@
+import 'dart:typed_data';
+
+/// Result of reading tag memory with [NordicId.readTags].
+class TagReadResult {
+  final String epc;
+
+  /// 0 on success, otherwise NurApi error code (32 = tag did not answer).
+  final int error;
+
+  /// Words read, empty when [error] is set.
+  final Uint8List data;
+
+  TagReadResult({required this.epc, required this.error, required this.data});
+
+  bool get ok => error == 0;
+
+  // Binary read result, must match TagMemoryReader.java.
+  // Header: u8 version, i32 tag count
+  // Tag:    u8 epc length, epc bytes, u16 error, u16 data length, data bytes
+  static const int _codecVersion = 1;
+
+  static final List<String> _hexBytes = List<String>.generate(
+      256, (i) => i.toRadixString(16).padLeft(2, '0').toUpperCase());
+
+  static List<TagReadResult> decode(Uint8List bytes) {
+    final data = ByteData.sublistView(bytes);
+    final version = data.getUint8(0);
+    if (version != _codecVersion) {
+      throw FormatException('Unsupported read result version $version');
+    }
+    final count = data.getInt32(1);
+    final results = <TagReadResult>[];
+    var offset = 5;
+    for (var i = 0; i < count; i++) {
+      final epcLength = data.getUint8(offset++);
+      final epc = StringBuffer();
+      for (var n = 0; n < epcLength; n++) {
+        epc.write(_hexBytes[bytes[offset + n]]);
+      }
+      offset += epcLength;
+      final error = data.getUint16(offset);
+      final dataLength = data.getUint16(offset + 2);
+      offset += 4;
+      results.add(TagReadResult(
+        epc: epc.toString(),
+        error: error,
+        data: Uint8List.sublistView(bytes, offset, offset + dataLength),
+      ));
+      offset += dataLength;
+    }
+    return results;
+  }
+}
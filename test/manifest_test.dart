@@ -0,0 +1,48 @@
+import 'dart:typed_data';
+
+import 'package:flutter/services.dart';
+import 'package:flutter_test/flutter_test.dart';
+import 'package:nordic_id/nordic_id.dart';
+
+void main() {
+  TestWidgetsFlutterBinding.ensureInitialized();
+
+  const MethodChannel channel = MethodChannel('nordic_id');
+  final calls = <MethodCall>[];
+
+  setUp(() {
+    calls.clear();
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMethodCallHandler(
+      channel,
+      (MethodCall methodCall) async {
+        calls.add(methodCall);
+        return <String, int>{};
+      },
+    );
+  });
+
+  tearDown(() {
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMethodCallHandler(channel, null);
+  });
+
+  test('setManifest packs length and EPC bytes', () async {
+    await NordicId.setManifest(['E20A', '300833B2']);
+
+    expect(calls.length, 1);
+    expect(calls[0].method, 'SetManifest');
+    expect(calls[0].arguments['epcs'] as Uint8List,
+        [2, 0xE2, 0x0A, 4, 0x30, 0x08, 0x33, 0xB2]);
+  });
+
+  test('setManifest rejects odd length and over long EPCs', () async {
+    await expectLater(
+        NordicId.setManifest(['E20A', 'E20']), throwsFormatException);
+    await expectLater(
+        NordicId.setManifest(['AB' * 256]), throwsFormatException);
+    await NordicId.setManifest(['AB' * 255]);
+
+    expect(calls.length, 1);
+  });
+}
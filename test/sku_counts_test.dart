@@ -0,0 +1,23 @@
+import 'package:flutter_test/flutter_test.dart';
+import 'package:nordic_id/sku_counts.dart';
+
+void main() {
+  test('SkuCounts adds increments per GTIN', () {
+    final counts = SkuCounts();
+    counts.apply({'80614141123458': 3, '': 1});
+    counts.apply({'80614141123458': 2, '00614141000012': 1});
+
+    expect(counts.counts['80614141123458'], 5);
+    expect(counts.counts['00614141000012'], 1);
+    expect(counts.total, 7);
+  });
+
+  test('SkuCounts reset replaces counts with totals', () {
+    final counts = SkuCounts();
+    counts.apply({'80614141123458': 3});
+    counts.reset({'00614141000012': 4});
+
+    expect(counts.counts.length, 1);
+    expect(counts.total, 4);
+  });
+}
@@ -0,0 +1,99 @@
+import 'dart:typed_data';
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:nordic_id/tag_epc.dart';
+import 'package:nordic_id/tag_inventory.dart';
+
+void main() {
+  test('decodeTags reads binary tag batch', () {
+    final data = ByteData(5 + 13 + 2);
+    data.setUint8(0, 1); // version
+    data.setInt32(1, 1); // count
+    data.setUint8(5, 0); // flags
+    data.setUint8(6, 2); // epc length
+    data.setUint8(7, 0xE2);
+    data.setUint8(8, 0x0A);
+    data.setInt16(9, -57);
+    data.setUint8(11, 3);
+    data.setInt64(12, 1700000000123);
+
+    final tags = TagEpc.parseTags(data.buffer.asUint8List());
+
+    expect(tags.length, 1);
+    expect(tags[0].epc, 'E20A');
+    expect(tags[0].rssi, -57);
+    expect(tags[0].antennaId, 3);
+    expect(tags[0].timestamp!.millisecondsSinceEpoch, 1700000000123);
+  });
+
+  test('decodeTags reads optional fields in flag order', () {
+    final data = ByteData(5 + 13 + 1 + 2 + 1 + 4);
+    data.setUint8(0, 1); // version
+    data.setInt32(1, 1); // count
+    data.setUint8(5, 0x03); // flags: sensor data, ir data
+    data.setUint8(6, 1); // epc length
+    data.setUint8(7, 0x30);
+    data.setInt16(8, -60);
+    data.setUint8(10, 1);
+    data.setInt64(11, 5);
+    data.setUint16(19, 0x12);
+    data.setUint8(21, 4); // ir data length
+    data.setUint32(22, 0xE2801160);
+
+    final tags = TagEpc.decodeTags(data.buffer.asUint8List());
+
+    expect(tags[0].sensorData, 0x12);
+    expect(tags[0].data, [0xE2, 0x80, 0x11, 0x60]);
+  });
+
+  test('decodeTags reads GS1 fields', () {
+    // Empty serial is read as null
+    const fields = ['sgtin-96', '0614141', '80614141123458', ''];
+    final gs1 = <int>[];
+    for (final field in fields) {
+      gs1.add(field.length);
+      gs1.addAll(field.codeUnits);
+    }
+    final data = ByteData(5 + 13 + 1 + gs1.length);
+    data.setUint8(0, 1); // version
+    data.setInt32(1, 1); // count
+    data.setUint8(5, 0x04); // flags: gs1
+    data.setUint8(6, 1); // epc length
+    data.setUint8(7, 0x30);
+    data.setInt16(8, -60);
+    data.setUint8(10, 1);
+    data.setInt64(11, 5);
+    for (var n = 0; n < gs1.length; n++) {
+      data.setUint8(19 + n, gs1[n]);
+    }
+
+    final tags = TagEpc.decodeTags(data.buffer.asUint8List());
+
+    expect(tags[0].scheme, 'sgtin-96');
+    expect(tags[0].companyPrefix, '0614141');
+    expect(tags[0].gtin, '80614141123458');
+    expect(tags[0].serial, isNull);
+  });
+
+  test('parseTags still accepts JSON tags', () {
+    final tags = TagEpc.parseTags('[{"epc":"E20A","rssi":"-57"}]');
+
+    expect(tags[0].epc, 'E20A');
+    expect(tags[0].rssi, -57);
+  });
+
+  test('TagInventory applies deltas', () {
+    final inventory = TagInventory();
+    inventory.apply([
+      TagEpc(epc: 'A1', rssi: -60),
+      TagEpc(epc: 'B2', rssi: -70),
+    ]);
+    inventory.apply([
+      TagEpc(epc: 'A1', rssi: -50, change: TagChange.updated),
+      TagEpc(epc: 'B2', rssi: -70, change: TagChange.lost),
+    ]);
+
+    expect(inventory.length, 1);
+    expect(inventory.tags['A1']!.rssi, -50);
+  });
+}
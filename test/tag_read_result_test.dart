@@ -0,0 +1,33 @@
+import 'dart:typed_data';
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:nordic_id/tag_read_result.dart';
+
+void main() {
+  test('decode reads data and per tag errors', () {
+    final data = ByteData(5 + (1 + 2 + 4 + 2) + (1 + 2 + 4));
+    data.setUint8(0, 1); // version
+    data.setInt32(1, 2); // count
+    data.setUint8(5, 2); // epc length
+    data.setUint8(6, 0xE2);
+    data.setUint8(7, 0x0A);
+    data.setUint16(8, 0); // error
+    data.setUint16(10, 2); // data length
+    data.setUint16(12, 0x0C15);
+    data.setUint8(14, 2);
+    data.setUint8(15, 0xE2);
+    data.setUint8(16, 0x0B);
+    data.setUint16(17, 32);
+    data.setUint16(19, 0);
+
+    final results = TagReadResult.decode(data.buffer.asUint8List());
+
+    expect(results.length, 2);
+    expect(results[0].epc, 'E20A');
+    expect(results[0].ok, true);
+    expect(results[0].data, [0x0C, 0x15]);
+    expect(results[1].epc, 'E20B');
+    expect(results[1].error, 32);
+    expect(results[1].data, isEmpty);
+  });
+}